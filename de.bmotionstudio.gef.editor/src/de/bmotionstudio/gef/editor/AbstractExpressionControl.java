@@ -10,29 +10,36 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import de.be4.classicalb.core.parser.exceptions.BException;
 import de.bmotionstudio.gef.editor.internal.Animation;
 import de.bmotionstudio.gef.editor.model.BControl;
+import de.bmotionstudio.gef.editor.model.Visualization;
 import de.bmotionstudio.gef.editor.observer.ObserverEvalObject;
 import de.bmotionstudio.gef.editor.part.AppAbstractEditPart;
 import de.bmotionstudio.gef.editor.scheduler.SchedulerEvent;
 import de.prob.core.command.EvaluationGetValuesCommand;
-import de.prob.core.command.GetOperationByPredicateCommand;
+import de.prob.core.command.GetOperationByPredicateCommand.Query;
 import de.prob.core.domainobjects.EvaluationElement;
 import de.prob.core.domainobjects.EvaluationStateElement;
 import de.prob.core.domainobjects.Operation;
 import de.prob.core.domainobjects.State;
 import de.prob.exceptions.ProBException;
+import de.prob.logging.Logger;
 import de.prob.parserbase.ProBParseException;
 
 public abstract class AbstractExpressionControl extends BindingObject {
 
 	private static final Pattern PATTERN = Pattern.compile("\\$(.+?)\\$");
+	private static final Pattern IDENTIFIER_PATTERN = Pattern
+			.compile("[\\p{L}_][\\p{L}\\p{N}_]*");
+	private static final Pattern CONTROL_PATTERN = Pattern.compile("(\\w+)");
+	private static final String THIS = "this";
 
 	protected transient String ID;
 	protected transient String name;
@@ -41,6 +48,28 @@ public abstract class AbstractExpressionControl extends BindingObject {
 	private transient static final String DEFAULT_PREDICATE = "1=1";
 	private transient static final String DEFAULT_BOOLVAL = "true";
 
+	/**
+	 * The identifiers read by the formulas that have been evaluated since
+	 * {@link #startDependencyTracking()}, <code>null</code> if the result
+	 * depends on more than the variables of the current state.
+	 */
+	private transient Set<String> readIdentifiers;
+
+	/**
+	 * The formulas that have been evaluated since the last
+	 * {@link #startDependencyTracking()} and whether they are predicates
+	 */
+	private transient Map<String, Boolean> evaluatedFormulas;
+
+	/**
+	 * The operations that have been searched for since the last
+	 * {@link #startDependencyTracking()}
+	 */
+	private transient List<Query> operationQueries;
+
+	/** the expressions compiled by {@link #parseControls(String, BControl)} */
+	private transient Map<String, ControlTemplate> controlTemplates;
+
 	public String getID() {
 		return this.ID;
 	}
@@ -155,12 +184,37 @@ public abstract class AbstractExpressionControl extends BindingObject {
 
 	}
 
+	/**
+	 * Adds the formulas {@link #parseExpression} evaluates for the given
+	 * expression string, with the references to controls replaced by their
+	 * current values, without evaluating them.
+	 */
+	protected void collectFormulas(final String expressionString,
+			final boolean isPredicate, final BControl control,
+			final Map<String, Boolean> formulas) {
+		if (expressionString == null || expressionString.trim().length() == 0)
+			return;
+		boolean hasSubExpressions = false;
+		final Matcher matcher = PATTERN.matcher(expressionString);
+		while (matcher.find()) {
+			formulas.put(parseControls(matcher.group(1), control), isPredicate);
+			hasSubExpressions = true;
+		}
+		if (!hasSubExpressions) {
+			formulas.put(parseControls(expressionString, control), isPredicate);
+		}
+	}
+
 	private void collectEvalElements(final String subexpression,
 			final String key, final boolean isPredicate,
 			final Animation animation, final BControl control,
 			final Map<EvaluationElement, String> evaluationKeys) {
 
 		final String parsedSubexpr = parseControls(subexpression, control);
+		addReadIdentifiers(parsedSubexpr);
+		if (evaluatedFormulas != null) {
+			evaluatedFormulas.put(parsedSubexpr, isPredicate);
+		}
 		EvaluationElement evalElement;
 		try {
 			evalElement = animation.getCachedEvalElement(parsedSubexpr,
@@ -174,7 +228,90 @@ public abstract class AbstractExpressionControl extends BindingObject {
 			addError(control, animation, e.getMessage());
 			hasError = true;
 		}
+		if (hasError) {
+			// formulas with errors are evaluated again in every state
+			dependsOnCurrentState();
+		}
+
+	}
+
+	/**
+	 * Starts recording the identifiers the evaluated formulas read.
+	 */
+	protected void startDependencyTracking() {
+		readIdentifiers = new HashSet<String>();
+		evaluatedFormulas = new HashMap<String, Boolean>();
+		operationQueries = new ArrayList<Query>();
+	}
+
+	/**
+	 * @return the identifiers the formulas evaluated since
+	 *         {@link #startDependencyTracking()} read, or <code>null</code> if
+	 *         the result depends on more than the values of these identifiers
+	 */
+	protected Set<String> stopDependencyTracking() {
+		final Set<String> result = readIdentifiers;
+		readIdentifiers = null;
+		return result;
+	}
+
+	/**
+	 * Marks the current evaluation as dependent on more than the variables of
+	 * the current state, e.g. on the enabled operations or on the values of
+	 * other controls.
+	 */
+	protected void dependsOnCurrentState() {
+		readIdentifiers = null;
+	}
+
+	/**
+	 * @return the formulas (after replacing the references to controls) that
+	 *         have been evaluated since the last
+	 *         {@link #startDependencyTracking()}, mapped to <code>true</code>
+	 *         for predicates
+	 */
+	public Map<String, Boolean> getEvaluatedFormulas() {
+		if (evaluatedFormulas == null)
+			return Collections.emptyMap();
+		return Collections.unmodifiableMap(evaluatedFormulas);
+	}
+
+	/**
+	 * @return the operations that have been searched for since the last
+	 *         {@link #startDependencyTracking()}
+	 */
+	public List<Query> getOperationQueries() {
+		if (operationQueries == null)
+			return Collections.emptyList();
+		return Collections.unmodifiableList(operationQueries);
+	}
+
+	/**
+	 * Searches for the given operations in the given state, all with a single
+	 * query to ProB. The references to controls in the predicates must have
+	 * been replaced already. Answers the animation has prefetched for the
+	 * state are reused.
+	 * 
+	 * @return the answered queries, in the order of the given queries
+	 */
+	protected List<Query> findOperations(final Animation animation,
+			final String stateId, final List<Query> queries)
+			throws ProBException {
+		// the enabled operations are not tracked
+		dependsOnCurrentState();
+		if (operationQueries != null) {
+			operationQueries.addAll(queries);
+		}
+		return animation.findOperations(stateId, queries);
+	}
 
+	private void addReadIdentifiers(final String formula) {
+		if (readIdentifiers != null) {
+			final Matcher matcher = IDENTIFIER_PATTERN.matcher(formula);
+			while (matcher.find()) {
+				readIdentifiers.add(matcher.group());
+			}
+		}
 	}
 
 	protected List<Operation> parseOperation(final String opName,
@@ -191,16 +328,21 @@ public abstract class AbstractExpressionControl extends BindingObject {
 			if (opRandom < 1)
 				opRandom = 1;
 
-			return GetOperationByPredicateCommand.getOperations(
-					animation.getAnimator(), currentState, opName, opPredicate,
-					opRandom);
+			final Query query = findOperations(animation, currentState,
+					Collections.singletonList(new Query(opName, opPredicate,
+							opRandom))).get(0);
+			if (query.getError() != null) {
+				Logger.notifyUser("Fatal error when trying to parse "
+						+ opPredicate + ". Execution of operation " + opName
+						+ " aborted.");
+				addError(control, animation, query.getError());
+				hasError = true;
+			}
+			return query.getOperations();
 
 		} catch (ProBException e) {
 			addError(control, animation, e.getMessage());
 			hasError = true;
-		} catch (BException e) {
-			addError(control, animation, e.getMessage());
-			hasError = true;
 		}
 
 		return null;
@@ -224,38 +366,82 @@ public abstract class AbstractExpressionControl extends BindingObject {
 	 */
 	protected String parseControls(String expressionString, BControl control) {
 
-		List<String> allControlIDs = control.getVisualization()
-				.getAllBControlNames();
+		ControlTemplate template = getControlTemplate(expressionString);
+		if (template.words.length == 0)
+			return expressionString;
 
-		// Search for control ids
-		Pattern cPattern = Pattern.compile("(\\w+)");
-		Matcher cMatcher = cPattern.matcher(expressionString);
+		Visualization visualization = control.getVisualization();
+		StringBuilder result = new StringBuilder(expressionString.length());
 
-		while (cMatcher.find()) {
+		for (int i = 0; i < template.words.length; i++) {
 
-			String controlID = cMatcher.group(1);
+			result.append(template.literals[i]);
+			String controlID = template.words[i];
 
-			if (controlID.equals("this")) {
+			if (controlID.equals(THIS)) {
 
-				expressionString = expressionString.replace(controlID, control
-						.getAttributeValue(AttributeConstants.ATTRIBUTE_CUSTOM)
-						.toString());
+				// the values of controls are not tracked
+				dependsOnCurrentState();
+				result.append(control.getAttributeValue(
+						AttributeConstants.ATTRIBUTE_CUSTOM).toString());
 
-			} else if (allControlIDs.contains(controlID)) {
+			} else {
 
-				expressionString = expressionString.replace(controlID, control
-						.getVisualization().getBControl(controlID)
-						.getValueOfData());
+				BControl referenced = visualization.getBControl(controlID);
+				if (referenced != null) {
+					dependsOnCurrentState();
+					result.append(referenced.getValueOfData());
+				} else {
+					// TODO: Return error if no control exists
+					result.append(controlID);
+				}
 
-			} else {
-				// TODO: Return error if no control exists
 			}
 		}
+		result.append(template.literals[template.words.length]);
 
-		return expressionString;
+		return result.toString();
 
 	}
 
+	private ControlTemplate getControlTemplate(String expressionString) {
+		if (controlTemplates == null)
+			controlTemplates = new HashMap<String, ControlTemplate>();
+		ControlTemplate template = controlTemplates.get(expressionString);
+		if (template == null) {
+			template = new ControlTemplate(expressionString);
+			controlTemplates.put(expressionString, template);
+		}
+		return template;
+	}
+
+	/**
+	 * An expression split into the words that may refer to controls and the
+	 * text between them, so that the references can be replaced without
+	 * searching the expression again.
+	 */
+	private static final class ControlTemplate {
+		/** the text before each word and after the last word */
+		private final String[] literals;
+		private final String[] words;
+
+		public ControlTemplate(String expressionString) {
+			List<String> literalList = new ArrayList<String>();
+			List<String> wordList = new ArrayList<String>();
+			Matcher matcher = CONTROL_PATTERN.matcher(expressionString);
+			int end = 0;
+			while (matcher.find()) {
+				literalList.add(expressionString.substring(end,
+						matcher.start()));
+				wordList.add(matcher.group(1));
+				end = matcher.end();
+			}
+			literalList.add(expressionString.substring(end));
+			this.literals = literalList.toArray(new String[literalList.size()]);
+			this.words = wordList.toArray(new String[wordList.size()]);
+		}
+	}
+
 	protected Collection<EvaluationStateElement> getExpressionValues(
 			final BControl control, final Animation animation,
 			final Collection<EvaluationElement> evalElements)
@@ -7,13 +7,8 @@
 package de.bmotionstudio.gef.editor;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -27,17 +22,10 @@ import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.WorkbenchException;
 import org.eclipse.ui.part.MultiPageEditorPart;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.mapper.MapperWrapper;
 
 import de.bmotionstudio.gef.editor.animation.StaticListenerRegistry;
 import de.bmotionstudio.gef.editor.internal.Animation;
-import de.bmotionstudio.gef.editor.internal.BMSConverter512;
+import de.bmotionstudio.gef.editor.internal.VisualizationSerializer;
 import de.bmotionstudio.gef.editor.model.Visualization;
 import de.prob.core.ILifecycleListener;
 import de.prob.logging.Logger;
@@ -115,6 +103,7 @@ public class BMotionStudioEditor extends MultiPageEditorPart implements
 	public void dispose() {
 		unregister();
 		super.dispose();
+		getVisualization().disposeImageCache();
 	}
 
 	public Visualization getVisualization() {
@@ -138,59 +127,13 @@ public class BMotionStudioEditor extends MultiPageEditorPart implements
 
 		try {
 
-			// -------------------------------------------------------
-
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory
-					.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.parse(file.getContents());
-			NodeList nList = doc.getElementsByTagName("version");
-			if (nList.item(0) != null) {
-				Element versionElement = (Element) nList.item(0);
-				String version = versionElement.getTextContent();
-				if (version.equals("5.1.2")) {
-					new BMSConverter512(file);
-				}
-			} else {
-				new BMSConverter512(file);
-			}
-
-			// -------------------------------------------------------
-
-			InputStream inputStream = file.getContents();
-
-			XStream xstream = new XStream() {
-				@Override
-				protected MapperWrapper wrapMapper(final MapperWrapper next) {
-					return new MapperWrapper(next) {
-						@Override
-						public boolean shouldSerializeMember(
-								@SuppressWarnings("rawtypes") final Class definedIn,
-								final String fieldName) {
-							if (definedIn == Object.class)
-								return false;
-							return super.shouldSerializeMember(definedIn,
-									fieldName);
-						}
-					};
-				}
-			};
-
-			BMotionEditorPlugin.setAliases(xstream);
-
-			visualization = (Visualization) xstream.fromXML(inputStream);
-			visualization.setProjectFile(((IFileEditorInput) getEditorInput())
-					.getFile());
+			visualization = VisualizationSerializer.read(file);
 			// initLanguage(visualization);
 
-		} catch (SAXException e) {
-			e.printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
 		} catch (CoreException e) {
 			e.printStackTrace();
-		} catch (ParserConfigurationException e) {
-			e.printStackTrace();
 		}
 
 	}
@@ -253,6 +196,7 @@ public class BMotionStudioEditor extends MultiPageEditorPart implements
 
 	private void unregister() {
 		getVisualization().setIsRunning(false);
+		getVisualization().stopOperationScheduler();
 		StaticListenerRegistry.unregisterListener(this);
 		if (animation != null) {
 			animation.unregister();
@@ -10,7 +10,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.EventObject;
 import java.util.HashMap;
@@ -89,13 +88,12 @@ import org.eclipse.ui.part.IPageSite;
 import org.eclipse.ui.views.contentoutline.IContentOutlinePage;
 import org.eclipse.ui.views.properties.IPropertySheetPage;
 
-import com.thoughtworks.xstream.XStream;
-
 import de.bmotionstudio.gef.editor.action.CopyAction;
 import de.bmotionstudio.gef.editor.action.ObserverAction;
 import de.bmotionstudio.gef.editor.action.PasteAction;
 import de.bmotionstudio.gef.editor.action.SchedulerEventAction;
 import de.bmotionstudio.gef.editor.internal.BControlTransferDropTargetListener;
+import de.bmotionstudio.gef.editor.internal.VisualizationSerializer;
 import de.bmotionstudio.gef.editor.library.AttributeTransferDropTargetListener;
 import de.bmotionstudio.gef.editor.model.BMotionRuler;
 import de.bmotionstudio.gef.editor.model.BMotionRulerProvider;
@@ -202,10 +200,7 @@ public class BMotionStudioEditorPage extends GraphicalEditorWithFlyoutPalette {
 	 * @throws IOException
 	 */
 	protected void createOutputStream(OutputStream os) throws IOException {
-		OutputStreamWriter writer = new OutputStreamWriter(os, "UTF8");
-		XStream xstream = new XStream();
-		BMotionEditorPlugin.setAliases(xstream);
-		xstream.toXML(visualization, writer);
+		VisualizationSerializer.write(visualization, os);
 	}
 
 	/**
@@ -17,6 +17,12 @@ import de.prob.exceptions.ProBException;
  */
 public interface ILanguageService {
 
+	/**
+	 * Loads the machine of the visualization into the ProB animator
+	 * ({@link de.prob.core.Animator#getAnimator()}). Only the project file
+	 * and the machine name of the visualization may be used, the method is
+	 * called while the visualization is still being read.
+	 */
 	public void startProBAnimator(Visualization v) throws ProBException;
 
 	public boolean isLanguageFile(IFile f);
@@ -16,6 +16,7 @@ import org.rodinp.core.RodinCore;
 
 import de.bmotionstudio.gef.editor.ILanguageService;
 import de.bmotionstudio.gef.editor.model.Visualization;
+import de.prob.core.Animator;
 import de.prob.core.command.LoadEventBModelCommand;
 import de.prob.exceptions.ProBException;
 
@@ -36,7 +37,7 @@ public class EventBLanguageService implements ILanguageService {
 	public void startProBAnimator(Visualization v) throws ProBException {
 		IEventBRoot modelRoot = getCorrespondingFile(v.getProjectFile(),
 				v.getMachineName());
-		LoadEventBModelCommand.load(v.getAnimation().getAnimator(), modelRoot);
+		LoadEventBModelCommand.load(Animator.getAnimator(), modelRoot);
 	}
 
 	@Override
@@ -6,27 +6,19 @@
 
 package de.bmotionstudio.gef.editor.figure;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import org.eclipse.draw2d.ImageFigure;
 import org.eclipse.draw2d.StackLayout;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.swt.graphics.Image;
-import org.eclipse.swt.graphics.ImageData;
-import org.eclipse.swt.graphics.ImageLoader;
 import org.eclipse.swt.widgets.Display;
 
+import de.bmotionstudio.gef.editor.util.ImageCache.CachedImage;
+
 public class BMSImageFigure extends AbstractBMotionFigure {
 
 	private ImageFigure imageFigure;
 
-	final ImageLoader loader = new ImageLoader();
-
-	private Map<String, List<Image>> images = new HashMap<String, List<Image>>();
+	private CachedImage image;
 	private GIFThread currentGIFThread;
 
 	public BMSImageFigure() {
@@ -39,31 +31,22 @@ public class BMSImageFigure extends AbstractBMotionFigure {
 		getParent().setConstraint(imageFigure, rect);
 	}
 
-	public void setImage(String myPath) {
+	/**
+	 * Shows the given image, the previous image is released.
+	 */
+	public void setImage(CachedImage image) {
 
 		if (currentGIFThread != null)
 			currentGIFThread.interrupt();
 
-		if (new File(myPath).exists()) {
-
-			loader.load(myPath);
-
-			List<Image> imgList = images.get(myPath);
-			if (imgList == null) {
-				imgList = new ArrayList<Image>();
-				for (ImageData imageData : loader.data)
-					imgList.add(new Image(Display.getDefault(), imageData));
-				images.put(myPath, imgList);
-			}
-
-			if (loader.data.length > 1) { // GIF file
-				currentGIFThread = new GIFThread(this.imageFigure, myPath,
-						imgList);
-				currentGIFThread.start();
-			} else { // Non GIF file
-				imageFigure.setImage(imgList.get(0));
-			}
+		if (this.image != null)
+			this.image.release();
+		this.image = image;
 
+		imageFigure.setImage(image.getImage());
+		if (image.getFrameCount() > 1) { // GIF file
+			currentGIFThread = new GIFThread(this.imageFigure, image);
+			currentGIFThread.start();
 		}
 
 	}
@@ -77,26 +60,22 @@ public class BMSImageFigure extends AbstractBMotionFigure {
 	public void deactivateFigure() {
 		if (currentGIFThread != null)
 			currentGIFThread.interrupt();
-		if (imageFigure.getImage() != null)
-			imageFigure.getImage().dispose();
-		for (List<Image> l : images.values())
-			for (Image img : l)
-				img.dispose();
+		if (image != null) {
+			image.release();
+			image = null;
+		}
 	}
 
 	class GIFThread extends Thread {
 
 		ImageFigure imgFigure;
 		int imageNumber;
-		final ImageLoader loader = new ImageLoader();
 		boolean stopped = false;
-		List<Image> imgList;
+		CachedImage image;
 
-		public GIFThread(ImageFigure imgFigure, String imgPath,
-				List<Image> imgList) {
+		public GIFThread(ImageFigure imgFigure, CachedImage image) {
 			this.imgFigure = imgFigure;
-			this.imgList = imgList;
-			loader.load(imgPath);
+			this.image = image;
 		}
 
 		@Override
@@ -106,7 +85,7 @@ public class BMSImageFigure extends AbstractBMotionFigure {
 
 			while (!stopped) {
 
-				int delayTime = loader.data[imageNumber].delayTime;
+				int delayTime = image.getDelay(imageNumber);
 
 				try {
 					Thread.sleep(delayTime * 10);
@@ -118,11 +97,11 @@ public class BMSImageFigure extends AbstractBMotionFigure {
 					public void run() {
 						// Increase the variable holding the frame
 						// number
-						imageNumber = imageNumber == loader.data.length - 1 ? 0
+						imageNumber = imageNumber == image.getFrameCount() - 1 ? 0
 								: imageNumber + 1;
-						Image image = imgList.get(imageNumber);
-						if (image != null && !image.isDisposed() && !stopped) {
-							imgFigure.setImage(image);
+						Image frame = image.getFrame(imageNumber);
+						if (frame != null && !frame.isDisposed() && !stopped) {
+							imgFigure.setImage(frame);
 						}
 					}
 				});
@@ -18,9 +18,12 @@ import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Display;
 
+import de.bmotionstudio.gef.editor.util.ImageCache.CachedImage;
+
 public class CompositeFigure extends AbstractBMotionFigure {
 
 	protected Image layerImage;
+	private CachedImage image;
 	private ImageData imageData;
 	private Dimension size = new Dimension();
 	private boolean hasImage;
@@ -51,13 +54,12 @@ public class CompositeFigure extends AbstractBMotionFigure {
 
 	public void setBackgroundColor(RGB rgb) {
 		imageData.palette.colors[0] = rgb;
-		if (!hasImage) {
-			if (layerImage != null && !layerImage.isDisposed()) {
-				layerImage.dispose();
-			}
-			layerImage = new Image(Display.getDefault(), imageData);
-			repaint();
+		if (layerImage != null && !layerImage.isDisposed()) {
+			layerImage.dispose();
 		}
+		layerImage = new Image(Display.getDefault(), imageData);
+		if (!hasImage)
+			repaint();
 	}
 
 	public void paintFigure(Graphics g) {
@@ -85,21 +87,20 @@ public class CompositeFigure extends AbstractBMotionFigure {
 	/**
 	 * Sets the Image that this ImageFigure displays.
 	 * <p>
-	 * IMPORTANT: Note that it is the client's responsibility to dispose the
-	 * given image.
+	 * The previous image is released when it is replaced, the given image
+	 * when the figure is deactivated.
 	 * 
 	 * @param image
 	 *            The Image to be displayed. It can be <code>null</code>.
 	 */
-	public void setImage(Image image) {
-		if (layerImage != null)
-			layerImage.dispose();
-		layerImage = image;
-		if (layerImage != null) {
-			size = new Rectangle(image.getBounds()).getSize();
+	public void setImage(CachedImage image) {
+		if (this.image != null)
+			this.image.release();
+		this.image = image;
+		if (image != null) {
+			size = new Rectangle(image.getImage().getBounds()).getSize();
 			hasImage = true;
 		} else {
-			layerImage = new Image(null, imageData);
 			size = new Dimension();
 			hasImage = false;
 		}
@@ -111,7 +112,7 @@ public class CompositeFigure extends AbstractBMotionFigure {
 	 * @return The Image that this Figure displays
 	 */
 	public Image getImage() {
-		return layerImage;
+		return image != null ? image.getImage() : layerImage;
 	}
 
 	/**
@@ -140,6 +141,10 @@ public class CompositeFigure extends AbstractBMotionFigure {
 	public void deactivateFigure() {
 		if (layerImage != null)
 			layerImage.dispose();
+		if (image != null) {
+			image.release();
+			image = null;
+		}
 	}
 
 }
@@ -27,6 +27,7 @@ import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Display;
 
 import de.bmotionstudio.gef.editor.BMotionEditorPlugin;
+import de.bmotionstudio.gef.editor.util.ImageCache.CachedImage;
 
 public class ShapeFigure extends AbstractBMotionFigure {
 
@@ -34,11 +35,12 @@ public class ShapeFigure extends AbstractBMotionFigure {
 	private int outlineAlpha;
 	private int shape;
 	private Integer fillType;
-	private Image img;
+	private CachedImage img;
 	private Color foregroundColor;
 	private Color backgroundColor;
 
-	private Image patternImage;
+	private CachedImage patternImage;
+	private CachedImage patternSource;
 	private Image shadedImage;
 	private Pattern pattern;
 	private Pattern shadedPattern;
@@ -125,21 +127,33 @@ public class ShapeFigure extends AbstractBMotionFigure {
 						zoom = BMotionEditorPlugin.getActiveEditor()
 								.getZoomFactor();
 
-					ImageData d = img.getImageData().scaledTo(
-							(int) (img.getBounds().width * zoom),
-							(int) (img.getBounds().height * zoom));
+					int width = (int) (img.getImage().getBounds().width * zoom);
+					int height = (int) (img.getImage().getBounds().height * zoom);
 
-					if (patternImage != null)
-						patternImage.dispose();
+					// the scaled image is shared, the pattern is only
+					// created again if the image or the zoom changed
+					if (patternSource != img
+							|| patternImage == null
+							|| patternImage.getImage().getBounds().width != width
+							|| patternImage.getImage().getBounds().height != height) {
 
-					patternImage = new Image(Display.getDefault(), d);
+						CachedImage scaled = img.acquireScaled(width, height);
+						if (patternImage != null)
+							patternImage.release();
+						patternImage = scaled;
+						patternSource = img;
 
-					if (pattern != null)
-						pattern.dispose();
+						if (pattern != null)
+							pattern.dispose();
+						pattern = patternImage == null ? null : new Pattern(
+								Display.getDefault(), patternImage.getImage());
 
-					pattern = new Pattern(Display.getDefault(), patternImage);
+					}
 
-					g.setBackgroundPattern(pattern);
+					if (pattern != null)
+						g.setBackgroundPattern(pattern);
+					else
+						g.setBackgroundColor(this.getBackgroundColor());
 
 				} else if (fillType == FILL_TYPE_FILLED) {
 					g.setBackgroundColor(this.getBackgroundColor());
@@ -397,7 +411,13 @@ public class ShapeFigure extends AbstractBMotionFigure {
 		repaint();
 	}
 
-	public void setImage(Image img) {
+	/**
+	 * Sets the image to fill the shape with, which is released when it is
+	 * replaced or the figure is deactivated.
+	 */
+	public void setImage(CachedImage img) {
+		if (this.img != null)
+			this.img.release();
 		this.img = img;
 		repaint();
 	}
@@ -409,14 +429,18 @@ public class ShapeFigure extends AbstractBMotionFigure {
 	 */
 	@Override
 	public void deactivateFigure() {
-		if (img != null)
-			img.dispose();
+		if (img != null) {
+			img.release();
+			img = null;
+		}
 		if (foregroundColor != null)
 			foregroundColor.dispose();
 		if (backgroundColor != null)
 			backgroundColor.dispose();
-		if (patternImage != null)
-			patternImage.dispose();
+		if (patternImage != null) {
+			patternImage.release();
+			patternImage = null;
+		}
 		if (shadedImage != null)
 			shadedImage.dispose();
 		if (pattern != null)
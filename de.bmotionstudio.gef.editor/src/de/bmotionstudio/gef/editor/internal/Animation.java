@@ -6,18 +6,33 @@
 
 package de.bmotionstudio.gef.editor.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.swt.widgets.Display;
 
 import de.bmotionstudio.gef.editor.animation.StaticListenerRegistry;
 import de.bmotionstudio.gef.editor.model.Visualization;
+import de.bmotionstudio.gef.editor.observer.Observer;
 import de.prob.core.Animator;
 import de.prob.core.IAnimationListener;
 import de.prob.core.command.EvaluationGetValuesCommand;
 import de.prob.core.command.EvaluationInsertFormulaCommand;
 import de.prob.core.command.EvaluationInsertFormulaCommand.FormulaType;
+import de.prob.core.command.GetOperationByPredicateCommand;
+import de.prob.core.command.GetOperationByPredicateCommand.Query;
 import de.prob.core.domainobjects.EvaluationElement;
 import de.prob.core.domainobjects.Operation;
 import de.prob.core.domainobjects.State;
@@ -30,9 +45,52 @@ public class Animation implements IAnimationListener {
 
 	private final Map<String, Operation> currentStateOperations;
 
-	private final Map<String, EvaluationElement> cachedEvalElements = new HashMap<String, EvaluationElement>();
+	private final Map<String, EvaluationElement> cachedEvalElements = Collections
+			.synchronizedMap(new HashMap<String, EvaluationElement>());
 
-	private State currentState;
+	private volatile State currentState;
+
+	/**
+	 * Prefetches the values for the state changes and starts the checks, one
+	 * state change after the other. The prefetch does not run in the thread
+	 * that announces the state change, so that it waits until the command
+	 * that changed the state has finished.
+	 */
+	private final ExecutorService prefetcher = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "BMotion Studio Prefetch");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * The state the observers have been checked in last
+	 */
+	private volatile State lastCheckedState;
+
+	/**
+	 * The formulas the observers evaluated in their last check, updated in
+	 * the UI thread after each check
+	 */
+	private volatile List<ObserverFormulas> observerFormulas = Collections
+			.emptyList();
+
+	/**
+	 * The formulas the observers report through
+	 * {@link Observer#collectFormulas}, collected in the UI thread because
+	 * the checks change the observers and controls
+	 */
+	private volatile Map<String, Boolean> collectedFormulas = Collections
+			.emptyMap();
+
+	/**
+	 * The answered operation queries of the state they have been answered
+	 * in, replaced when another state is queried
+	 */
+	private volatile OperationAnswers operationAnswers;
 
 	private Visualization visualization;
 
@@ -44,6 +102,11 @@ public class Animation implements IAnimationListener {
 		this.animator = anim;
 		this.visualization = visualization;
 		this.visualization.setAnimation(this);
+		// the machine may have been loaded before the animation was created
+		final State state = anim.getCurrentState();
+		if (state != null) {
+			setNewState(state);
+		}
 	}
 
 	private void setNewState(State state) {
@@ -58,35 +121,196 @@ public class Animation implements IAnimationListener {
 	public void currentStateChanged(State currentState, Operation operation) {
 		// set new state and remember old state, if possible
 		setNewState(currentState);
-		updateCachedExpressions(currentState);
 		if (currentState.isInitialized()) {
 
 			if (animator == null) {
 				animator = Animator.getAnimator();
 			}
 
-			checkObserver();
+			if (visualization.isRunning()) {
+				final State state = currentState;
+				final Set<String> changedVariables = getChangedVariables(state);
+				try {
+					prefetcher.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								// no check would read the values of a state
+								// that is no longer the current one
+								if (state == Animation.this.currentState) {
+									prefetchFormulas(state, changedVariables);
+									prefetchOperations(state, changedVariables);
+								}
+							} finally {
+								checkChangedObserver(changedVariables);
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// the animation has been unregistered
+				}
+			} else {
+				lastCheckedState = null;
+			}
 
 		}
 
 	}
 
 	/**
-	 * Get values for all used expressions. This should speed up the
-	 * communication between ProB's core and Java. The result is not used, just
-	 * to fill the caches.
+	 * Evaluates the formulas of all observers that will be checked in the
+	 * given state, so that the checks in the UI thread find their values in
+	 * the cache. The formulas that have not been used before are inserted
+	 * with a single query and all values are retrieved with a single query.
 	 * 
-	 * @param currentState
+	 * The formulas are those the observers evaluated in their last check and,
+	 * if all observers are checked, those they report through
+	 * {@link Observer#collectFormulas}. Formulas that are known only when an
+	 * observer is checked, e.g. the value of an attribute that is set if a
+	 * predicate holds, are evaluated one by one in its first check.
+	 */
+	private void prefetchFormulas(final State state,
+			final Set<String> changedVariables) {
+		final Map<String, Boolean> formulas = new LinkedHashMap<String, Boolean>();
+		if (changedVariables == null) {
+			formulas.putAll(collectedFormulas);
+		}
+		for (final ObserverFormulas observer : observerFormulas) {
+			if (observer.isAffectedBy(changedVariables)) {
+				formulas.putAll(observer.formulas);
+			}
+		}
+		try {
+			insertFormulas(formulas);
+			final Collection<EvaluationElement> elements = new LinkedHashSet<EvaluationElement>();
+			for (final String formula : formulas.keySet()) {
+				final EvaluationElement element = cachedEvalElements
+						.get(formula);
+				if (element != null) {
+					elements.add(element);
+				}
+			}
+			EvaluationGetValuesCommand.getValuesForExpressionsCached(state,
+					elements);
+		} catch (UnsupportedOperationException e) {
+			// the observers report the error when they evaluate the formula
+		} catch (ProBException e) {
+			// the observers report the error when they evaluate the formula
+		}
+	}
+
+	/**
+	 * Inserts the formulas that are not in the cache yet with a single query.
+	 */
+	private void insertFormulas(final Map<String, Boolean> formulas)
+			throws ProBException {
+		final Map<String, FormulaType> newFormulas = new LinkedHashMap<String, FormulaType>();
+		for (final Map.Entry<String, Boolean> formula : formulas.entrySet()) {
+			if (!cachedEvalElements.containsKey(formula.getKey())) {
+				newFormulas.put(formula.getKey(),
+						formula.getValue() ? FormulaType.PREDICATE
+								: FormulaType.EXPRESSION);
+			}
+		}
+		cachedEvalElements.putAll(EvaluationInsertFormulaCommand
+				.insertFormulas(animator, newFormulas));
+	}
+
+	/**
+	 * Inserts the formulas the observers of the visualization are known to
+	 * evaluate (see {@link Observer#collectFormulas}) with a single query, so
+	 * that the first check only has to fetch their values. Can be called as
+	 * soon as the machine has been loaded, any formula that cannot be inserted
+	 * is reported by the observer when it is checked.
+	 */
+	public void insertObserverFormulas() {
+		Display.getDefault().syncExec(new Runnable() {
+			@Override
+			public void run() {
+				updateCollectedFormulas();
+			}
+		});
+		try {
+			insertFormulas(collectedFormulas);
+		} catch (UnsupportedOperationException e) {
+			// the observers report the error when they evaluate the formula
+		} catch (ProBException e) {
+			// the observers report the error when they evaluate the formula
+		}
+	}
+
+	/**
+	 * Searches for the operations the observers searched for in their last
+	 * check with a single query, so that the checks in the UI thread find the
+	 * answers in {@link #findOperations(String, List)}. Only operations that
+	 * are enabled in the state are searched for.
 	 */
-	private void updateCachedExpressions(State currentState) {
+	private void prefetchOperations(final State state,
+			final Set<String> changedVariables) {
+		final Set<String> enabled = new HashSet<String>();
+		for (final Operation op : state.getEnabledOperations()) {
+			enabled.add(op.getName());
+		}
+		final List<Query> queries = new ArrayList<Query>();
+		for (final ObserverFormulas observer : observerFormulas) {
+			if (!observer.isAffectedBy(changedVariables))
+				continue;
+			for (final Query query : observer.queries) {
+				if (enabled.contains(query.getName())) {
+					queries.add(new Query(query.getName(), query
+							.getPredicate(), query.getMaxSolutions()));
+				}
+			}
+		}
 		try {
-			EvaluationGetValuesCommand.getValuesForExpressionsCached(
-					currentState, cachedEvalElements.values());
+			findOperations(state.getId(), queries);
 		} catch (ProBException e) {
-			// TODO Log this
+			// the observers report the error when they search again
 		}
 	}
 
+	/**
+	 * Answers the queries in the given state. Queries that have been answered
+	 * in the state before are not sent again, all others are sent to ProB
+	 * with a single call.
+	 * 
+	 * @return the answered queries, in the order of the given queries. These
+	 *         may be other instances than the given ones.
+	 */
+	public List<Query> findOperations(final String stateId,
+			final List<Query> queries) throws ProBException {
+		if (queries.isEmpty())
+			return Collections.emptyList();
+		OperationAnswers answers = operationAnswers;
+		if (answers == null || !answers.stateId.equals(stateId)) {
+			answers = new OperationAnswers(stateId);
+			operationAnswers = answers;
+		}
+		final List<Query> missing = new ArrayList<Query>();
+		for (final Query query : queries) {
+			if (!answers.queries.containsKey(query)) {
+				missing.add(query);
+			}
+		}
+		if (!missing.isEmpty()) {
+			GetOperationByPredicateCommand.findOperations(animator, stateId,
+					missing);
+			for (final Query query : missing) {
+				answers.queries.put(query, query);
+			}
+		}
+		final List<Query> result = new ArrayList<Query>(queries.size());
+		for (final Query query : queries) {
+			final Query answer = answers.queries.get(query);
+			result.add(answer != null ? answer : query);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks all observers, e.g. because the user changed the value of a
+	 * control.
+	 */
 	public void checkObserver() {
 		if (visualization.isRunning()) {
 			Display.getDefault().asyncExec(new Runnable() {
@@ -94,11 +318,60 @@ public class Animation implements IAnimationListener {
 				public void run() {
 					visualization.checkObserver(Animation.this);
 					visualization.afterCheckObserver(Animation.this);
+					updateObserverFormulas();
 				}
 			});
 		}
 	}
 
+	/**
+	 * Checks only the observers whose formulas read a variable that has
+	 * changed since the last check.
+	 */
+	private void checkChangedObserver(final Set<String> changedVariables) {
+		Display.getDefault().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				visualization.checkObserver(Animation.this, changedVariables);
+				visualization.afterCheckObserver(Animation.this);
+				updateObserverFormulas();
+			}
+		});
+	}
+
+	private void updateObserverFormulas() {
+		final List<Observer> observers = new ArrayList<Observer>();
+		visualization.collectObservers(observers);
+		final List<ObserverFormulas> formulas = new ArrayList<ObserverFormulas>(
+				observers.size());
+		for (final Observer observer : observers) {
+			formulas.add(new ObserverFormulas(observer));
+		}
+		observerFormulas = formulas;
+		updateCollectedFormulas();
+	}
+
+	private void updateCollectedFormulas() {
+		final Map<String, Boolean> formulas = new LinkedHashMap<String, Boolean>();
+		visualization.collectFormulas(formulas);
+		collectedFormulas = formulas;
+	}
+
+	/**
+	 * @return the identifiers whose values differ between the state of the
+	 *         last check and the given state, or <code>null</code> if all
+	 *         observers must be checked
+	 */
+	private Set<String> getChangedVariables(final State state) {
+		final State last = lastCheckedState;
+		lastCheckedState = state;
+		// Classical B formulas can read variables through definitions, so we
+		// cannot tell from the formula which variables it reads
+		if (last == null || !"EventB".equals(visualization.getLanguage()))
+			return null;
+		return state.getValues().getDifferences(last.getValues());
+	}
+
 	// public boolean checkObserverCallBack() {
 	// return visualization.checkObserverCallBack();
 	// }
@@ -121,6 +394,7 @@ public class Animation implements IAnimationListener {
 
 	public void unregister() {
 		StaticListenerRegistry.unregisterListener((IAnimationListener) this);
+		prefetcher.shutdown();
 	}
 
 	public void setObserverCallBack(Boolean observerCallBack) {
@@ -160,5 +434,41 @@ public class Animation implements IAnimationListener {
 	public Map<String, Operation> getCurrentStateOperations() {
 		return currentStateOperations;
 	}
+
+	/**
+	 * A copy of the formulas an observer evaluated in its last check and the
+	 * identifiers they read, that can be used outside of the UI thread.
+	 */
+	private static class ObserverFormulas {
+		private final Set<String> dependencies;
+		private final Map<String, Boolean> formulas;
+		private final List<Query> queries;
+
+		public ObserverFormulas(final Observer observer) {
+			this.dependencies = observer.getDependencies();
+			this.formulas = new HashMap<String, Boolean>(
+					observer.getEvaluatedFormulas());
+			this.queries = new ArrayList<Query>(
+					observer.getOperationQueries());
+		}
+
+		public boolean isAffectedBy(final Set<String> changedVariables) {
+			return changedVariables == null || dependencies == null
+					|| !Collections.disjoint(dependencies, changedVariables);
+		}
+	}
+
+	/**
+	 * The queries that have been answered in a state.
+	 */
+	private static class OperationAnswers {
+		private final String stateId;
+		private final Map<Query, Query> queries = Collections
+				.synchronizedMap(new HashMap<Query, Query>());
+
+		public OperationAnswers(final String stateId) {
+			this.stateId = stateId;
+		}
+	}
 	
 }
@@ -6,8 +6,8 @@
 
 package de.bmotionstudio.gef.editor.internal;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -79,9 +79,9 @@ public class NewBMotionProjectWizard extends Wizard implements INewWizard {
 				} catch (final CoreException e) {
 					Logger.getAnonymousLogger().log(Level.SEVERE,
 							"CoreException", e);
-				} catch (UnsupportedEncodingException e) {
+				} catch (IOException e) {
 					Logger.getAnonymousLogger().log(Level.SEVERE,
-							"CoreException", e);
+							"IOException", e);
 				} finally {
 					monitor.done();
 				}
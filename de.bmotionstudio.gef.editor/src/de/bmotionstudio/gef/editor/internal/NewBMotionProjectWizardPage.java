@@ -7,9 +7,10 @@
 package de.bmotionstudio.gef.editor.internal;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -51,8 +52,6 @@ import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.dialogs.ContainerSelectionDialog;
 
-import com.thoughtworks.xstream.XStream;
-
 import de.bmotionstudio.gef.editor.BMotionEditorPlugin;
 import de.bmotionstudio.gef.editor.BMotionStudioImage;
 import de.bmotionstudio.gef.editor.ILanguageService;
@@ -118,16 +117,15 @@ public class NewBMotionProjectWizardPage extends WizardPage {
 	}
 
 	public InputStream getInitialContents(String fileExtension)
-			throws UnsupportedEncodingException {
+			throws IOException {
 		Visualization visualization = new Visualization(getSelectedEntry()
 				.getMachineFile().getName(), getSelectedEntry()
 				.getMachineLanguage(), Platform
 				.getBundle(BMotionEditorPlugin.PLUGIN_ID).getHeaders()
 				.get("Bundle-Version"));
-		XStream xstream = new XStream();
-		BMotionEditorPlugin.setAliases(xstream);
-		String content = xstream.toXML(visualization);
-		return new ByteArrayInputStream(content.getBytes("UTF-8"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		VisualizationSerializer.write(visualization, out);
+		return new ByteArrayInputStream(out.toByteArray());
 	}
 
 	public String getFileName() {
@@ -0,0 +1,228 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen,
+ * Heinrich Heine Universitaet Duesseldorf
+ * This software is licenced under EPL 1.0 (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.bmotionstudio.gef.editor.internal;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+import de.bmotionstudio.gef.editor.animation.StaticListenerRegistry;
+import de.bmotionstudio.gef.editor.model.Visualization;
+import de.bmotionstudio.gef.editor.scheduler.PredicateOperation;
+import de.prob.core.Animator;
+import de.prob.core.IAnimationListener;
+import de.prob.core.command.ExecuteOperationCommand;
+import de.prob.core.command.GetOperationByPredicateCommand;
+import de.prob.core.command.GetOperationByPredicateCommand.Query;
+import de.prob.core.domainobjects.Operation;
+import de.prob.core.domainobjects.State;
+import de.prob.exceptions.ProBException;
+import de.prob.logging.Logger;
+
+/**
+ * Executes the scheduler operations of a visualization. Each time the state
+ * changes, all scheduled operations that are enabled are searched for with a
+ * single query and one of them is executed. The operations take turns, so
+ * that an operation that is always enabled does not starve the others. If
+ * none of them can be executed, the scheduler waits for the next state
+ * change.
+ *
+ * The work is done by a single background thread. State changes that occur
+ * while an operation is searched for are coalesced into one further round.
+ * Before each round, the scheduler waits until the UI thread has processed
+ * the updates of the previous state. The minimal time between two executed
+ * operations in milliseconds can be set with the system property
+ * {@value #DELAY_PROPERTY}, by default the operations are executed as fast
+ * as ProB and the UI can handle them.
+ *
+ * The thread is never interrupted, because it may be talking to ProB. When
+ * the scheduler is stopped, the current round finishes without executing
+ * another operation.
+ */
+public class OperationScheduler implements IAnimationListener {
+
+	public static final String DELAY_PROPERTY = "de.bmotionstudio.scheduler.delay";
+
+	private static final long DEFAULT_DELAY = 0;
+
+	private final Visualization visualization;
+
+	private final long delay;
+
+	private final ExecutorService executor;
+
+	private final AtomicBoolean roundPending = new AtomicBoolean();
+
+	private volatile boolean running;
+
+	/** the operation that has its turn next, only used by the executor */
+	private int nextIndex;
+
+	/** the time the last operation was executed, only used by the executor */
+	private long lastExecution;
+
+	/** predicates that could not be parsed, only used by the executor */
+	private final Set<String> reportedErrors = new HashSet<String>();
+
+	private final Runnable round = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				runRound();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	};
+
+	public OperationScheduler(Visualization visualization) {
+		this.visualization = visualization;
+		this.delay = Long.getLong(DELAY_PROPERTY, DEFAULT_DELAY);
+		this.executor = Executors
+				.newSingleThreadExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r,
+								"BMotion Studio Operation Scheduler");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	public void start() {
+		running = true;
+		StaticListenerRegistry.registerListener((IAnimationListener) this);
+		scheduleRound();
+	}
+
+	public void stop() {
+		running = false;
+		StaticListenerRegistry.unregisterListener((IAnimationListener) this);
+		// the running round sees the flag, interrupting it could break the
+		// connection to ProB
+		executor.shutdown();
+	}
+
+	@Override
+	public void currentStateChanged(State currentState, Operation operation) {
+		scheduleRound();
+	}
+
+	private void scheduleRound() {
+		if (running && roundPending.compareAndSet(false, true)) {
+			try {
+				executor.execute(round);
+			} catch (RejectedExecutionException e) {
+				roundPending.set(false);
+			}
+		}
+	}
+
+	private void runRound() throws InterruptedException {
+
+		long wait = lastExecution + delay - System.currentTimeMillis();
+		while (running && wait > 0) {
+			Thread.sleep(Math.min(wait, 100));
+			wait = lastExecution + delay - System.currentTimeMillis();
+		}
+		awaitUserInterface();
+
+		// state changes from now on need a new round
+		roundPending.set(false);
+
+		Animator animator = Animator.getAnimator();
+		State state = animator.getCurrentState();
+		if (!running || state == null || !state.isInitialized())
+			return;
+
+		Set<String> enabled = new HashSet<String>();
+		for (Operation op : state.getEnabledOperations()) {
+			enabled.add(op.getName());
+		}
+
+		List<PredicateOperation> scheduled = visualization
+				.getSchedulerOperations();
+		int size = scheduled.size();
+		List<Integer> candidates = new ArrayList<Integer>();
+		List<Query> queries = new ArrayList<Query>();
+		for (int i = 0; i < size; i++) {
+			int index = (nextIndex + i) % size;
+			PredicateOperation p = scheduled.get(index);
+			if (enabled.contains(p.getOperationName())) {
+				candidates.add(index);
+				queries.add(new Query(p.getOperationName(),
+						p.getPredicate() == null
+								|| p.getPredicate().length() == 0 ? "1=1" : p
+								.getPredicate(), 1));
+			}
+		}
+		if (candidates.isEmpty())
+			return;
+
+		try {
+			GetOperationByPredicateCommand.findOperations(animator,
+					state.getId(), queries);
+			for (Query query : queries) {
+				if (query.getError() != null
+						&& reportedErrors.add(query.getPredicate()))
+					Logger.notifyUser("Fatal error when trying to parse "
+							+ query.getPredicate() + ". Operation "
+							+ query.getName() + " is not scheduled.");
+			}
+			for (int i = 0; i < queries.size(); i++) {
+				Operation op = queries.get(i).getOperation();
+				if (op != null && running) {
+					nextIndex = candidates.get(i) + 1;
+					lastExecution = System.currentTimeMillis();
+					// the state change starts the next round
+					ExecuteOperationCommand.executeOperation(animator, op);
+					return;
+				}
+			}
+		} catch (ProBException e) {
+			// try again in the next state
+			e.notifyUserOnce();
+		}
+
+	}
+
+	/**
+	 * Waits until the UI thread has processed everything that has been posted
+	 * to it so far.
+	 */
+	private void awaitUserInterface() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		try {
+			Display.getDefault().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					latch.countDown();
+				}
+			});
+		} catch (SWTException e) {
+			// the display has been disposed
+			running = false;
+			return;
+		}
+		while (running && !latch.await(100, TimeUnit.MILLISECONDS)) {
+			// wait
+		}
+	}
+
+}
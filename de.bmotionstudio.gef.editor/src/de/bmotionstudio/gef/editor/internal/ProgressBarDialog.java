@@ -180,6 +180,10 @@ public abstract class ProgressBarDialog extends Dialog {
 	protected void doBefore() {
 	}
 
+	/**
+	 * Called when the process thread ends, also if a step has failed or the
+	 * display has been disposed.
+	 */
 	protected void doAfter() {
 	}
 
@@ -192,6 +196,14 @@ public abstract class ProgressBarDialog extends Dialog {
 		}
 
 		public void run() {
+			try {
+				runSteps();
+			} finally {
+				doAfter();
+			}
+		}
+
+		private void runSteps() {
 			doBefore();
 			for (final int[] i = new int[] { 1 }; i[0] <= max; i[0]++) {
 				final String info = process(i[0]);
@@ -217,7 +229,6 @@ public abstract class ProgressBarDialog extends Dialog {
 				if (shouldStop)
 					break;
 			}
-			doAfter();
 		}
 	}
 
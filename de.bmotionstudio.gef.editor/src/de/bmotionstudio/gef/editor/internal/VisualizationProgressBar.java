@@ -7,10 +7,18 @@
 package de.bmotionstudio.gef.editor.internal;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
-
-import javax.xml.parsers.ParserConfigurationException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
@@ -23,39 +31,63 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jface.dialogs.ErrorDialog;
 import org.eclipse.jface.window.Window;
+import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
-import org.xml.sax.SAXException;
-
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.io.xml.DomDriver;
-import com.thoughtworks.xstream.mapper.MapperWrapper;
 
+import de.bmotionstudio.gef.editor.AttributeConstants;
 import de.bmotionstudio.gef.editor.BMotionEditorPlugin;
 import de.bmotionstudio.gef.editor.BMotionStudioEditor;
 import de.bmotionstudio.gef.editor.ILanguageService;
+import de.bmotionstudio.gef.editor.model.BControl;
 import de.bmotionstudio.gef.editor.model.Visualization;
+import de.bmotionstudio.gef.editor.util.ImageCache;
+import de.bmotionstudio.gef.editor.util.ImageCache.CachedImage;
 import de.prob.core.Animator;
 import de.prob.core.command.ExecuteOperationCommand;
 import de.prob.core.domainobjects.Operation;
 import de.prob.exceptions.ProBException;
 
+/**
+ * Starts a visualization. The steps that do not depend on each other run in
+ * parallel: the visualization is read and its images are loaded while the
+ * machine is translated and loaded by ProB, and the formulas of the observers
+ * are inserted while the constants are set up. The dialog to select a setup
+ * operation is waited for without polling.
+ */
 public class VisualizationProgressBar extends ProgressBarDialog {
 
 	private Animator animator;
 	private IFile f;
 	private Visualization visualization;
 	private Animation animation;
-	private int confirm = -1;
-	private SelectOperationDialog dialog;
 	private BMotionStudioEditor activeEditor;
 
+	private final ExecutorService executor;
+	private Future<Visualization> visualizationFuture;
+	private Future<Void> machineFuture;
+	private Future<?> formulaFuture;
+
+	/**
+	 * the images of the visualization, loaded in advance and released as soon
+	 * as the figures show them
+	 */
+	private final List<CachedImage> preloadedImages = new ArrayList<CachedImage>();
+
 	public VisualizationProgressBar(Shell parent, Animator animator,
 			BMotionStudioEditor activeEditor, IFile f) {
 		super(parent);
 		this.animator = animator;
 		this.activeEditor = activeEditor;
 		this.f = f;
+		this.executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "BMotion Studio Startup");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 	}
 
 	@Override
@@ -71,24 +103,13 @@ public class VisualizationProgressBar extends ProgressBarDialog {
 
 		switch (i) {
 		case 1:
-			try {
-				createVisualizationRoot();
-			} catch (CoreException e) {
-				openErrorDialog(e.getMessage());
-				setClose(true);
-			} catch (IOException e) {
-				openErrorDialog(e.getMessage());
-				setClose(true);
-			} catch (ParserConfigurationException e) {
-				openErrorDialog(e.getMessage());
-				setClose(true);
-			} catch (SAXException e) {
-				openErrorDialog(e.getMessage());
-				setClose(true);
-			}
+			startLoading();
+			visualization = await(visualizationFuture);
 			return "Starting ProB Animator";
 		case 2:
-			startProbAnimator();
+			await(machineFuture);
+			if (!isClosed)
+				startAnimation();
 			return "Setup Constants";
 		case 3:
 			try {
@@ -99,9 +120,11 @@ public class VisualizationProgressBar extends ProgressBarDialog {
 			}
 			return "Create Visualization";
 		case 4:
+			await(formulaFuture);
 			Display.getDefault().asyncExec(new Runnable() {
 				public void run() {
 					createShell();
+					releasePreloadedImages();
 				}
 			});
 			return "Initialize machine";
@@ -126,110 +149,195 @@ public class VisualizationProgressBar extends ProgressBarDialog {
 		visualization.startOperationScheduler();
 	}
 
-	private void createVisualizationRoot() throws CoreException, IOException,
-			ParserConfigurationException, SAXException {
-		XStream xstream = new XStream(new DomDriver()) {
+	/**
+	 * Reads the visualization and loads the machine in parallel. The machine
+	 * is the one of the visualization in the editor, which has been read from
+	 * the same file.
+	 */
+	private void startLoading() {
+		final Visualization editorVisualization = activeEditor
+				.getVisualization();
+		final ILanguageService langService = getGenericLoadMachine(editorVisualization
+				.getLanguage());
+		if (langService == null) {
+			openErrorDialog("Unknown formal language: "
+					+ editorVisualization.getLanguage());
+			setClose(true);
+			return;
+		}
+		visualizationFuture = executor.submit(new Callable<Visualization>() {
 			@Override
-			protected MapperWrapper wrapMapper(MapperWrapper next) {
-				return new MapperWrapper(next) {
-					@Override
-					public boolean shouldSerializeMember(
-							@SuppressWarnings("rawtypes") Class definedIn,
-							String fieldName) {
-						if (definedIn == Object.class) {
-							return false;
+			public Visualization call() throws CoreException, IOException {
+				Visualization result = VisualizationSerializer.read(f);
+				preloadImages(result);
+				return result;
+			}
+		});
+		machineFuture = executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws ProBException {
+				langService.startProBAnimator(editorVisualization);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Loads the images of the visualization into its image cache, so that the
+	 * figures do not load them in the UI thread. The files are read in the
+	 * calling thread, only the SWT images are created in the UI thread.
+	 */
+	private void preloadImages(final Visualization visualization) {
+		final Map<String, ImageData[]> images = new LinkedHashMap<String, ImageData[]>();
+		loadImages(visualization, visualization, images);
+		final Display display = Display.getDefault();
+		if (images.isEmpty() || display.isDisposed())
+			return;
+		display.syncExec(new Runnable() {
+			public void run() {
+				for (Map.Entry<String, ImageData[]> entry : images.entrySet()) {
+					CachedImage image = visualization.getImageCache().acquire(
+							entry.getKey(), entry.getValue());
+					if (image != null) {
+						synchronized (preloadedImages) {
+							preloadedImages.add(image);
 						}
-						return super
-								.shouldSerializeMember(definedIn, fieldName);
 					}
-				};
+				}
+			}
+		});
+	}
+
+	private void loadImages(Visualization visualization, BControl control,
+			Map<String, ImageData[]> images) {
+		Object value = control
+				.getAttributeValue(AttributeConstants.ATTRIBUTE_IMAGE);
+		if (value != null && value.toString().length() > 0) {
+			String path = (visualization.getProjectFile().getProject()
+					.getLocation()
+					+ "/images/" + value).replace("file:", "");
+			if (!images.containsKey(path)) {
+				ImageData[] data = ImageCache.load(path);
+				if (data != null)
+					images.put(path, data);
+			}
+		}
+		for (BControl child : control.getChildrenArray()) {
+			loadImages(visualization, child, images);
+		}
+	}
+
+	private void releasePreloadedImages() {
+		synchronized (preloadedImages) {
+			for (CachedImage image : preloadedImages) {
+				image.release();
 			}
-		};
-		BMotionEditorPlugin.setAliases(xstream);
-		visualization = (Visualization) xstream.fromXML(f.getContents());
-		visualization.setProjectFile(f);
+			preloadedImages.clear();
+		}
+	}
+
+	/**
+	 * Waits for a step that runs in the background. If the step failed, the
+	 * error is shown and the visualization is not started.
+	 * 
+	 * @return the result of the step or <code>null</code> if it failed or has
+	 *         not been started
+	 */
+	private <T> T await(Future<T> future) {
+		if (future == null)
+			return null;
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			openErrorDialog(e.getMessage());
+			setClose(true);
+		} catch (ExecutionException e) {
+			openErrorDialog(e.getCause().getMessage());
+			setClose(true);
+		}
+		return null;
 	}
 
 	@Override
 	protected void cleanUp() {
 		if (animation != null)
 			animation.unregister();
+		releasePreloadedImages();
+	}
+
+	@Override
+	protected void doAfter() {
+		executor.shutdown();
 	}
 
-	private void startProbAnimator() {
+	/**
+	 * Creates the animation for the loaded machine and starts to insert the
+	 * formulas of the observers, which runs in parallel to the setup of the
+	 * constants.
+	 */
+	private void startAnimation() {
 		animation = new Animation(animator, visualization);
-		ILanguageService langService = getGenericLoadMachine(visualization
-				.getLanguage());
-		if (langService != null) {
-			try {
-				langService.startProBAnimator(visualization);
-			} catch (ProBException e) {
-				openErrorDialog(e.getMessage());
-				setClose(true);
+		formulaFuture = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				animation.insertObserverFormulas();
 			}
-		} else {
-			openErrorDialog("Unknown formal language: "
-					+ visualization.getLanguage());
-			setClose(true);
-		}
+		});
 	}
 
 	private void setupOperation(String opName) throws InterruptedException {
 
 		final List<Operation> ops = animation.getState().getEnabledOperations();
 
+		Operation op;
 		if (ops.size() > 1) {
-
-			Display.getDefault().asyncExec(new Runnable() {
-				public void run() {
-					dialog = new SelectOperationDialog(getShell(), ops);
-					confirm = dialog.open();
-				}
-			});
-
-			while (true) {
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					openErrorDialog(e.getMessage());
-					setClose(true);
-				}
-
-				if (confirm == Window.OK) {
-					Operation op = dialog.getSelectedOperation();
-					if (op != null)
-						try {
-							ExecuteOperationCommand.executeOperation(animator,
-									op);
-						} catch (ProBException e) {
-							openErrorDialog(e.getMessage());
-							setClose(true);
-						}
-					confirm = -1;
-					break;
-				} else if (confirm == Window.CANCEL) {
-					setClose(true);
-					confirm = -1;
-					break;
-				}
-
-			}
-
+			op = selectOperation(ops);
 		} else {
-			Operation op = animation.getCurrentStateOperation(opName);
-			if (op != null)
-				try {
-					ExecuteOperationCommand.executeOperation(animator, op);
-				} catch (ProBException e) {
-					openErrorDialog(e.getMessage());
-					setClose(true);
-				}
+			op = animation.getCurrentStateOperation(opName);
 		}
 
+		if (op != null)
+			try {
+				ExecuteOperationCommand.executeOperation(animator, op);
+			} catch (ProBException e) {
+				openErrorDialog(e.getMessage());
+				setClose(true);
+			}
+
 		visualization.setIsRunning(true);
 
 	}
 
+	/**
+	 * Lets the user select one of the operations and waits for the choice.
+	 * 
+	 * @return the selected operation or <code>null</code> if none has been
+	 *         selected
+	 */
+	private Operation selectOperation(final List<Operation> ops)
+			throws InterruptedException {
+		FutureTask<Operation> selection = new FutureTask<Operation>(
+				new Callable<Operation>() {
+					@Override
+					public Operation call() {
+						SelectOperationDialog dialog = new SelectOperationDialog(
+								getShell(), ops);
+						if (dialog.open() == Window.OK)
+							return dialog.getSelectedOperation();
+						setClose(true);
+						return null;
+					}
+				});
+		Display.getDefault().asyncExec(selection);
+		try {
+			return selection.get();
+		} catch (ExecutionException e) {
+			openErrorDialog(e.getCause().getMessage());
+			setClose(true);
+			return null;
+		}
+	}
+
 	private void createShell() {
 		activeEditor.createRunPage(visualization, animation);
 	}
@@ -0,0 +1,227 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen,
+ * Heinrich Heine Universitaet Duesseldorf
+ * This software is licenced under EPL 1.0 (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.bmotionstudio.gef.editor.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.binary.BinaryStreamReader;
+import com.thoughtworks.xstream.io.binary.BinaryStreamWriter;
+import com.thoughtworks.xstream.io.xml.StaxDriver;
+import com.thoughtworks.xstream.mapper.MapperWrapper;
+
+import de.bmotionstudio.gef.editor.BMotionEditorPlugin;
+import de.bmotionstudio.gef.editor.model.Visualization;
+
+/**
+ * Reads and writes the visualization files (.bmso).
+ *
+ * Visualizations are saved as XML, which older versions of BMotion Studio can
+ * read and which can be compared with other revisions. XML files are read with
+ * a streaming (StAX) parser and converted by {@link BMSConverter512} if
+ * necessary. Reading and writing are single passes over the stream.
+ *
+ * If the system property {@value #FORMAT_PROPERTY} is set to
+ * <code>binary</code>, visualizations are saved in a binary format instead: a
+ * header with a magic number and the format version, followed by the XStream
+ * binary token stream of the visualization, in which each node name is written
+ * only once. The binary token stream depends on the XStream version, so the
+ * binary format is only meant for large visualizations that are not shared.
+ * Files in either format are read.
+ */
+public final class VisualizationSerializer {
+
+	public static final String FORMAT_PROPERTY = "de.bmotionstudio.format";
+
+	private static final byte[] MAGIC = { 'B', 'M', 'S', 'B' };
+
+	private static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static XStream xstream;
+
+	private VisualizationSerializer() {
+	}
+
+	/**
+	 * @return the XStream instance to read and write visualizations. It is
+	 *         configured once and shared, as creating and configuring an
+	 *         instance is expensive.
+	 */
+	public static synchronized XStream getXStream() {
+		if (xstream == null) {
+			xstream = new XStream() {
+				@Override
+				protected MapperWrapper wrapMapper(final MapperWrapper next) {
+					return new MapperWrapper(next) {
+						@Override
+						public boolean shouldSerializeMember(
+								@SuppressWarnings("rawtypes") final Class definedIn,
+								final String fieldName) {
+							if (definedIn == Object.class)
+								return false;
+							return super.shouldSerializeMember(definedIn,
+									fieldName);
+						}
+					};
+				}
+			};
+			BMotionEditorPlugin.setAliases(xstream);
+		}
+		return xstream;
+	}
+
+	/**
+	 * Reads the visualization from the given file, which may be in the binary
+	 * or in the XML format. XML files of old versions are converted first.
+	 */
+	public static Visualization read(final IFile file) throws CoreException,
+			IOException {
+		InputStream in = new BufferedInputStream(file.getContents(),
+				BUFFER_SIZE);
+		try {
+			if (!isBinary(in)) {
+				String version = readXMLVersion(in);
+				in.close();
+				if (version == null || version.equals("5.1.2")) {
+					new BMSConverter512(file);
+				}
+				in = new BufferedInputStream(file.getContents(), BUFFER_SIZE);
+			}
+			Visualization visualization = read(in);
+			visualization.setProjectFile(file);
+			return visualization;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a visualization in the binary or in the XML format, without
+	 * converting old files.
+	 */
+	public static Visualization read(final InputStream stream)
+			throws IOException {
+		InputStream in = stream.markSupported() ? stream
+				: new BufferedInputStream(stream, BUFFER_SIZE);
+		HierarchicalStreamReader reader;
+		if (isBinary(in)) {
+			DataInputStream data = new DataInputStream(in);
+			data.skipBytes(MAGIC.length);
+			int version = data.readInt();
+			if (version > VERSION)
+				throw new IOException(
+						"The visualization has been saved by a newer version of BMotion Studio (format version "
+								+ version + ").");
+			reader = new BinaryStreamReader(in);
+		} else {
+			reader = new StaxDriver().createReader(in);
+		}
+		try {
+			return (Visualization) getXStream().unmarshal(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Writes the visualization to the stream, in the binary format if the
+	 * system property {@value #FORMAT_PROPERTY} is <code>binary</code>,
+	 * otherwise in the XML format.
+	 */
+	public static void write(final Visualization visualization,
+			final OutputStream stream) throws IOException {
+		if ("binary".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY))) {
+			writeBinary(visualization, stream);
+		} else {
+			writeXML(visualization, stream);
+		}
+	}
+
+	/**
+	 * Writes the visualization to the stream in the XML format, encoded in
+	 * UTF-8.
+	 */
+	public static void writeXML(final Visualization visualization,
+			final OutputStream stream) throws IOException {
+		OutputStreamWriter writer = new OutputStreamWriter(stream, "UTF8");
+		getXStream().toXML(visualization, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes the visualization to the stream in the binary format.
+	 */
+	public static void writeBinary(final Visualization visualization,
+			final OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				stream, BUFFER_SIZE));
+		out.write(MAGIC);
+		out.writeInt(VERSION);
+		BinaryStreamWriter writer = new BinaryStreamWriter(out);
+		getXStream().marshal(visualization, writer);
+		writer.flush();
+		out.flush();
+	}
+
+	private static boolean isBinary(final InputStream in) throws IOException {
+		byte[] header = new byte[MAGIC.length];
+		in.mark(header.length);
+		int read = 0;
+		while (read < header.length) {
+			int n = in.read(header, read, header.length - read);
+			if (n < 0)
+				break;
+			read += n;
+		}
+		in.reset();
+		return Arrays.equals(header, MAGIC);
+	}
+
+	/**
+	 * @return the content of the first <code>version</code> element or
+	 *         <code>null</code> if there is none
+	 */
+	private static String readXMLVersion(final InputStream in)
+			throws IOException {
+		try {
+			XMLStreamReader reader = XMLInputFactory.newInstance()
+					.createXMLStreamReader(in);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT
+							&& "version".equals(reader.getLocalName()))
+						return reader.getElementText();
+				}
+				return null;
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+}
@@ -14,6 +14,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 
 import org.eclipse.core.runtime.CoreException;
@@ -609,31 +610,81 @@ public abstract class BControl implements IAdaptable, Cloneable {
 	}
 
 	public void checkObserver(final Animation animation) {
+		checkObserver(animation, null);
+	}
+
+	/**
+	 * Checks the observers of this control, its connections and its children.
+	 * 
+	 * @param changedVariables
+	 *            the identifiers whose values changed since the last check.
+	 *            Observers that do not read any of them are skipped. If
+	 *            <code>null</code>, all observers are checked.
+	 * @see Observer#check(Animation, BControl, Set)
+	 */
+	public void checkObserver(final Animation animation,
+			final Set<String> changedVariables) {
 
 		// Check all Observers
 		for (Observer observer : getObservers().values()) {
-			observer.check(animation, BControl.this);
+			observer.check(animation, BControl.this, changedVariables);
 		}
 
 		// TODO: Currently connection observer are checked twice (source +
 		// target) => change this, so that observer are checked only on time per
 		// state!!!
 		for (BConnection con : getSourceConnections()) {
-			con.checkObserver(animation);
+			con.checkObserver(animation, changedVariables);
 		}
 		for (BConnection con : getTargetConnections()) {
-			con.checkObserver(animation);
+			con.checkObserver(animation, changedVariables);
 		}
 
 		// Check Observers of children
 		if (getChildrenArray().size() > 0) {
 			for (BControl bcontrol : getChildrenArray()) {
-				bcontrol.checkObserver(animation);
+				bcontrol.checkObserver(animation, changedVariables);
 			}
 		}
 
 	}
 
+	/**
+	 * Adds the observers of this control, its connections and its children to
+	 * the given list.
+	 */
+	public void collectObservers(final List<Observer> result) {
+		result.addAll(getObservers().values());
+		for (BConnection con : getSourceConnections()) {
+			con.collectObservers(result);
+		}
+		for (BConnection con : getTargetConnections()) {
+			con.collectObservers(result);
+		}
+		for (BControl bcontrol : getChildrenArray()) {
+			bcontrol.collectObservers(result);
+		}
+	}
+
+	/**
+	 * Collects the formulas of the observers of this control, its connections
+	 * and its children, see {@link Observer#collectFormulas}.
+	 */
+	public void collectFormulas(final Map<String, Boolean> formulas) {
+		for (Observer observer : getObservers().values()) {
+			observer.collectFormulas(this, formulas);
+		}
+		for (BConnection con : getSourceConnections()) {
+			con.collectFormulas(formulas);
+		}
+		for (BConnection con : getTargetConnections()) {
+			con.collectFormulas(formulas);
+		}
+		for (BControl bcontrol : getChildrenArray()) {
+			bcontrol.collectFormulas(formulas);
+		}
+	}
+
 	public void afterCheckObserver(Animation animation) {
 		// Check all Observers
 		for (Observer observer : getObservers().values()) {
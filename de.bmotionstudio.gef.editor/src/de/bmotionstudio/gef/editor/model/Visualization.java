@@ -6,22 +6,23 @@
 
 package de.bmotionstudio.gef.editor.model;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.draw2d.PositionConstants;
 
-import de.be4.classicalb.core.parser.exceptions.BException;
 import de.bmotionstudio.gef.editor.AttributeConstants;
 import de.bmotionstudio.gef.editor.ButtonGroupHelper;
 import de.bmotionstudio.gef.editor.IAddErrorListener;
 import de.bmotionstudio.gef.editor.internal.Animation;
+import de.bmotionstudio.gef.editor.internal.OperationScheduler;
 import de.bmotionstudio.gef.editor.scheduler.PredicateOperation;
-import de.prob.core.command.ExecuteOperationCommand;
-import de.prob.core.command.GetOperationByPredicateCommand;
-import de.prob.core.domainobjects.Operation;
-import de.prob.exceptions.ProBException;
+import de.bmotionstudio.gef.editor.util.ImageCache;
 
 public class Visualization extends BControl {
 
@@ -41,6 +42,21 @@ public class Visualization extends BControl {
 		return allBControlIDs;
 	}
 
+	/**
+	 * The controls of the visualization by their id, built on demand and kept
+	 * up to date by listening to the controls
+	 */
+	private transient Map<String, BControl> controlIndex;
+
+	/**
+	 * <code>true</code> if two controls with the same id have been indexed.
+	 * In this case, the index is rebuilt on changes instead of being updated,
+	 * because the first control in the tree must be found.
+	 */
+	private transient boolean duplicateIDs;
+
+	private transient PropertyChangeListener controlIndexUpdater;
+
 	private transient Boolean isRunning;
 
 	private transient Animation animation;
@@ -49,7 +65,9 @@ public class Visualization extends BControl {
 
 	private transient ArrayList<IAddErrorListener> errorListener;
 
-	private transient Thread operationSchedulerThread;
+	private transient OperationScheduler operationScheduler;
+
+	private transient ImageCache imageCache;
 
 	private ArrayList<PredicateOperation> schedulerOperations;
 
@@ -82,61 +100,35 @@ public class Visualization extends BControl {
 	public void startOperationScheduler() {
 
 		if (!getSchedulerOperations().isEmpty()) {
+			stopOperationScheduler();
+			operationScheduler = new OperationScheduler(this);
+			operationScheduler.start();
+		}
 
-			operationSchedulerThread = new Thread(new Runnable() {
-				public void run() {
-					while (true) {
-
-						for (PredicateOperation p : getSchedulerOperations()) {
-
-							if (animation.getCurrentStateOperation(p
-									.getOperationName()) != null) {
-
-								try {
-
-									String fpredicate = "1=1";
-
-									if (p.getPredicate().length() > 0) {
-										fpredicate = p.getPredicate();
-									}
-
-									Operation op = GetOperationByPredicateCommand
-											.getOperation(animation
-													.getAnimator(), animation
-													.getState().getId(), p
-													.getOperationName(),
-													fpredicate);
-									ExecuteOperationCommand.executeOperation(
-											animation.getAnimator(), op);
-
-								} catch (ProBException e) {
-									break;
-								} catch (BException e) {
-									break;
-								}
-
-							}
-
-						}
-
-						try {
-							Thread.sleep(500);
-						} catch (InterruptedException e) {
-							break;
-						}
-
-					}
-				}
-			});
-			operationSchedulerThread.start();
+	}
 
+	public void stopOperationScheduler() {
+		if (operationScheduler != null) {
+			operationScheduler.stop();
+			operationScheduler = null;
 		}
+	}
 
+	/**
+	 * @return the cache for the images shown by the figures of this
+	 *         visualization, in the edit page as well as in the run page
+	 */
+	public synchronized ImageCache getImageCache() {
+		if (imageCache == null)
+			imageCache = new ImageCache();
+		return imageCache;
 	}
 
-	public void stopOperationScheduler() {
-		if (operationSchedulerThread != null)
-			operationSchedulerThread.interrupt();
+	public synchronized void disposeImageCache() {
+		if (imageCache != null) {
+			imageCache.dispose();
+			imageCache = null;
+		}
 	}
 
 	public void setIsRunning(Boolean bol) {
@@ -222,22 +214,106 @@ public class Visualization extends BControl {
 	}
 
 	public BControl getBControl(String ID) {
-		return getBControl(ID, getChildrenArray());
+		return getControlIndex().get(ID);
 	}
 
-	private BControl getBControl(String ID, List<BControl> children) {
-		for (BControl bcontrol : children) {
-			if (bcontrol.getID().equals(ID)) {
-				return bcontrol;
+	private Map<String, BControl> getControlIndex() {
+		if (controlIndex == null) {
+			controlIndex = new HashMap<String, BControl>();
+			duplicateIDs = false;
+			listenTo(this);
+			indexControls(getChildrenArray());
+		}
+		return controlIndex;
+	}
+
+	private void indexControls(List<BControl> controls) {
+		for (BControl bcontrol : controls) {
+			listenTo(bcontrol);
+			BControl indexed = controlIndex.get(bcontrol.getID());
+			if (indexed == null) {
+				controlIndex.put(bcontrol.getID(), bcontrol);
+			} else if (indexed != bcontrol) {
+				duplicateIDs = true;
 			}
-			if (bcontrol.getChildrenArray().size() > 0) {
-				BControl childControl = getBControl(ID,
-						bcontrol.getChildrenArray());
-				if (childControl != null)
-					return childControl;
+			indexControls(bcontrol.getChildrenArray());
+		}
+	}
+
+	private void unindexControls(List<BControl> controls) {
+		for (BControl bcontrol : controls) {
+			bcontrol.getListeners().removePropertyChangeListener(
+					getControlIndexUpdater());
+			if (controlIndex.get(bcontrol.getID()) == bcontrol) {
+				controlIndex.remove(bcontrol.getID());
+			}
+			unindexControls(bcontrol.getChildrenArray());
+		}
+	}
+
+	private void listenTo(BControl bcontrol) {
+		PropertyChangeListener updater = getControlIndexUpdater();
+		bcontrol.getListeners().removePropertyChangeListener(updater);
+		bcontrol.getListeners().addPropertyChangeListener(updater);
+	}
+
+	private boolean isIndexed(BControl bcontrol) {
+		return bcontrol == this
+				|| controlIndex.get(bcontrol.getID()) == bcontrol;
+	}
+
+	private PropertyChangeListener getControlIndexUpdater() {
+		if (controlIndexUpdater == null) {
+			controlIndexUpdater = new PropertyChangeListener() {
+				@Override
+				public void propertyChange(PropertyChangeEvent evt) {
+					updateControlIndex(evt);
+				}
+			};
+		}
+		return controlIndexUpdater;
+	}
+
+	/**
+	 * Updates the index if a control has been added, removed or renamed.
+	 */
+	private void updateControlIndex(PropertyChangeEvent evt) {
+		String property = evt.getPropertyName();
+		if (controlIndex == null
+				|| !(evt.getSource() instanceof BControl)
+				|| !(BControl.PROPERTY_ADD.equals(property)
+						|| BControl.PROPERTY_REMOVE.equals(property)
+						|| BControl.PROPERTY_RENAME.equals(property) || AttributeConstants.ATTRIBUTE_ID
+							.equals(property)))
+			return;
+		BControl source = (BControl) evt.getSource();
+		if (duplicateIDs) {
+			controlIndex = null;
+		} else if (BControl.PROPERTY_ADD.equals(property)) {
+			if (isIndexed(source)) {
+				List<BControl> added = new ArrayList<BControl>();
+				added.add((BControl) evt.getNewValue());
+				indexControls(added);
+				if (duplicateIDs) {
+					controlIndex = null;
+				}
+			}
+		} else if (BControl.PROPERTY_REMOVE.equals(property)) {
+			if (isIndexed(source)) {
+				List<BControl> removed = new ArrayList<BControl>();
+				removed.add((BControl) evt.getOldValue());
+				unindexControls(removed);
+			}
+		} else if (evt.getOldValue() != null
+				&& controlIndex.get(evt.getOldValue().toString()) == source) {
+			// the id of the control has changed
+			controlIndex.remove(evt.getOldValue().toString());
+			if (controlIndex.containsKey(source.getID())) {
+				controlIndex = null;
+			} else {
+				controlIndex.put(source.getID(), source);
 			}
 		}
-		return null;
 	}
 
 	public BMotionRuler getRuler(int orientation) {
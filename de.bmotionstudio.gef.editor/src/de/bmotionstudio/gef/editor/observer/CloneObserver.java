@@ -9,6 +9,7 @@ package de.bmotionstudio.gef.editor.observer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import de.bmotionstudio.gef.editor.AttributeConstants;
 import de.bmotionstudio.gef.editor.internal.Animation;
@@ -85,6 +86,14 @@ public class CloneObserver extends Observer {
 
 	}
 
+	@Override
+	public void collectFormulas(BControl control,
+			final Map<String, Boolean> formulas) {
+		for (ObserverCloneObject obj : observerCloneObjects) {
+			collectFormulas(obj.getEval(), false, control, formulas);
+		}
+	}
+
 	@Override
 	public ObserverWizard getWizard(BControl control) {
 		return new WizardObserverClone(control, this);
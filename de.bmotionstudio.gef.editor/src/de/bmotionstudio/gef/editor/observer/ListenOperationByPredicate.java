@@ -7,18 +7,16 @@
 package de.bmotionstudio.gef.editor.observer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-import de.be4.classicalb.core.parser.exceptions.BException;
 import de.bmotionstudio.gef.editor.AttributeConstants;
 import de.bmotionstudio.gef.editor.attribute.AbstractAttribute;
 import de.bmotionstudio.gef.editor.internal.Animation;
 import de.bmotionstudio.gef.editor.model.BControl;
 import de.bmotionstudio.gef.editor.observer.wizard.WizardObserverListenOperationByPredicate;
 import de.bmotionstudio.gef.editor.scheduler.PredicateOperation;
-import de.prob.core.Animator;
-import de.prob.core.command.GetOperationByPredicateCommand;
-import de.prob.core.domainobjects.Operation;
+import de.prob.core.command.GetOperationByPredicateCommand.Query;
 import de.prob.core.domainobjects.State;
 import de.prob.exceptions.ProBException;
 
@@ -49,8 +47,14 @@ public class ListenOperationByPredicate extends Observer {
 
 		this.setAttributes.clear();
 
+		// the observer depends on the enabled operations
+		dependsOnCurrentState();
+
 		State state = animation.getState();
-		Animator animator = animation.getAnimator();
+
+		// search for all operations with a single query
+		List<PredicateOperation> pops = new ArrayList<PredicateOperation>();
+		List<Query> queries = new ArrayList<Query>();
 
 		for (PredicateOperation pop : getList()) {
 
@@ -73,65 +77,69 @@ public class ListenOperationByPredicate extends Observer {
 						fPredicate = parseControls(fPredicate, control);
 					}
 
-					try {
-						if (fPredicate.equals(""))
-							fPredicate = "1=1";
-						Operation operation = GetOperationByPredicateCommand
-								.getOperation(animator, state.getId(), fOpName,
-										fPredicate);
-						if (operation != null) { // Operation enabled
-
-							String attributeID = pop.getAttribute();
-
-							AbstractAttribute attributeObj = control
-									.getAttribute(attributeID);
-
-							Object attributeVal = pop.getValue();
-
-							if (pop.isExpressionMode()) {
-								String strAtrVal = parseExpression(
-										attributeVal.toString(), control,
-										animation, pop);
-								String er = attributeObj.validateValue(
-										strAtrVal, null);
-								if (er != null) {
-									addError(
-											control,
-											animation,
-											"You selected "
-													+ attributeObj.getName()
-													+ " as attribute. There is a problem with your value: "
-													+ strAtrVal + " - Reason: "
-													+ er);
-									pop.setHasError(true);
-								} else {
-									attributeVal = attributeObj
-											.unmarshal(strAtrVal);
-								}
-							}
-
-							if (!pop.hasError()) {
-								Object oldAttrVal = control
-										.getAttributeValue(attributeID);
-								if (!oldAttrVal.equals(attributeVal)) {
-									control.setAttributeValue(attributeID,
-											attributeVal);
-								}
-							}
-
-							setAttributes.add(attributeID);
-
-						}
-					} catch (ProBException e) {
-						addError(control, animation,
-								"An error occurred while evaluating. Reason: "
-										+ e.getMessage());
-					} catch (BException e) {
-						addError(control, animation, "Parsing error in: "
-								+ fPredicate + " Reason: " + e.getMessage());
+					if (fPredicate.equals(""))
+						fPredicate = "1=1";
+					pops.add(pop);
+					queries.add(new Query(fOpName, fPredicate, 1));
+
+				}
+
+			}
+
+		}
+
+		List<Query> answers;
+		try {
+			answers = findOperations(animation, state.getId(), queries);
+		} catch (ProBException e) {
+			addError(control, animation,
+					"An error occurred while evaluating. Reason: "
+							+ e.getMessage());
+			answers = Collections.emptyList();
+		}
+
+		for (int i = 0; i < answers.size(); i++) {
+
+			PredicateOperation pop = pops.get(i);
+			Query answer = answers.get(i);
+
+			if (answer.getError() != null) {
+				addError(control, animation, "Parsing error in: "
+						+ answer.getPredicate() + " Reason: "
+						+ answer.getError());
+			} else if (answer.getOperation() != null) { // Operation enabled
+
+				String attributeID = pop.getAttribute();
+
+				AbstractAttribute attributeObj = control
+						.getAttribute(attributeID);
+
+				Object attributeVal = pop.getValue();
+
+				if (pop.isExpressionMode()) {
+					String strAtrVal = parseExpression(attributeVal.toString(),
+							control, animation, pop);
+					String er = attributeObj.validateValue(strAtrVal, null);
+					if (er != null) {
+						addError(control, animation, "You selected "
+								+ attributeObj.getName()
+								+ " as attribute. There is a problem with your value: "
+								+ strAtrVal + " - Reason: " + er);
+						pop.setHasError(true);
+					} else {
+						attributeVal = attributeObj.unmarshal(strAtrVal);
 					}
 				}
 
+				if (!pop.hasError()) {
+					Object oldAttrVal = control.getAttributeValue(attributeID);
+					if (!oldAttrVal.equals(attributeVal)) {
+						control.setAttributeValue(attributeID, attributeVal);
+					}
+				}
+
+				setAttributes.add(attributeID);
+
 			}
 
 		}
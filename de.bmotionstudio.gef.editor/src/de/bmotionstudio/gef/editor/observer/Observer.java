@@ -6,6 +6,10 @@
 
 package de.bmotionstudio.gef.editor.observer;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.draw2d.IFigure;
 
@@ -31,6 +35,13 @@ public abstract class Observer extends AbstractExpressionControl {
 
 	// private transient Boolean callBack = false;
 
+	/**
+	 * The identifiers the formulas of the last check read, <code>null</code>
+	 * if the observer has not been checked yet or if it depends on more than
+	 * the variables of the state.
+	 */
+	private transient Set<String> dependencies;
+
 	public Observer() {
 		init();
 	}
@@ -61,7 +72,9 @@ public abstract class Observer extends AbstractExpressionControl {
 	 * @return the cloned observer
 	 */
 	public Observer clone() throws CloneNotSupportedException {
-		return (Observer) super.clone();
+		final Observer clone = (Observer) super.clone();
+		clone.dependencies = null;
+		return clone;
 	}
 
 	// public void setCallBack(Boolean callBack) {
@@ -84,6 +97,45 @@ public abstract class Observer extends AbstractExpressionControl {
 	 */
 	public abstract void check(Animation animation, BControl control);
 
+	/**
+	 * Adds the formulas the observer evaluates in its checks, as far as they
+	 * are known without checking it, so that they can be evaluated in one
+	 * batch before the first check. The default implementation adds nothing.
+	 * 
+	 * @param formulas
+	 *            the formulas and whether they are predicates
+	 */
+	public void collectFormulas(BControl control, Map<String, Boolean> formulas) {
+	}
+
+	/**
+	 * @return the identifiers the formulas of the last check read, or
+	 *         <code>null</code> if they are not known
+	 */
+	public Set<String> getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * Checks the observer like {@link #check(Animation, BControl)}, unless
+	 * none of the identifiers its formulas read in the last check has changed.
+	 * The identifiers are recorded again during the check.
+	 * 
+	 * @param changedVariables
+	 *            the identifiers whose values differ from the state of the
+	 *            last check, or <code>null</code> to check the observer in any
+	 *            case
+	 */
+	public void check(Animation animation, BControl control,
+			Set<String> changedVariables) {
+		if (changedVariables != null && dependencies != null
+				&& Collections.disjoint(dependencies, changedVariables))
+			return;
+		startDependencyTracking();
+		check(animation, control);
+		dependencies = stopDependencyTracking();
+	}
+
 	/**
 	 * Returns a corresponding wizard for the observer.
 	 * 
@@ -8,6 +8,7 @@ package de.bmotionstudio.gef.editor.observer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.draw2d.IFigure;
 
@@ -104,6 +105,14 @@ public class SetAttribute extends Observer {
 
 	}
 
+	@Override
+	public void collectFormulas(BControl control,
+			final Map<String, Boolean> formulas) {
+		for (SetAttributeObject obj : setAttributeObjects) {
+			collectFormulas(obj.getEval(), true, control, formulas);
+		}
+	}
+
 	@Override
 	public ObserverWizard getWizard(BControl control) {
 		return new WizardObserverSetAttribute(control, this);
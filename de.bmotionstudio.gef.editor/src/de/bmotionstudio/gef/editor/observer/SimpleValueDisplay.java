@@ -6,6 +6,8 @@
 
 package de.bmotionstudio.gef.editor.observer;
 
+import java.util.Map;
+
 import de.bmotionstudio.gef.editor.AttributeConstants;
 import de.bmotionstudio.gef.editor.internal.Animation;
 import de.bmotionstudio.gef.editor.model.BControl;
@@ -55,6 +57,13 @@ public class SimpleValueDisplay extends Observer {
 
 	}
 
+	@Override
+	public void collectFormulas(final BControl bcontrol,
+			final Map<String, Boolean> formulas) {
+		collectFormulas(predicate, true, bcontrol, formulas);
+		collectFormulas(eval, false, bcontrol, formulas);
+	}
+
 	public ObserverWizard getWizard(final BControl bcontrol) {
 		return new WizardObserverSimpleValueDisplay(bcontrol, this);
 	}
@@ -8,6 +8,7 @@ package de.bmotionstudio.gef.editor.observer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import de.bmotionstudio.gef.editor.AttributeConstants;
 import de.bmotionstudio.gef.editor.animation.AnimationMove;
@@ -134,6 +135,14 @@ public class SwitchCoordinates extends Observer {
 
 	}
 
+	@Override
+	public void collectFormulas(final BControl control,
+			final Map<String, Boolean> formulas) {
+		for (ToggleObjectCoordinates obj : toggleObjects) {
+			collectFormulas(obj.getEval(), true, control, formulas);
+		}
+	}
+
 	public ObserverWizard getWizard(final BControl bcontrol) {
 		return new WizardObserverSwitchCoordinates(bcontrol, this);
 	}
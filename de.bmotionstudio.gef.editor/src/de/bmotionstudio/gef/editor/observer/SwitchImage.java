@@ -9,6 +9,7 @@ package de.bmotionstudio.gef.editor.observer;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
 
@@ -77,6 +78,14 @@ public class SwitchImage extends Observer {
 
 	}
 
+	@Override
+	public void collectFormulas(final BControl control,
+			final Map<String, Boolean> formulas) {
+		for (ToggleObjectImage obj : toggleObjects) {
+			collectFormulas(obj.getEval(), true, control, formulas);
+		}
+	}
+
 	public ObserverWizard getWizard(final BControl bcontrol) {
 		return new WizardObserverSwitchImage(bcontrol, this);
 	}
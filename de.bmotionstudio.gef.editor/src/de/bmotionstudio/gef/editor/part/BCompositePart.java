@@ -7,7 +7,6 @@
 package de.bmotionstudio.gef.editor.part;
 
 import java.beans.PropertyChangeEvent;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,9 +20,7 @@ import org.eclipse.gef.SnapToGuides;
 import org.eclipse.gef.SnapToHelper;
 import org.eclipse.gef.editpolicies.SnapFeedbackPolicy;
 import org.eclipse.gef.rulers.RulerProvider;
-import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.RGB;
-import org.eclipse.swt.widgets.Display;
 
 import de.bmotionstudio.gef.editor.AttributeConstants;
 import de.bmotionstudio.gef.editor.editpolicy.AppDeletePolicy;
@@ -36,6 +33,7 @@ import de.bmotionstudio.gef.editor.library.AttributeRequest;
 import de.bmotionstudio.gef.editor.library.LibraryImageCommand;
 import de.bmotionstudio.gef.editor.library.LibraryVariableCommand;
 import de.bmotionstudio.gef.editor.model.BControl;
+import de.bmotionstudio.gef.editor.util.ImageCache.CachedImage;
 
 public class BCompositePart extends AppAbstractEditPart {
 
@@ -65,9 +63,10 @@ public class BCompositePart extends AppAbstractEditPart {
 					IFile pFile = model.getVisualization().getProjectFile();
 					String myPath = (pFile.getProject().getLocation()
 							+ "/images/" + imgPath).replace("file:", "");
-					if (new File(myPath).exists()) {
-						((CompositeFigure) figure).setImage(new Image(Display
-								.getDefault(), myPath));
+					CachedImage img = model.getVisualization()
+							.getImageCache().acquire(myPath);
+					if (img != null) {
+						((CompositeFigure) figure).setImage(img);
 					}
 				}
 			}
@@ -21,6 +21,7 @@ import de.bmotionstudio.gef.editor.library.AbstractLibraryCommand;
 import de.bmotionstudio.gef.editor.library.AttributeRequest;
 import de.bmotionstudio.gef.editor.library.LibraryImageCommand;
 import de.bmotionstudio.gef.editor.model.BControl;
+import de.bmotionstudio.gef.editor.util.ImageCache.CachedImage;
 
 public class BImagePart extends AppAbstractEditPart {
 
@@ -38,7 +39,10 @@ public class BImagePart extends AppAbstractEditPart {
 					IFile pFile = model.getVisualization().getProjectFile();
 					String myPath = (pFile.getProject().getLocation()
 							+ "/images/" + imgPath).replace("file:", "");
-					((BMSImageFigure) figure).setImage(myPath);
+					CachedImage img = model.getVisualization()
+							.getImageCache().acquire(myPath);
+					if (img != null)
+						((BMSImageFigure) figure).setImage(img);
 				}
 			}
 		}
@@ -7,20 +7,18 @@
 package de.bmotionstudio.gef.editor.part;
 
 import java.beans.PropertyChangeEvent;
-import java.io.File;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.gef.EditPolicy;
-import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.RGB;
-import org.eclipse.swt.widgets.Display;
 
 import de.bmotionstudio.gef.editor.AttributeConstants;
 import de.bmotionstudio.gef.editor.editpolicy.AppDeletePolicy;
 import de.bmotionstudio.gef.editor.editpolicy.BMotionNodeEditPolicy;
 import de.bmotionstudio.gef.editor.figure.ShapeFigure;
 import de.bmotionstudio.gef.editor.model.BControl;
+import de.bmotionstudio.gef.editor.util.ImageCache.CachedImage;
 
 public class BShapePart extends AppAbstractEditPart {
 
@@ -92,16 +90,15 @@ public class BShapePart extends AppAbstractEditPart {
 		}
 
 		if (aID.equals(AttributeConstants.ATTRIBUTE_IMAGE)) {
-			Image img = null;
+			CachedImage img = null;
 			if (value != null) {
 				String imgPath = value.toString();
 				if (imgPath.length() > 0) {
 					IFile pFile = model.getVisualization().getProjectFile();
 					String myPath = (pFile.getProject().getLocation()
 							+ "/images/" + imgPath).replace("file:", "");
-					if (new File(myPath).exists()) {
-						img = new Image(Display.getDefault(), myPath);
-					}
+					img = model.getVisualization().getImageCache()
+							.acquire(myPath);
 				}
 			}
 			((ShapeFigure) figure).setImage(img);
@@ -0,0 +1,287 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen,
+ * Heinrich Heine Universitaet Duesseldorf
+ * This software is licenced under EPL 1.0 (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.bmotionstudio.gef.editor.util;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageLoader;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * A cache for the images shown by the figures of a visualization. Images are
+ * loaded once per file and modification time, scaled once per size, and
+ * shared by all figures that show them.
+ *
+ * Each {@link #acquire(String)} must be followed by a
+ * {@link CachedImage#release()} when the image is no longer shown. Images that
+ * are in use are never disposed. Images that are no longer in use are kept
+ * for later use until their total size exceeds the limit that can be set in
+ * megabytes with the system property {@value #MAX_SIZE_PROPERTY}, then the
+ * least recently used are disposed. All images are disposed with
+ * {@link #dispose()}.
+ */
+public class ImageCache {
+
+	public static final String MAX_SIZE_PROPERTY = "de.bmotionstudio.imagecache.size";
+
+	private static final int DEFAULT_MAX_SIZE = 16;
+
+	private static final int ORIGINAL_SIZE = -1;
+
+	private final long maxUnusedBytes;
+
+	private final Map<Key, CachedImage> images = new HashMap<Key, CachedImage>();
+
+	/** the images that are not in use, the least recently used first */
+	private final LinkedHashMap<Key, CachedImage> unused = new LinkedHashMap<Key, CachedImage>();
+
+	private long unusedBytes;
+
+	private boolean disposed;
+
+	public ImageCache() {
+		this.maxUnusedBytes = Integer.getInteger(MAX_SIZE_PROPERTY,
+				DEFAULT_MAX_SIZE) * 1024L * 1024L;
+	}
+
+	/**
+	 * Returns the image of the given file.
+	 *
+	 * @param path
+	 *            the absolute path of the image file
+	 * @return the image or <code>null</code> if the file does not exist or
+	 *         cannot be loaded
+	 */
+	public CachedImage acquire(String path) {
+		return acquire(path, null);
+	}
+
+	/**
+	 * Returns the image of the given file. If the image is not cached yet, it
+	 * is created from the given data, so that only the SWT images have to be
+	 * created in the UI thread.
+	 *
+	 * @param path
+	 *            the absolute path of the image file
+	 * @param data
+	 *            the frames of the file as returned by {@link #load(String)},
+	 *            or <code>null</code> to load them now
+	 * @return the image or <code>null</code> if the file does not exist or
+	 *         cannot be loaded
+	 */
+	public synchronized CachedImage acquire(String path, ImageData[] data) {
+		if (disposed)
+			return null;
+		long modified = new File(path).lastModified();
+		if (modified == 0L)
+			return null;
+		Key key = new Key(path, modified, ORIGINAL_SIZE, ORIGINAL_SIZE);
+		CachedImage image = use(key);
+		if (image == null) {
+			if (data == null)
+				data = load(path);
+			if (data == null || data.length == 0)
+				return null;
+			Image[] frames = new Image[data.length];
+			int[] delays = new int[data.length];
+			for (int i = 0; i < data.length; i++) {
+				frames[i] = new Image(Display.getDefault(), data[i]);
+				delays[i] = data[i].delayTime;
+			}
+			image = add(new CachedImage(key, frames, delays));
+		}
+		return image;
+	}
+
+	/**
+	 * Loads the frames of an image file. Unlike {@link #acquire(String)}, this
+	 * does not create SWT images and can be called in any thread.
+	 *
+	 * @return the frames or <code>null</code> if the file cannot be loaded
+	 */
+	public static ImageData[] load(String path) {
+		try {
+			return new ImageLoader().load(path);
+		} catch (SWTException e) {
+			return null;
+		}
+	}
+
+	private synchronized CachedImage acquireScaled(CachedImage original,
+			int width, int height) {
+		if (disposed || width <= 0 || height <= 0)
+			return null;
+		Key key = new Key(original.key.path, original.key.modified, width,
+				height);
+		CachedImage image = use(key);
+		if (image == null) {
+			ImageData data = original.getImage().getImageData()
+					.scaledTo(width, height);
+			image = add(new CachedImage(key, new Image[] { new Image(
+					Display.getDefault(), data) }, new int[] { 0 }));
+		}
+		return image;
+	}
+
+	private CachedImage use(Key key) {
+		CachedImage image = images.get(key);
+		if (image != null) {
+			if (image.references == 0) {
+				unused.remove(key);
+				unusedBytes -= image.bytes;
+			}
+			image.references++;
+		}
+		return image;
+	}
+
+	private CachedImage add(CachedImage image) {
+		images.put(image.key, image);
+		image.references = 1;
+		return image;
+	}
+
+	private synchronized void release(CachedImage image) {
+		if (disposed || image.references == 0)
+			return;
+		image.references--;
+		if (image.references == 0) {
+			unused.put(image.key, image);
+			unusedBytes += image.bytes;
+			evict();
+		}
+	}
+
+	private void evict() {
+		Iterator<CachedImage> it = unused.values().iterator();
+		while (unusedBytes > maxUnusedBytes && it.hasNext()) {
+			CachedImage image = it.next();
+			it.remove();
+			images.remove(image.key);
+			unusedBytes -= image.bytes;
+			image.disposeFrames();
+		}
+	}
+
+	/**
+	 * Disposes all images, including those still in use. Later calls of
+	 * {@link #acquire(String)} return <code>null</code>.
+	 */
+	public synchronized void dispose() {
+		disposed = true;
+		for (CachedImage image : images.values())
+			image.disposeFrames();
+		images.clear();
+		unused.clear();
+		unusedBytes = 0;
+	}
+
+	/**
+	 * An image of the cache. GIF files can have several frames, all other
+	 * images have exactly one.
+	 */
+	public final class CachedImage {
+
+		private final Key key;
+		private final Image[] frames;
+		private final int[] delays;
+		private final long bytes;
+		private int references;
+
+		private CachedImage(Key key, Image[] frames, int[] delays) {
+			this.key = key;
+			this.frames = frames;
+			this.delays = delays;
+			long size = 0;
+			for (Image frame : frames) {
+				size += 4L * frame.getBounds().width * frame.getBounds().height;
+			}
+			this.bytes = size;
+		}
+
+		public Image getImage() {
+			return frames[0];
+		}
+
+		public int getFrameCount() {
+			return frames.length;
+		}
+
+		public Image getFrame(int index) {
+			return frames[index];
+		}
+
+		/**
+		 * @return the time to show the frame in hundredths of a second
+		 */
+		public int getDelay(int index) {
+			return delays[index];
+		}
+
+		/**
+		 * Returns the first frame of this image scaled to the given size, to be
+		 * released like this image.
+		 */
+		public CachedImage acquireScaled(int width, int height) {
+			return ImageCache.this.acquireScaled(this, width, height);
+		}
+
+		/**
+		 * Tells the cache that the image is no longer shown by the caller.
+		 */
+		public void release() {
+			ImageCache.this.release(this);
+		}
+
+		private void disposeFrames() {
+			for (Image frame : frames) {
+				if (!frame.isDisposed())
+					frame.dispose();
+			}
+		}
+
+	}
+
+	private static final class Key {
+
+		private final String path;
+		private final long modified;
+		private final int width;
+		private final int height;
+
+		private Key(String path, long modified, int width, int height) {
+			this.path = path;
+			this.modified = modified;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return path.equals(other.path) && modified == other.modified
+					&& width == other.width && height == other.height;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((path.hashCode() * 31 + (int) (modified ^ (modified >>> 32))) * 31 + width)
+					* 31 + height;
+		}
+
+	}
+
+}
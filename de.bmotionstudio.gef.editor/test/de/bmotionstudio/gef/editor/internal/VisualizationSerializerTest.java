@@ -0,0 +1,83 @@
+package de.bmotionstudio.gef.editor.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.bmotionstudio.gef.editor.model.Visualization;
+
+/**
+ * Unit test for the {@link VisualizationSerializer}.
+ */
+public final class VisualizationSerializerTest {
+
+	@After
+	public void tearDown() {
+		System.clearProperty(VisualizationSerializer.FORMAT_PROPERTY);
+	}
+
+	@Test
+	public void testXMLIsDefault() throws IOException {
+		final String xml = new String(write(createVisualization()), "UTF-8");
+		assertTrue(xml.startsWith("<visualization"));
+	}
+
+	@Test
+	public void testBinaryIsOptIn() throws IOException {
+		System.setProperty(VisualizationSerializer.FORMAT_PROPERTY, "binary");
+		final byte[] binary = write(createVisualization());
+		assertFalse(new String(binary, "UTF-8").startsWith("<"));
+		assertEquals('B', binary[0]);
+
+		final Visualization read = read(binary);
+		assertEquals("Machine", read.getMachineName());
+		assertEquals("EventB", read.getLanguage());
+	}
+
+	@Test
+	public void testXMLRoundTrip() throws IOException {
+		final byte[] xml = writeXML(createVisualization());
+		assertEquals(new String(xml, "UTF-8"), new String(
+				writeXML(read(xml)), "UTF-8"));
+	}
+
+	@Test
+	public void testXMLToBinaryAndBack() throws IOException {
+		final byte[] xml = writeXML(createVisualization());
+		final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		VisualizationSerializer.writeBinary(read(xml), binary);
+
+		final Visualization fromBinary = read(binary.toByteArray());
+		assertEquals(new String(xml, "UTF-8"), new String(
+				writeXML(fromBinary), "UTF-8"));
+	}
+
+	private static Visualization createVisualization() {
+		return new Visualization("Machine", "EventB", "5.3.0");
+	}
+
+	private static byte[] write(final Visualization visualization)
+			throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		VisualizationSerializer.write(visualization, out);
+		return out.toByteArray();
+	}
+
+	private static byte[] writeXML(final Visualization visualization)
+			throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		VisualizationSerializer.writeXML(visualization, out);
+		return out.toByteArray();
+	}
+
+	private static Visualization read(final byte[] bytes) throws IOException {
+		return VisualizationSerializer.read(new ByteArrayInputStream(bytes));
+	}
+}
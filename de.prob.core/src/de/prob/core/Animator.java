@@ -8,18 +8,33 @@ package de.prob.core;
 
 import java.io.File;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.osgi.service.prefs.Preferences;
 
+import de.prob.core.command.ICacheableCommand;
 import de.prob.core.command.IComposableCommand;
+import de.prob.core.command.IReadOnlyCommand;
 import de.prob.core.domainobjects.History;
 import de.prob.core.domainobjects.MachineDescription;
 import de.prob.core.domainobjects.Operation;
 import de.prob.core.domainobjects.RandomSeed;
 import de.prob.core.domainobjects.State;
+import de.prob.core.domainobjects.StateCache;
 import de.prob.core.internal.Activator;
 import de.prob.core.internal.AnimatorImpl;
+import de.prob.core.internal.CommandQueue;
+import de.prob.core.internal.ProBProcessStandby;
 import de.prob.core.internal.ServerTraceConnection;
 import de.prob.core.internal.TraceConnectionProvider;
 import de.prob.exceptions.ProBException;
@@ -45,6 +60,17 @@ public final class Animator {
 	private IConnectionProvider connectionProvider = null;
 	private volatile boolean dirty;
 	private final Map<Object, Object> dataStore = new HashMap<Object, Object>();
+	private final ProBProcessStandby standby = new ProBProcessStandby();
+	private final StateCache stateCache = new StateCache();
+	private final CommandQueue commandQueue = new CommandQueue();
+	private final ExecutorService asyncExecutor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "ProB Command");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
 
 	private AnimatorImpl implementation;
 
@@ -78,18 +104,37 @@ public final class Animator {
 		killAndLoad(null);
 	}
 
+	/**
+	 * Like {@link #killAndReload()}, but the new ProB core is started with the
+	 * given file. If a standby process for the file has been started before,
+	 * it replaces the current process immediately and a new standby process
+	 * is started in the background.
+	 */
 	public final static void killAndLoad(final File file) {
-		synchronized (animator) {
-			animator.killImplementation();
-			animator.createNewImplementation(file);
+		// wait until the running command has finished
+		final CommandQueue.Ticket ticket = animator.commandQueue.enqueue(
+				CommandPriority.INTERACTIVE, Long.MAX_VALUE);
+		animator.commandQueue.awaitUninterruptibly(ticket);
+		try {
+			synchronized (animator) {
+				animator.killImplementation();
+				animator.createNewImplementation(file);
+			}
+		} finally {
+			animator.commandQueue.release(ticket);
 		}
-
 	}
 
 	private final synchronized void createNewImplementation(final File file) {
-		final AnimatorImpl impl = new AnimatorImpl(getIServerConnection(), file);
+		final IConnectionProvider provider = getConnectionProvider();
+		final IServerConnection standbyConnection = standby.take(provider,
+				file);
+		final AnimatorImpl impl = standbyConnection == null ? new AnimatorImpl(
+				provider.getISeverConnection(), file) : AnimatorImpl
+				.createWithStartedConnection(standbyConnection, file);
 		setImplementation(impl);
 		StaticListenerRegistry.registerComputationListener(getHistory());
+		standby.prepare(provider, file);
 	}
 
 	private synchronized void setImplementation(final AnimatorImpl impl) {
@@ -102,6 +147,7 @@ public final class Animator {
 			StaticListenerRegistry.unregisterComputationListener(history);
 			implementation.shutdownImplementation();
 			implementation = null;
+			stateCache.clear();
 		}
 	}
 
@@ -111,15 +157,13 @@ public final class Animator {
 	}
 
 	/**
-	 * This constructor is only for Unit-Tests. Use the
-	 * AnimatorTestFactory#create method to create new Instance instrumented
-	 * with a particular Implementation. Note, that this actually creates a new
-	 * Animator instance, that is different from the one that is received from
-	 * {@link Animator#getAnimator()}
+	 * This constructor is only for Unit-Tests. Note, that this actually
+	 * creates a new Animator instance, that is different from the one that is
+	 * received from {@link Animator#getAnimator()}
 	 * 
 	 * @param impl
 	 */
-	private Animator(final AnimatorImpl impl) {
+	Animator(final AnimatorImpl impl) {
 		setImplementation(impl);
 	}
 
@@ -127,6 +171,7 @@ public final class Animator {
 	 * Kills the implementation, i.e. the underlying instance of ProB
 	 */
 	public final synchronized void shutdown() {
+		standby.discard();
 		if (implementation != null) {
 			implementation.shutdownImplementation();
 		}
@@ -137,6 +182,9 @@ public final class Animator {
 	 * Announces the reset event to all registered {@link ILifecycleListener}.
 	 */
 	public void announceReset() {
+		getImplementation().resetWorkers();
+		getImplementation().clearResultCache();
+		stateCache.clear();
 		getHistory().reset();
 		Activator.reset();
 	}
@@ -148,8 +196,11 @@ public final class Animator {
 	 * mode is enabled, the animator does not propagate the information to all
 	 * listeners but only to its own implementation (to prevent the GUI from
 	 * displaying all changes during model checking).
+	 * 
+	 * The listeners are notified without holding the animator's monitor,
+	 * they may execute commands.
 	 */
-	public synchronized void announceCurrentStateChanged(final State state,
+	public void announceCurrentStateChanged(final State state,
 			final Operation operation) {
 		Activator.currentStateChanged(state, operation);
 	}
@@ -165,13 +216,172 @@ public final class Animator {
 
 	// ------------------ Delegates
 
-	public final synchronized void execute(final IComposableCommand command)
+	/**
+	 * Executes a command with {@link CommandPriority#NORMAL}, see
+	 * {@link #execute(IComposableCommand, CommandPriority)}.
+	 */
+	public final void execute(final IComposableCommand command)
 			throws ProBException {
+		execute(command, CommandPriority.NORMAL);
+	}
+
+	/**
+	 * Executes a command. {@link ICacheableCommand}s that have been executed
+	 * before for the loaded machine are answered without asking ProB.
+	 * {@link IReadOnlyCommand}s are executed by an idle
+	 * worker process if there is one (see
+	 * {@link de.prob.core.internal.ProBProcessPool}), without blocking other
+	 * commands. All other commands are executed one after the other by the
+	 * primary ProB process, waiting commands are sent in the order of their
+	 * priority. A command that is executed while the current thread executes
+	 * another command (e.g. from a listener) runs right away.
+	 */
+	public final void execute(final IComposableCommand command,
+			final CommandPriority priority) throws ProBException {
 		LimitedLogger.getLogger().log("execute command", command, null);
-		getImplementation().execute(command);
+		if (getImplementation().answerFromCache(command)) {
+			LimitedLogger.getLogger().log("command answered from cache",
+					command, null);
+			return;
+		}
+		if (!executeOnWorker(command)) {
+			final CommandQueue.Ticket ticket = commandQueue.enqueue(priority,
+					Long.MAX_VALUE);
+			commandQueue.awaitUninterruptibly(ticket);
+			executeOnPrimary(command, ticket);
+		}
 		LimitedLogger.getLogger().log("command executed", command, null);
 	}
 
+	/**
+	 * Executes a command in the background, see
+	 * {@link #executeAsync(IComposableCommand, CommandPriority, long, TimeUnit)}
+	 * , without a deadline.
+	 */
+	public final <T extends IComposableCommand> Future<T> executeAsync(
+			final T command, final CommandPriority priority) {
+		return executeAsync(command, priority, -1, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Executes a command in the background like
+	 * {@link #execute(IComposableCommand, CommandPriority)}. The returned
+	 * future yields the command itself, to read its results, or fails with the
+	 * {@link ProBException} of the command.
+	 * 
+	 * Cancelling the future only has an effect while the command is waiting
+	 * for the ProB process, a command that has been sent is always completed.
+	 * The same holds for the deadline: if the command cannot be sent within
+	 * the given time, it is dropped and the future fails with a
+	 * {@link TimeoutException}.
+	 * 
+	 * If the current thread executes a command, the command is executed
+	 * before this method returns, because the current thread could not wait
+	 * for the future otherwise.
+	 * 
+	 * @param timeout
+	 *            the maximal time to wait for the ProB process, or a negative
+	 *            number to wait as long as necessary
+	 */
+	public final <T extends IComposableCommand> Future<T> executeAsync(
+			final T command, final CommandPriority priority,
+			final long timeout, final TimeUnit unit) {
+		final long deadline = timeout < 0 ? Long.MAX_VALUE : System
+				.nanoTime() + unit.toNanos(timeout);
+		// read-only commands only take a place in the queue if no worker
+		// process is idle, other commands keep the order of submission
+		final boolean readOnly = command instanceof IReadOnlyCommand;
+		final AtomicReference<CommandQueue.Ticket> ticket = new AtomicReference<CommandQueue.Ticket>(
+				readOnly ? null : commandQueue.enqueue(priority, deadline));
+		final FutureTask<T> future = new FutureTask<T>(new Callable<T>() {
+			public T call() throws ProBException, InterruptedException,
+					TimeoutException {
+				LimitedLogger.getLogger().log("execute command", command,
+						null);
+				if (getImplementation().answerFromCache(command)) {
+					if (ticket.get() != null) {
+						commandQueue.cancel(ticket.get());
+					}
+					LimitedLogger.getLogger().log(
+							"command answered from cache", command, null);
+					return command;
+				}
+				if (!readOnly || !executeOnWorker(command)) {
+					if (readOnly) {
+						ticket.set(commandQueue.enqueue(priority, deadline));
+					}
+					if (!commandQueue.await(ticket.get()))
+						throw new TimeoutException(
+								"ProB was busy until the deadline of the command");
+					executeOnPrimary(command, ticket.get());
+				}
+				LimitedLogger.getLogger().log("command executed", command,
+						null);
+				return command;
+			}
+		}) {
+			@Override
+			public boolean cancel(final boolean mayInterruptIfRunning) {
+				// a command that has been sent cannot be taken back, only
+				// the result of a read-only command is discarded
+				final CommandQueue.Ticket queued = ticket.get();
+				if (queued != null && !commandQueue.cancel(queued))
+					return false;
+				return super.cancel(false);
+			}
+		};
+		if (commandQueue.isHeldByCurrentThread()) {
+			future.run();
+		} else {
+			asyncExecutor.execute(future);
+		}
+		return future;
+	}
+
+	private boolean executeOnWorker(final IComposableCommand command)
+			throws ProBException {
+		return command instanceof IReadOnlyCommand
+				&& getImplementation().executeOnWorker(
+						(IReadOnlyCommand) command);
+	}
+
+	private void executeOnPrimary(final IComposableCommand command,
+			final CommandQueue.Ticket ticket) throws ProBException {
+		// the queue serializes the commands, the animator's monitor must not
+		// be held because listeners that are notified while the result is
+		// processed may need it
+		try {
+			getImplementation().execute(command);
+		} finally {
+			commandQueue.release(ticket);
+		}
+	}
+
+	/**
+	 * Executes several independent commands. In contrast to a
+	 * {@link de.prob.core.command.ComposedCommand}, each command is sent as a
+	 * query of its own, but all queries are sent to ProB before waiting for
+	 * the first answer. Use this when many small commands would otherwise pay
+	 * one round trip each. The commands take one place in the queue with
+	 * {@link CommandPriority#NORMAL}.
+	 */
+	public final void executePipelined(
+			final List<? extends IComposableCommand> commands)
+			throws ProBException {
+		LimitedLogger.getLogger().log("execute pipelined commands", commands,
+				null);
+		final CommandQueue.Ticket ticket = commandQueue.enqueue(
+				CommandPriority.NORMAL, Long.MAX_VALUE);
+		commandQueue.awaitUninterruptibly(ticket);
+		try {
+			getImplementation().executePipelined(commands);
+		} finally {
+			commandQueue.release(ticket);
+		}
+		LimitedLogger.getLogger().log("pipelined commands executed", commands,
+				null);
+	}
+
 	/**
 	 * @return The model's current state
 	 */
@@ -211,17 +421,17 @@ public final class Animator {
 	}
 
 	/**
-	 * @return {@link IServerConnection}, by default (that means
-	 *         <code>connectionProvider == null</code>) the
-	 *         {@link ServerTraceConnection}. If a {@link IConnectionProvider}
-	 *         is set, it is asked to provide a new IServerConnection
+	 * @return {@link IConnectionProvider}, by default (that means
+	 *         <code>connectionProvider == null</code>) one that provides
+	 *         {@link ServerTraceConnection}s. If a {@link IConnectionProvider}
+	 *         is set, it is asked to provide new IServerConnections
 	 * 
 	 */
-	private final synchronized IServerConnection getIServerConnection() {
+	private final synchronized IConnectionProvider getConnectionProvider() {
 		if (connectionProvider == null) {
 			connectionProvider = new TraceConnectionProvider();
 		}
-		return connectionProvider.getISeverConnection();
+		return connectionProvider;
 	}
 
 	/**
@@ -243,6 +453,14 @@ public final class Animator {
 		getImplementation().setSeed(seed);
 	}
 
+	/**
+	 * Forgets the answers of all {@link ICacheableCommand}s, because the
+	 * loaded machine or the preferences have changed.
+	 */
+	public void clearResultCache() {
+		getImplementation().clearResultCache();
+	}
+
 	// just for testing
 	private Preferences customConfiguration;
 
@@ -307,6 +525,14 @@ public final class Animator {
 		getImplementation().setLangdep(ldPart);
 	}
 
+	/**
+	 * @return the cache for states and evaluated expressions of the current
+	 *         animation
+	 */
+	public StateCache getStateCache() {
+		return stateCache;
+	}
+
 	/**
 	 * Each animator instance provides a possibility to store arbitrary data
 	 * related to this animator. E.g., this can be used for caching. This method
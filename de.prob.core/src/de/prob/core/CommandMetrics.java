@@ -0,0 +1,315 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import de.prob.logging.Logger;
+
+/**
+ * Measures where the time goes when commands are sent to ProB. For every
+ * command class, a {@link Histogram} is kept for each {@link Metric}: the time
+ * to write the query, the size of the query, the time until ProB's answer
+ * arrived, the size of the answer, the time to parse the answer and the time
+ * the command needed to process the bindings.
+ *
+ * The measurements are published as an MBean with the name
+ * {@value #OBJECT_NAME} and are shown in the log view. The MBean also reports
+ * the hit rate of the {@link Animator}'s state cache. They can be switched
+ * off by setting the system property {@value #ENABLED_PROPERTY} to
+ * <code>false</code>.
+ */
+public final class CommandMetrics implements CommandMetricsMBean {
+	public static final String ENABLED_PROPERTY = "de.prob.core.metrics";
+	public static final String OBJECT_NAME = "de.prob.core:type=CommandMetrics";
+
+	private static final CommandMetrics METRICS = createMetrics();
+
+	/**
+	 * The quantities that are measured for each command.
+	 */
+	public enum Metric {
+		ENCODING("encoding", true), SENT("sent", false), PROLOG_WAIT(
+				"Prolog", true), RECEIVED("received", false), PARSING(
+				"parsing", true), BINDING("binding", true);
+
+		private final String label;
+		private final boolean time;
+
+		private Metric(final String label, final boolean time) {
+			this.label = label;
+			this.time = time;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		/**
+		 * @return <code>true</code> if the metric is a time in nanoseconds,
+		 *         <code>false</code> if it is a size in bytes
+		 */
+		public boolean isTime() {
+			return time;
+		}
+	}
+
+	/**
+	 * The measurements of a single execution of a command. Metrics that have
+	 * not been measured are not recorded.
+	 */
+	public static final class Sample {
+		private final long[] values = new long[Metric.values().length];
+
+		public Sample() {
+			Arrays.fill(values, -1);
+		}
+
+		public void set(final Metric metric, final long value) {
+			values[metric.ordinal()] = value;
+		}
+
+		/**
+		 * Sets the metric to the time that has passed since the given start.
+		 * 
+		 * @return the current time, to be used as the start of the next
+		 *         metric
+		 */
+		public long setElapsed(final Metric metric, final long start) {
+			final long now = System.nanoTime();
+			set(metric, now - start);
+			return now;
+		}
+	}
+
+	/**
+	 * The measurements of all executions of one command class.
+	 */
+	public static final class Entry {
+		private final String name;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+		private final Histogram[] histograms = new Histogram[Metric.values().length];
+
+		private Entry(final String name) {
+			this.name = name;
+			for (int i = 0; i < histograms.length; i++) {
+				histograms[i] = new Histogram();
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		/**
+		 * @return how often ProB reported errors or the answer could not be
+		 *         processed
+		 */
+		public long getFailures() {
+			return failures.get();
+		}
+
+		public Histogram getHistogram(final Metric metric) {
+			return histograms[metric.ordinal()];
+		}
+
+		/**
+		 * @return the sum of all measured times in nanoseconds
+		 */
+		public long getTotalTime() {
+			long total = 0;
+			for (final Metric metric : Metric.values()) {
+				if (metric.isTime()) {
+					total += getHistogram(metric).getSum();
+				}
+			}
+			return total;
+		}
+
+		private void reset() {
+			count.set(0);
+			failures.set(0);
+			for (final Histogram histogram : histograms) {
+				histogram.reset();
+			}
+		}
+
+		/**
+		 * @return the median and the 99th percentile of all metrics
+		 */
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder(name);
+			sb.append(": ").append(getCount()).append(" calls, ")
+					.append(getFailures()).append(" failed, total ")
+					.append(formatTime(getTotalTime())).append(" ms");
+			for (final Metric metric : Metric.values()) {
+				final Histogram histogram = getHistogram(metric);
+				sb.append(", ").append(metric.getLabel()).append(' ')
+						.append(format(metric,
+								histogram.getValueAtPercentile(50)))
+						.append('/').append(format(metric,
+								histogram.getValueAtPercentile(99)));
+				sb.append(metric.isTime() ? " ms" : " B");
+			}
+			return sb.toString();
+		}
+	}
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final boolean enabled;
+
+	private CommandMetrics(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	private static CommandMetrics createMetrics() {
+		final String property = System.getProperty(ENABLED_PROPERTY);
+		final CommandMetrics metrics = new CommandMetrics(property == null
+				|| Boolean.parseBoolean(property));
+		if (metrics.enabled) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(
+						metrics, new ObjectName(OBJECT_NAME));
+			} catch (JMException e) {
+				Logger.info("Command metrics are not published via JMX: "
+						+ e.getLocalizedMessage());
+			}
+		}
+		return metrics;
+	}
+
+	public static CommandMetrics getMetrics() {
+		return METRICS;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Adds the measurements of one execution of a command.
+	 * 
+	 * @param failed
+	 *            if ProB reported errors or the answer could not be processed
+	 */
+	public void record(final Class<?> command, final Sample sample,
+			final boolean failed) {
+		if (!enabled)
+			return;
+		final Entry entry = getEntry(command.getSimpleName());
+		entry.count.incrementAndGet();
+		if (failed) {
+			entry.failures.incrementAndGet();
+		}
+		for (final Metric metric : Metric.values()) {
+			entry.getHistogram(metric).record(sample.values[metric.ordinal()]);
+		}
+	}
+
+	private Entry getEntry(final String name) {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			final Entry created = new Entry(name);
+			entry = entries.putIfAbsent(name, created);
+			if (entry == null) {
+				entry = created;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the entries of all commands, the commands that took the most
+	 *         time first
+	 */
+	public List<Entry> getEntries() {
+		final List<Entry> result = new ArrayList<Entry>(entries.values());
+		Collections.sort(result, new Comparator<Entry>() {
+			public int compare(final Entry e1, final Entry e2) {
+				final long t1 = e1.getTotalTime();
+				final long t2 = e2.getTotalTime();
+				return t1 > t2 ? -1 : (t1 == t2 ? 0 : 1);
+			}
+		});
+		return result;
+	}
+
+	public String[] getCommandNames() {
+		final List<Entry> sorted = getEntries();
+		final String[] names = new String[sorted.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = sorted.get(i).getName();
+		}
+		return names;
+	}
+
+	public String[] getSummary() {
+		final List<Entry> sorted = getEntries();
+		final String[] lines = new String[sorted.size()];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = sorted.get(i).toString();
+		}
+		return lines;
+	}
+
+	public long getCount(final String command) {
+		final Entry entry = entries.get(command);
+		return entry == null ? 0 : entry.getCount();
+	}
+
+	public double getValueAtPercentile(final String command,
+			final String metric, final double percentile) {
+		final Entry entry = entries.get(command);
+		if (entry == null)
+			return 0;
+		final Metric m = Metric.valueOf(metric);
+		final long value = entry.getHistogram(m).getValueAtPercentile(
+				percentile);
+		return m.isTime() ? value / 1e6 : value;
+	}
+
+	public double getStateCacheHitRate() {
+		return Animator.getAnimator().getStateCache().getHitRate();
+	}
+
+	public void reset() {
+		for (final Entry entry : entries.values()) {
+			entry.reset();
+		}
+	}
+
+	/**
+	 * Formats a value of the metric, times in milliseconds.
+	 */
+	public static String format(final Metric metric, final long value) {
+		return metric.isTime() ? formatTime(value) : String.valueOf(value);
+	}
+
+	/**
+	 * Formats a time in nanoseconds as milliseconds.
+	 */
+	public static String formatTime(final long nanos) {
+		return String.format("%.3f", nanos / 1e6);
+	}
+}
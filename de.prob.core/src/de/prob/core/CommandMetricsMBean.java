@@ -0,0 +1,53 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core;
+
+/**
+ * The management interface of {@link CommandMetrics}, registered at the
+ * platform MBean server as {@value CommandMetrics#OBJECT_NAME}.
+ */
+public interface CommandMetricsMBean {
+
+	/**
+	 * @return the names of all commands that have been executed
+	 */
+	String[] getCommandNames();
+
+	/**
+	 * @return one line per command, the commands that took the most time
+	 *         first
+	 */
+	String[] getSummary();
+
+	/**
+	 * @return how often the command has been executed
+	 */
+	long getCount(String command);
+
+	/**
+	 * @param metric
+	 *            the name of a {@link CommandMetrics.Metric}
+	 * @param percentile
+	 *            a number between 0 and 100
+	 * @return the value of the metric at the given percentile, times in
+	 *         milliseconds and sizes in bytes
+	 */
+	double getValueAtPercentile(String command, String metric,
+			double percentile);
+
+	/**
+	 * @return the ratio of the requests to the {@link Animator}'s
+	 *         {@link de.prob.core.domainobjects.StateCache} that have been
+	 *         answered from the cache
+	 */
+	double getStateCacheHitRate();
+
+	/**
+	 * Forgets all measurements.
+	 */
+	void reset();
+}
@@ -0,0 +1,23 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core;
+
+/**
+ * The order in which commands that wait for the ProB process are sent to it.
+ * When the process becomes free, the waiting command with the highest
+ * priority goes next, commands of the same priority in the order in which
+ * they have been submitted. A command that has already been sent is never
+ * interrupted by one with a higher priority.
+ */
+public enum CommandPriority {
+	/** commands the user is waiting for, e.g. executing an operation */
+	INTERACTIVE,
+	/** the default for all commands */
+	NORMAL,
+	/** long running computations in slices, e.g. model checking */
+	BACKGROUND
+}
@@ -0,0 +1,115 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts non-negative values in buckets of logarithmically growing width, in
+ * the manner of an HDR histogram. Values below {@value #SUB_BUCKETS} are
+ * counted exactly, each larger power of two is divided into
+ * {@value #SUB_BUCKETS} buckets of equal width. So every value is recorded
+ * with a relative error of at most 1/{@value #SUB_BUCKETS}, with a fixed
+ * number of buckets for the whole range of <code>long</code>.
+ *
+ * Recording is lock-free and may be done by several threads. The statistics
+ * read while values are recorded may be slightly inconsistent.
+ */
+public final class Histogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param value
+	 *            the value to record, negative values are ignored
+	 */
+	public void record(final long value) {
+		if (value < 0)
+			return;
+		counts.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		final long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * @param percentile
+	 *            a number between 0 and 100
+	 * @return the largest value that falls into the same bucket as the value
+	 *         at the given percentile, or 0 if no value has been recorded
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		final long n = count.get();
+		if (n == 0)
+			return 0;
+		final long rank = Math.max(1,
+				(long) Math.ceil(Math.min(percentile, 100) / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(highestValueInBucket(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forgets all recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	private static int bucket(final long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int shift = exponent - SUB_BUCKET_BITS;
+		final int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long highestValueInBucket(final int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		final int shift = bucket / SUB_BUCKETS - 1;
+		final long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core;
+
+import de.prob.exceptions.ProBException;
+
+/**
+ * An {@link IServerConnection} that allows several queries to be in flight at
+ * the same time. Queries are written to ProB immediately, each one is tagged
+ * with a request id and its answer can be fetched later with
+ * {@link PendingAnswer#getAnswer()}.
+ *
+ * ProB processes the queries in the order they have been sent, so answers are
+ * matched to their request ids in that order. It is safe to mix pipelined
+ * queries and ordinary calls to {@link #sendCommand(String)}.
+ */
+public interface IPipelinedServerConnection extends IServerConnection {
+
+	/**
+	 * The answer of a query that has been sent to ProB but not necessarily
+	 * been answered yet.
+	 */
+	public interface PendingAnswer {
+		/**
+		 * @return the unique id of the request
+		 */
+		long getRequestId();
+
+		/**
+		 * Blocks until ProB answered the query. Answers of queries that were
+		 * sent earlier are read (and kept for their requests) on the way.
+		 *
+		 * @return the raw answer of ProB
+		 * @throws ProBException
+		 *             if the connection failed before the answer was received
+		 */
+		String getAnswer() throws ProBException;
+
+		/**
+		 * @return <code>true</code> if the answer has already been received
+		 */
+		boolean isAnswered();
+	}
+
+	/**
+	 * Sends a query to ProB without waiting for its answer.
+	 *
+	 * @param commandString
+	 *            the query, ending with a full stop
+	 * @return a handle to retrieve the answer
+	 * @throws ProBException
+	 *             if the query could not be sent
+	 */
+	public abstract PendingAnswer sendCommandPipelined(
+			final String commandString) throws ProBException;
+
+	/**
+	 * @return the number of queries that have been sent, but whose answers
+	 *         have not been read yet
+	 */
+	int getNumberOfPendingAnswers();
+}
@@ -3,6 +3,10 @@
  */
 package de.prob.core;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -13,9 +17,10 @@ import de.prob.core.internal.Activator;
 import de.prob.exceptions.ProBException;
 
 /**
- * This jobs takes a command as argument and executes its during the run. If the
- * user selects cancel, the animator is asked to send an user interruption
- * signal to the Prolog core.
+ * This jobs takes a command as argument and executes its during the run, with
+ * {@link CommandPriority#BACKGROUND}. If the user selects cancel while the
+ * command is still waiting for ProB, it is not sent at all, otherwise the
+ * animator is asked to send an user interruption signal to the Prolog core.
  * 
  * @author plagge
  */
@@ -23,6 +28,7 @@ public class ProBCommandJob extends Job {
 	private final Animator animator;
 	private final IComposableCommand command;
 
+	private volatile Future<IComposableCommand> future;
 	private boolean commandFailed = false;
 
 	public ProBCommandJob(final String name, final Animator animator,
@@ -37,11 +43,23 @@ public class ProBCommandJob extends Job {
 		Activator.getDefault().registerJob(this);
 		monitor.beginTask(getName(), IProgressMonitor.UNKNOWN);
 		commandFailed = false;
+		future = animator.executeAsync(command, CommandPriority.BACKGROUND);
+		if (monitor.isCanceled()) {
+			canceling();
+		}
 		try {
-			animator.execute(command);
-		} catch (ProBException e) {
+			future.get();
+		} catch (CancellationException e) {
+			commandFailed = true;
+			return Status.CANCEL_STATUS;
+		} catch (InterruptedException e) {
 			commandFailed = true;
-			e.notifyUserOnce();
+			return Status.CANCEL_STATUS;
+		} catch (ExecutionException e) {
+			commandFailed = true;
+			if (e.getCause() instanceof ProBException) {
+				((ProBException) e.getCause()).notifyUserOnce();
+			}
 			return Status.CANCEL_STATUS;
 		}
 		return Status.OK_STATUS;
@@ -49,7 +67,10 @@ public class ProBCommandJob extends Job {
 
 	@Override
 	protected void canceling() {
-		animator.sendUserInterruptSignal();
+		final Future<IComposableCommand> queued = future;
+		if (queued != null && !queued.isDone() && !queued.cancel(false)) {
+			animator.sendUserInterruptSignal();
+		}
 	}
 
 	public IComposableCommand getCommand() {
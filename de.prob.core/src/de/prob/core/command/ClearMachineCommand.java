@@ -34,6 +34,7 @@ public class ClearMachineCommand implements IComposableCommand {
 		cmd.processResult(bindings);
 		final Animator animator = Animator.getAnimator();
 		animator.setRandomSeed(getRandomSeed.getSeed());
+		animator.clearResultCache();
 	}
 
 	public void writeCommand(final IPrologTermOutput pto)
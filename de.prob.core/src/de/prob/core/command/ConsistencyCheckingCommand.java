@@ -9,13 +9,15 @@ package de.prob.core.command;
 import java.util.List;
 
 import de.prob.core.Animator;
+import de.prob.core.CommandPriority;
 import de.prob.exceptions.ProBException;
 import de.prob.parser.ISimplifiedROMap;
 import de.prob.prolog.output.IPrologTermOutput;
 import de.prob.prolog.term.CompoundPrologTerm;
 import de.prob.prolog.term.PrologTerm;
 
-public final class ConsistencyCheckingCommand implements IComposableCommand {
+public final class ConsistencyCheckingCommand implements
+		INonReplayableCommand {
 	private final int time;
 	private final List<String> options;
 	private ModelCheckingResult<Result> result;
@@ -45,7 +47,8 @@ public final class ConsistencyCheckingCommand implements IComposableCommand {
 			final int time, final List<String> options) throws ProBException {
 		ConsistencyCheckingCommand command = new ConsistencyCheckingCommand(
 				time, options);
-		a.execute(command);
+		// slices of model checking must not hold up the user's commands
+		a.execute(command, CommandPriority.BACKGROUND);
 		return command.getResult();
 	}
 
@@ -22,7 +22,7 @@ import de.prob.prolog.term.PrologTerm;
  * @see EvaluationGetValuesCommand
  * @author plagge
  */
-public class EvaluationGetTopLevelCommand implements IComposableCommand {
+public class EvaluationGetTopLevelCommand implements ICacheableCommand {
 	private static final String FIRST_EXPANSION_VARNAME = "FE";
 
 	public static EvaluationElement[] retrieveTopLevelElements()
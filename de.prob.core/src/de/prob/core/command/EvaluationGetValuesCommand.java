@@ -7,16 +7,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 import de.prob.core.Animator;
 import de.prob.core.domainobjects.EvaluationElement;
 import de.prob.core.domainobjects.EvaluationStateElement;
-import de.prob.core.domainobjects.History;
-import de.prob.core.domainobjects.HistoryBasedCache;
 import de.prob.core.domainobjects.State;
+import de.prob.core.domainobjects.StateCache;
 import de.prob.eventb.translator.FormulaTranslator;
 import de.prob.exceptions.ProBException;
 import de.prob.parser.ISimplifiedROMap;
@@ -33,13 +33,11 @@ import de.prob.prolog.term.PrologTerm;
  * @see EvaluationGetTopLevelCommand
  * @author plagge
  */
-public class EvaluationGetValuesCommand implements IComposableCommand {
+public class EvaluationGetValuesCommand implements IReadOnlyCommand {
 	private static final String COMMAND_NAME = "evaluation_get_values";
 	private static final String VALUE_VARNAME = "Values";
 	private static final String TRUE = FormulaTranslator.translate("true");
 	private static final String FALSE = FormulaTranslator.translate("false");
-	private static final String CACHE_KEY = EvaluationGetValuesCommand.class
-			.getName() + ".valuecache";
 
 	/**
 	 * Ask ProB for the values of the given elements in the given state.
@@ -70,6 +68,11 @@ public class EvaluationGetValuesCommand implements IComposableCommand {
 		return result;
 	}
 
+	/**
+	 * Like {@link #getValuesForExpressionsUncached(State, Collection)}, but
+	 * values that are in the {@link StateCache} are taken from there and only
+	 * the others are sent to ProB.
+	 */
 	public static Collection<EvaluationStateElement> getValuesForExpressionsCached(
 			final State state, final Collection<EvaluationElement> elements)
 			throws ProBException {
@@ -77,28 +80,76 @@ public class EvaluationGetValuesCommand implements IComposableCommand {
 		if (state == null || elements.isEmpty()) {
 			result = Collections.emptyList();
 		} else {
-			final Map<EvaluationElement, EvaluationStateElement> cache = getCache(state);
-			synchronized (cache) {
-				Collection<EvaluationElement> toCompute = new HashSet<EvaluationElement>(
-						elements);
-				Collection<EvaluationElement> cached = cache.keySet();
-				toCompute.removeAll(cached);
-				Collection<EvaluationStateElement> computed = getValuesForExpressionsUncached(
-						state, toCompute);
-				for (final EvaluationStateElement dElement : computed) {
-					cache.put(dElement.getElement(), dElement);
+			final StateCache cache = Animator.getAnimator().getStateCache();
+			final Map<EvaluationElement, EvaluationStateElement> values = new HashMap<EvaluationElement, EvaluationStateElement>();
+			final Collection<EvaluationElement> toCompute = new LinkedHashSet<EvaluationElement>();
+			for (final EvaluationElement element : elements) {
+				final EvaluationStateElement cached = cache.getValue(state,
+						element);
+				if (cached == null) {
+					toCompute.add(element);
+				} else {
+					values.put(element, cached);
 				}
+			}
+			final Collection<EvaluationStateElement> computed = getValuesForExpressionsUncached(
+					state, toCompute);
+			for (final EvaluationStateElement dElement : computed) {
+				cache.putValue(dElement);
+				values.put(dElement.getElement(), dElement);
+			}
 
-				result = new ArrayList<EvaluationStateElement>(elements.size());
-				for (final EvaluationElement sElement : elements) {
-					result.add(cache.get(sElement));
-				}
-				result.addAll(computed);
+			result = new ArrayList<EvaluationStateElement>(elements.size());
+			for (final EvaluationElement sElement : elements) {
+				result.add(values.get(sElement));
 			}
 		}
 		return result;
 	}
 
+	/**
+	 * Puts the values of the given elements in all given states into the
+	 * {@link StateCache}. The values that are not already cached are
+	 * retrieved with one {@link EvaluationGetValuesCommand} per state, all
+	 * sent to ProB in a single {@link ComposedCommand}.
+	 */
+	public static void prefetchValuesCached(final Collection<State> states,
+			final Collection<EvaluationElement> elements) throws ProBException {
+		if (elements.isEmpty())
+			return;
+		final StateCache cache = Animator.getAnimator().getStateCache();
+		final List<State> queriedStates = new ArrayList<State>();
+		final List<EvaluationGetValuesCommand> cmds = new ArrayList<EvaluationGetValuesCommand>();
+		for (final State state : new LinkedHashSet<State>(states)) {
+			if (state == null) {
+				continue;
+			}
+			final Collection<EvaluationElement> toCompute = new LinkedHashSet<EvaluationElement>();
+			for (final EvaluationElement element : elements) {
+				if (cache.getValue(state, element) == null) {
+					toCompute.add(element);
+				}
+			}
+			if (!toCompute.isEmpty()) {
+				queriedStates.add(state);
+				cmds.add(new EvaluationGetValuesCommand(state.getId(),
+						toCompute));
+			}
+		}
+		if (cmds.isEmpty())
+			return;
+		Animator.getAnimator().execute(
+				cmds.size() == 1 ? cmds.get(0) : new ComposedCommand(cmds));
+		for (int i = 0; i < cmds.size(); i++) {
+			final State state = queriedStates.get(i);
+			for (final Map.Entry<EvaluationElement, EvaluationResult> entry : cmds
+					.get(i).getResult().entrySet()) {
+				cache.putValue(new EvaluationStateElement(entry.getKey(),
+						state, entry.getValue()));
+			}
+		}
+	}
+
 	public static EvaluationStateElement getSingleValueCached(
 			final State state, final EvaluationElement element)
 			throws ProBException {
@@ -106,44 +157,18 @@ public class EvaluationGetValuesCommand implements IComposableCommand {
 		if (state == null) {
 			result = null;
 		} else {
-			final Map<EvaluationElement, EvaluationStateElement> cache = getCache(state);
-			synchronized (cache) {
-				result = cache.get(element);
-				if (result == null) {
-					Collection<EvaluationStateElement> values = getValuesForExpressionsUncached(
-							state, Collections.singleton(element));
-					result = values.iterator().next();
-					cache.put(element, result);
-				}
+			final StateCache cache = Animator.getAnimator().getStateCache();
+			result = cache.getValue(state, element);
+			if (result == null) {
+				Collection<EvaluationStateElement> values = getValuesForExpressionsUncached(
+						state, Collections.singleton(element));
+				result = values.iterator().next();
+				cache.putValue(result);
 			}
 		}
 		return result;
 	}
 
-	@SuppressWarnings("unchecked")
-	private static Map<EvaluationElement, EvaluationStateElement> getCache(
-			final State state) {
-		Map<EvaluationElement, EvaluationStateElement> cache;
-		final Animator animator = Animator.getAnimator();
-		synchronized (animator) {
-			HistoryBasedCache<Map<EvaluationElement, EvaluationStateElement>> hcache = (HistoryBasedCache<Map<EvaluationElement, EvaluationStateElement>>) animator
-					.getData(CACHE_KEY);
-			if (hcache == null) {
-				History history = animator.getHistory();
-				hcache = new HistoryBasedCache<Map<EvaluationElement, EvaluationStateElement>>(
-						history);
-				history.addListener(hcache);
-				animator.setData(CACHE_KEY, hcache);
-			}
-			cache = hcache.get(state);
-			if (cache == null) {
-				cache = new HashMap<EvaluationElement, EvaluationStateElement>();
-				hcache.put(state, cache);
-			}
-		}
-		return cache;
-	}
-
 	private final String stateId;
 	private final Collection<EvaluationElement> elements;
 
@@ -3,6 +3,11 @@
  */
 package de.prob.core.command;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import de.prob.core.Animator;
 import de.prob.core.LanguageDependendAnimationPart;
 import de.prob.core.domainobjects.EvaluationElement;
@@ -55,20 +60,60 @@ public class EvaluationInsertFormulaCommand implements IComposableCommand {
 	public static EvaluationElement insertFormula(final Animator animator,
 			final FormulaType type, final String formula) throws ProBException,
 			UnsupportedOperationException, ProBParseException {
+		return insertFormula(parse(getParser(animator), type, formula));
+	}
+
+	/**
+	 * Registers several formulas with a single query. Formulas that cannot be
+	 * parsed are left out, inserting them with
+	 * {@link #insertFormula(Animator, FormulaType, String)} reports the
+	 * error.
+	 * 
+	 * @param formulas
+	 *            the formulas and their types
+	 * @return the elements of the inserted formulas
+	 */
+	public static Map<String, EvaluationElement> insertFormulas(
+			final Animator animator, final Map<String, FormulaType> formulas)
+			throws ProBException, UnsupportedOperationException {
+		final Map<String, EvaluationElement> result = new LinkedHashMap<String, EvaluationElement>();
+		if (formulas.isEmpty())
+			return result;
 		final ProBParserBaseAdapter parser = getParser(animator);
-		final PrologTerm parsed;
+		final List<String> inserted = new ArrayList<String>();
+		final List<EvaluationInsertFormulaCommand> cmds = new ArrayList<EvaluationInsertFormulaCommand>();
+		for (final Map.Entry<String, FormulaType> entry : formulas.entrySet()) {
+			try {
+				cmds.add(new EvaluationInsertFormulaCommand(parse(parser,
+						entry.getValue(), entry.getKey())));
+				inserted.add(entry.getKey());
+			} catch (ProBParseException e) {
+				// left out
+			}
+		}
+		if (cmds.isEmpty())
+			return result;
+		animator.execute(cmds.size() == 1 ? cmds.get(0) : new ComposedCommand(
+				cmds));
+		for (int i = 0; i < cmds.size(); i++) {
+			result.put(inserted.get(i), new EvaluationElement(animator, cmds
+					.get(i).getId(), null));
+		}
+		return result;
+	}
+
+	private static PrologTerm parse(final ProBParserBaseAdapter parser,
+			final FormulaType type, final String formula)
+			throws ProBParseException {
 		switch (type) {
 		case EXPRESSION:
-			parsed = parser.parseExpression(formula, false);
-			break;
+			return parser.parseExpression(formula, false);
 		case PREDICATE:
-			parsed = parser.parsePredicate(formula, false);
-			break;
+			return parser.parsePredicate(formula, false);
 		default:
 			throw new IllegalArgumentException("Unsupported formula type: "
 					+ type);
 		}
-		return insertFormula(parsed);
 	}
 
 	private static ProBParserBaseAdapter getParser() {
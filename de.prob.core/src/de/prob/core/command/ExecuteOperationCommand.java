@@ -11,6 +11,7 @@ import de.prob.core.Animator;
 import de.prob.core.LimitedLogger;
 import de.prob.core.domainobjects.Operation;
 import de.prob.core.domainobjects.State;
+import de.prob.core.domainobjects.StateCache;
 import de.prob.exceptions.ProBException;
 import de.prob.parser.ISimplifiedROMap;
 import de.prob.prolog.output.IPrologTermOutput;
@@ -23,6 +24,7 @@ public final class ExecuteOperationCommand implements IComposableCommand {
 	private final ExploreStateCommand exloreStateCmd;
 	private final SetStateCommand setStateCmd;
 	private final IComposableCommand cmds;
+	private final State cachedState;
 
 	private ExecuteOperationCommand(final Operation operation) {
 		this(operation, false);
@@ -33,9 +35,18 @@ public final class ExecuteOperationCommand implements IComposableCommand {
 		this.operation = operation;
 		this.fireCurrentStateChanged = !silent;
 		final String stateId = operation.getDestination();
-		this.exloreStateCmd = new ExploreStateCommand(stateId);
 		this.setStateCmd = new SetStateCommand(stateId);
-		this.cmds = new ComposedCommand(exloreStateCmd, setStateCmd);
+		final StateCache cache = Animator.getAnimator().getStateCache();
+		this.cachedState = cache.getState(stateId);
+		if (cachedState == null) {
+			// nobody looks at the values of a state that is not announced
+			this.exloreStateCmd = new ExploreStateCommand(stateId, silent,
+					cache.getState(operation.getSource()));
+			this.cmds = new ComposedCommand(exloreStateCmd, setStateCmd);
+		} else {
+			this.exloreStateCmd = null;
+			this.cmds = setStateCmd;
+		}
 	}
 
 	public static void executeOperation(final Animator a, final Operation op)
@@ -63,7 +74,8 @@ public final class ExecuteOperationCommand implements IComposableCommand {
 			throws CommandException {
 		cmds.processResult(bindings);
 		final Animator animator = Animator.getAnimator();
-		final State state = exloreStateCmd.getState();
+		final State state = cachedState == null ? exloreStateCmd.getState()
+				: cachedState;
 
 		// Change history in Animator
 		animator.getHistory().add(state, operation);
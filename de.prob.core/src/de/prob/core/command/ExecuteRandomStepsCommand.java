@@ -6,48 +6,146 @@
 
 package de.prob.core.command;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 import de.prob.core.Animator;
 import de.prob.core.ProblemHandler;
 import de.prob.core.domainobjects.Operation;
+import de.prob.core.domainobjects.RandomSeed;
 import de.prob.core.domainobjects.State;
 import de.prob.exceptions.ProBException;
+import de.prob.parser.BindingGenerator;
+import de.prob.parser.ISimplifiedROMap;
+import de.prob.parser.ResultParserException;
+import de.prob.prolog.output.IPrologTermOutput;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
 
+/**
+ * Executes a number of randomly chosen operations.
+ *
+ * ProB chooses and executes the operations itself and returns the whole path
+ * with one answer. A second query retrieves the visited states lazily (see
+ * {@link ExploreStateCommand}) and sets ProB's current state. The history is
+ * filled in one go.
+ */
 public class ExecuteRandomStepsCommand {
 
-	private static final Random random = new Random();
-
 	public static void executeOperation(final Animator animator, final int count)
 			throws ProBException {
+		executeSteps(animator, count, null);
+	}
+
+	/**
+	 * Like {@link #executeOperation(Animator, int)}, but ProB's random
+	 * generator is initialised with the given seed before the walk (see
+	 * {@link SetPrologRandomSeed}). Starting in the same state with the same
+	 * seed results in the same walk.
+	 */
+	public static void executeOperation(final Animator animator,
+			final int count, final RandomSeed seed) throws ProBException {
+		executeSteps(animator, count, seed);
+	}
+
+	private static void executeSteps(final Animator animator, final int count,
+			final RandomSeed seed) throws ProBException {
 		if (count < 1) {
 			final String message = "Count for Random Animation must be greater than zero";
 			ProblemHandler.raiseCommandException(message);
 		}
-		Operation operation = null;
-		for (int i = 0; i < count; i++) {
-			State currentState = animator.getCurrentState();
-			List<Operation> ops = currentState.getEnabledOperations();
-			if (ops.isEmpty()) {
-				break; // / This is a deadlock
-			}
+		final State currentState = animator.getCurrentState();
+		if (currentState == null)
+			return;
 
-			operation = ops.get(random.nextInt(ops.size()));
+		final RandomWalkCommand walk = new RandomWalkCommand(
+				currentState.getId(), count);
+		if (seed == null) {
+			animator.execute(walk);
+		} else {
+			animator.execute(new ComposedCommand(new SetPrologRandomSeed(seed),
+					walk));
+		}
+		final List<Operation> path = walk.getOperations();
+		if (path.isEmpty())
+			return; // / This is a deadlock
 
-			ExecuteOperationCommand.executeOperation(animator, operation, true);
+		// every state shares the unchanged values with its predecessor
+		final List<IComposableCommand> commands = new ArrayList<IComposableCommand>();
+		ExploreStateCommand previous = null;
+		for (final Operation operation : path) {
+			final String stateId = operation.getDestination();
+			previous = previous == null ? new ExploreStateCommand(stateId,
+					true, currentState) : new ExploreStateCommand(stateId,
+					previous);
+			commands.add(previous);
+		}
+		final String lastId = path.get(path.size() - 1).getDestination();
+		commands.add(new SetStateCommand(lastId));
+		animator.execute(new ComposedCommand(commands));
 
-			if (animator.getCurrentState().isInvariantViolated()) {
-				break; // Stop in case of Invariant violation
-			}
+		final List<State> states = new ArrayList<State>(path.size());
+		for (int i = 0; i < path.size(); i++) {
+			final ExploreStateCommand explore = (ExploreStateCommand) commands
+					.get(i);
+			// a cached state may know its values already
+			final State cached = animator.getStateCache().getState(
+					explore.getStateID());
+			states.add(cached != null ? cached : explore.getState());
 		}
+		final State lastState = states.get(states.size() - 1);
+		animator.getHistory().addAll(states, path);
+		animator.announceCurrentStateChanged(lastState,
+				path.get(path.size() - 1));
+	}
 
-		if (operation != null) {
-			animator.announceCurrentStateChanged(animator.getCurrentState(),
-					operation);
+	/**
+	 * Lets ProB execute up to the given number of randomly chosen operations,
+	 * starting in the given state. The walk stops early in a deadlock or in a
+	 * state that violates the invariant. The executed operations are returned
+	 * in the same form as by {@link GetEnabledOperationsCommand}.
+	 */
+	private static final class RandomWalkCommand implements
+			IComposableCommand {
+		private static final String OPERATIONS_VARIABLE = "Ops";
+
+		private final String stateId;
+		private final int count;
+		private List<Operation> operations;
+
+		public RandomWalkCommand(final String stateId, final int count) {
+			this.stateId = stateId;
+			this.count = count;
 		}
 
-		return;
-	}
+		public void writeCommand(final IPrologTermOutput pto) {
+			pto.openTerm("execute_random_steps");
+			pto.printAtomOrNumber(stateId);
+			pto.printNumber(count);
+			pto.printVariable(OPERATIONS_VARIABLE);
+			pto.closeTerm();
+		}
+
+		public void processResult(
+				final ISimplifiedROMap<String, PrologTerm> bindings)
+				throws CommandException {
+			final ListPrologTerm list;
+			try {
+				list = BindingGenerator.getList(bindings, OPERATIONS_VARIABLE);
+			} catch (ResultParserException e) {
+				CommandException commandException = new CommandException(
+						e.getLocalizedMessage(), e);
+				commandException.notifyUserOnce();
+				throw commandException;
+			}
+			operations = new ArrayList<Operation>(list.size());
+			for (final PrologTerm term : list) {
+				operations.add(Operation.fromPrologTerm(term));
+			}
+		}
 
+		public List<Operation> getOperations() {
+			return operations;
+		}
+	}
 }
@@ -14,6 +14,7 @@ import java.util.Set;
 import de.prob.core.Animator;
 import de.prob.core.domainobjects.Operation;
 import de.prob.core.domainobjects.State;
+import de.prob.core.domainobjects.StateCache;
 import de.prob.core.domainobjects.StateError;
 import de.prob.core.domainobjects.Variable;
 import de.prob.core.internal.Activator;
@@ -23,9 +24,18 @@ import de.prob.parser.ISimplifiedROMap;
 import de.prob.prolog.output.IPrologTermOutput;
 import de.prob.prolog.term.PrologTerm;
 
+/**
+ * Retrieves a state from ProB. A lazy command only retrieves the enabled
+ * operations and the properties that are needed to decide how to go on; the
+ * values, the invariant status and the errors are retrieved by the
+ * {@link State} when they are needed.
+ */
 public final class ExploreStateCommand implements IComposableCommand {
 
 	private final String stateId;
+	private final boolean lazy;
+	private final State base;
+	private final ExploreStateCommand previous;
 	private final GetEnabledOperationsCommand getOpsCmd;
 	private final GetStateValuesCommand getValuesCmd;
 	private final CheckBooleanPropertyCommand checkInitialisedCmd;
@@ -39,27 +49,97 @@ public final class ExploreStateCommand implements IComposableCommand {
 	private final GetTimeoutedOperationsCommand checkTimeoutOpsCmd;
 
 	public ExploreStateCommand(final String stateID) {
+		this(stateID, false);
+	}
+
+	public ExploreStateCommand(final String stateID, final boolean lazy) {
+		this(stateID, lazy, null);
+	}
+
+	/**
+	 * @param base
+	 *            a similar state, usually the predecessor, or
+	 *            <code>null</code>. The explored state shares the values that
+	 *            did not change with the base (see
+	 *            {@link de.prob.core.domainobjects.StateValues}).
+	 */
+	public ExploreStateCommand(final String stateID, final boolean lazy,
+			final State base) {
+		this(stateID, lazy, base, null);
+	}
+
+	/**
+	 * Retrieves a lazy state whose base is the state retrieved by another
+	 * command, e.g. when the states of a path are retrieved with one
+	 * {@link ComposedCommand}.
+	 * 
+	 * @param previous
+	 *            a command whose result is processed before the result of
+	 *            this command
+	 */
+	public ExploreStateCommand(final String stateID,
+			final ExploreStateCommand previous) {
+		this(stateID, true, null, previous);
+	}
+
+	private ExploreStateCommand(final String stateID, final boolean lazy,
+			final State base, final ExploreStateCommand previous) {
 		stateId = stateID;
+		this.lazy = lazy;
+		this.base = base;
+		this.previous = previous;
 		getOpsCmd = new GetEnabledOperationsCommand(stateId);
-		getValuesCmd = new GetStateValuesCommand(stateId);
 		checkInitialisedCmd = new CheckInitialisationStatusCommand(stateId);
-		checkInvCmd = new CheckInvariantStatusCommand(stateId);
 		checkMaxOpCmd = new CheckMaxOperationReachedStatusCommand(stateId);
 		checkTimeoutCmd = new CheckTimeoutStatusCommand(stateId);
 		checkTimeoutOpsCmd = new GetTimeoutedOperationsCommand(stateId);
-		getStateErrCmd = new GetStateBasedErrorsCommand(stateId);
-		this.allCommands = new ComposedCommand(getOpsCmd, getValuesCmd,
-				checkInitialisedCmd, checkInvCmd, checkMaxOpCmd,
-				checkTimeoutCmd, checkTimeoutOpsCmd, getStateErrCmd);
+		if (lazy) {
+			getValuesCmd = null;
+			checkInvCmd = null;
+			getStateErrCmd = null;
+			this.allCommands = new ComposedCommand(getOpsCmd,
+					checkInitialisedCmd, checkMaxOpCmd, checkTimeoutCmd,
+					checkTimeoutOpsCmd);
+		} else {
+			getValuesCmd = new GetStateValuesCommand(stateId,
+					base != null && base.isDetailsLoaded() ? base.getValues()
+							: null);
+			checkInvCmd = new CheckInvariantStatusCommand(stateId);
+			getStateErrCmd = new GetStateBasedErrorsCommand(stateId);
+			this.allCommands = new ComposedCommand(getOpsCmd, getValuesCmd,
+					checkInitialisedCmd, checkInvCmd, checkMaxOpCmd,
+					checkTimeoutCmd, checkTimeoutOpsCmd, getStateErrCmd);
+		}
 	}
 
+	/**
+	 * Returns the state from the animator's {@link StateCache} or retrieves
+	 * it from ProB.
+	 */
 	public static State exploreState(final Animator a, final String stateID)
 			throws ProBException {
+		final State cached = a.getStateCache().getState(stateID);
+		if (cached != null)
+			return cached;
 		ExploreStateCommand command = new ExploreStateCommand(stateID);
 		a.execute(command);
 		return command.getState();
 	}
 
+	/**
+	 * Like {@link #exploreState(Animator, String)}, but the returned state is
+	 * lazy.
+	 */
+	public static State exploreStateLazily(final Animator a,
+			final String stateID) throws ProBException {
+		final State cached = a.getStateCache().getState(stateID);
+		if (cached != null)
+			return cached;
+		ExploreStateCommand command = new ExploreStateCommand(stateID, true);
+		a.execute(command);
+		return command.getState();
+	}
+
 	public String getStateID() {
 		return stateId;
 	}
@@ -70,13 +150,10 @@ public final class ExploreStateCommand implements IComposableCommand {
 		allCommands.processResult(bindings);
 
 		final boolean initialised = checkInitialisedCmd.getResult();
-		final boolean invariantOk = checkInvCmd.getResult();
 		final boolean timeoutOccured = checkTimeoutCmd.getResult();
 		final boolean maxOperationsReached = checkMaxOpCmd.getResult();
 		final List<Operation> enabledOperations = getOpsCmd
 				.getEnabledOperations();
-		final List<Variable> variables = getValuesCmd.getResult();
-		final Collection<StateError> stateErrors = getStateErrCmd.getResult();
 
 		if (!initialised && enabledOperations.isEmpty() && !timeoutOccured) {
 			Logger.notifyUserWithoutBugreport("ProB could not find valid constants. This might be caused by the animation settings (e.g., Integer range or deferred set size) or by an inconsistency in the axioms");
@@ -84,9 +161,21 @@ public final class ExploreStateCommand implements IComposableCommand {
 
 		Set<String> timeouts = new HashSet<String>(
 				checkTimeoutOpsCmd.getTimeouts());
-		state = new State(stateId, initialised, invariantOk, timeoutOccured,
-				maxOperationsReached, variables, enabledOperations,
-				stateErrors, timeouts);
+		if (lazy) {
+			state = new State(stateId, initialised, timeoutOccured,
+					maxOperationsReached, enabledOperations, timeouts,
+					previous == null ? base : previous.getState());
+		} else {
+			final boolean invariantKo = checkInvCmd.getResult();
+			final List<Variable> variables = getValuesCmd.getResult();
+			final Collection<StateError> stateErrors = getStateErrCmd
+					.getResult();
+			state = new State(stateId, initialised, invariantKo,
+					timeoutOccured, maxOperationsReached, variables,
+					enabledOperations, stateErrors, timeouts, base);
+		}
+
+		Animator.getAnimator().getStateCache().putState(state);
 
 		// Fire computed(state) event
 		Activator.computedState(state);
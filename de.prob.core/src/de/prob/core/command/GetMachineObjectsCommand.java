@@ -28,7 +28,7 @@ import de.prob.prolog.term.PrologTerm;
  * @author plagge
  * 
  */
-public class GetMachineObjectsCommand implements IComposableCommand {
+public class GetMachineObjectsCommand implements ICacheableCommand {
 
 	public static class MachineObjectsResult {
 		public final Section[] sections;
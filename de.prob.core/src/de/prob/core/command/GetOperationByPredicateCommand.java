@@ -7,7 +7,11 @@
 package de.prob.core.command;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.be4.classicalb.core.parser.analysis.prolog.ASTProlog;
 import de.be4.classicalb.core.parser.exceptions.BException;
@@ -32,6 +36,24 @@ import de.prob.prolog.term.PrologTerm;
 public final class GetOperationByPredicateCommand implements IComposableCommand {
 
 	private static final String NEW_STATE_ID_VARIABLE = "NewStateID";
+	private static final int MAX_CACHED_PREDICATES = 256;
+
+	/**
+	 * the parsed predicates by their source, the least recently used are
+	 * removed first
+	 */
+	private static final Map<String, PredicateEvalElement> PARSED_PREDICATES = Collections
+			.synchronizedMap(new LinkedHashMap<String, PredicateEvalElement>(
+					16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						final Map.Entry<String, PredicateEvalElement> eldest) {
+					return size() > MAX_CACHED_PREDICATES;
+				}
+			});
+
 	private final PredicateEvalElement evalElement;
 	private final String stateId;
 	private final String name;
@@ -43,22 +65,12 @@ public final class GetOperationByPredicateCommand implements IComposableCommand
 	}
 
 	private GetOperationByPredicateCommand(final String stateId,
-			final String name, final String predicate, final int nrOfSolutions)
-			throws CommandException {
+			final String name, final PredicateEvalElement evalElement,
+			final int nrOfSolutions) {
 		this.stateId = stateId;
 		this.name = name;
 		this.nrOfSolutions = nrOfSolutions;
-		PredicateEvalElement parsedEvalElement = null;
-		try {
-			parsedEvalElement = PredicateEvalElement.create(predicate);
-		} catch (BException e) {
-			String message = "Fatal error when trying to parse " + predicate
-					+ ". Execution of operation " + name + " aborted.";
-			ProblemHandler.raiseCommandException(message);
-			parsedEvalElement = null;
-		} finally {
-			evalElement = parsedEvalElement;
-		}
+		this.evalElement = evalElement;
 	}
 
 	/**
@@ -100,14 +112,68 @@ public final class GetOperationByPredicateCommand implements IComposableCommand
 			final String stateId, final String name, final String predicate,
 			final int nrOfSolutions) throws ProBException, BException {
 
-		GetOperationByPredicateCommand executeOperationCommand = new GetOperationByPredicateCommand(
-				stateId, name, predicate, nrOfSolutions);
-		if (executeOperationCommand.evalElement != null) {
-			a.execute(executeOperationCommand);
+		PredicateEvalElement evalElement;
+		try {
+			evalElement = parse(predicate);
+		} catch (BException e) {
+			String message = "Fatal error when trying to parse " + predicate
+					+ ". Execution of operation " + name + " aborted.";
+			ProblemHandler.raiseCommandException(message);
+			return null;
 		}
+		GetOperationByPredicateCommand executeOperationCommand = new GetOperationByPredicateCommand(
+				stateId, name, evalElement, nrOfSolutions);
+		a.execute(executeOperationCommand);
 		return executeOperationCommand.getOperation();
 	}
 
+	/**
+	 * Answers several queries in the same state with a single call to ProB.
+	 * Afterwards, each query contains the operations that have been found or
+	 * the reason why its predicate could not be parsed. Queries with errors
+	 * are not sent to ProB, they do not affect the other queries.
+	 * 
+	 * @param stateId
+	 *            - The state in which the events should be fired
+	 * @param queries
+	 *            - the operations to search for
+	 * @throws ProBException
+	 *             - if something terrible happens
+	 */
+	public static void findOperations(final Animator a, final String stateId,
+			final Collection<Query> queries) throws ProBException {
+		final List<Query> sent = new ArrayList<Query>(queries.size());
+		final List<GetOperationByPredicateCommand> cmds = new ArrayList<GetOperationByPredicateCommand>(
+				queries.size());
+		for (final Query query : queries) {
+			query.operations = null;
+			query.error = null;
+			try {
+				cmds.add(new GetOperationByPredicateCommand(stateId,
+						query.name, parse(query.predicate), query.maxSolutions));
+				sent.add(query);
+			} catch (BException e) {
+				query.error = e.getMessage();
+			}
+		}
+		if (cmds.isEmpty())
+			return;
+		a.execute(cmds.size() == 1 ? cmds.get(0) : new ComposedCommand(cmds));
+		for (int i = 0; i < cmds.size(); i++) {
+			sent.get(i).operations = cmds.get(i).getOperation();
+		}
+	}
+
+	private static PredicateEvalElement parse(final String predicate)
+			throws BException {
+		PredicateEvalElement evalElement = PARSED_PREDICATES.get(predicate);
+		if (evalElement == null) {
+			evalElement = PredicateEvalElement.create(predicate);
+			PARSED_PREDICATES.put(predicate, evalElement);
+		}
+		return evalElement;
+	}
+
 	/**
 	 * This method is called when the command is prepared for sending. The
 	 * method is called by the Animator class, most likely it is not interesting
@@ -156,4 +222,84 @@ public final class GetOperationByPredicateCommand implements IComposableCommand
 		return operation;
 	}
 
+	/**
+	 * A query for {@link GetOperationByPredicateCommand#findOperations}.
+	 */
+	public static final class Query {
+		private final String name;
+		private final String predicate;
+		private final int maxSolutions;
+		private List<Operation> operations;
+		private String error;
+
+		/**
+		 * @param name
+		 *            - The event's name
+		 * @param predicate
+		 *            - Additional guarding predicate
+		 * @param maxSolutions
+		 *            - maximum number of solutions
+		 */
+		public Query(final String name, final String predicate,
+				final int maxSolutions) {
+			this.name = name;
+			this.predicate = predicate;
+			this.maxSolutions = maxSolutions;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getPredicate() {
+			return predicate;
+		}
+
+		public int getMaxSolutions() {
+			return maxSolutions;
+		}
+
+		/**
+		 * @return the operations found or null if there is none or the
+		 *         predicate could not be parsed
+		 */
+		public List<Operation> getOperations() {
+			return operations;
+		}
+
+		/**
+		 * @return the first operation found or null
+		 */
+		public Operation getOperation() {
+			return operations == null ? null : operations.get(0);
+		}
+
+		/**
+		 * @return the reason why the predicate could not be parsed or null
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * Queries are equal if they search for the same operations, the
+		 * results are not compared.
+		 */
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Query))
+				return false;
+			final Query other = (Query) obj;
+			return name.equals(other.name)
+					&& predicate.equals(other.predicate)
+					&& maxSolutions == other.maxSolutions;
+		}
+
+		@Override
+		public int hashCode() {
+			return (name.hashCode() * 31 + predicate.hashCode()) * 31
+					+ maxSolutions;
+		}
+	}
+
 }
@@ -19,14 +19,18 @@ import de.prob.prolog.term.PrologTerm;
 
 public final class GetOperationNamesCommand {
 
+	/**
+	 * Retrieves the names of all operations and their parameters. The
+	 * parameters of all operations are queried at once, and the answers are
+	 * remembered until another machine is loaded (see
+	 * {@link ICacheableCommand}).
+	 */
 	public static List<OperationInfo> getNames(final Animator animator)
 			throws ProBException {
-		List<OperationInfo> result = new ArrayList<OperationInfo>();
-
 		GetAllOperationsNamesCommand namesCmd = new GetAllOperationsNamesCommand();
 		animator.execute(namesCmd);
 
-		animator.execute(namesCmd);
+		List<GetOperationParameterNames> paramCmds = new ArrayList<GetOperationParameterNames>();
 		for (PrologTerm prologTerm : namesCmd.getNamesTerm()) {
 
 			String opName = ((CompoundPrologTerm) prologTerm).getFunctor(); // FIXME
@@ -39,13 +43,16 @@ public final class GetOperationNamesCommand {
 																			// probcli
 																			// answers?
 
-			GetOperationParameterNames cmd = new GetOperationParameterNames(
-					opName);
-			animator.execute(cmd);
-			List<String> paramNames = cmd.getParameterNames();
-			result.add(new OperationInfo(opName, paramNames));
+			paramCmds.add(new GetOperationParameterNames(opName));
 		}
+		animator.executePipelined(paramCmds);
 
+		List<OperationInfo> result = new ArrayList<OperationInfo>(
+				paramCmds.size());
+		for (GetOperationParameterNames cmd : paramCmds) {
+			result.add(new OperationInfo(cmd.getName(), cmd
+					.getParameterNames()));
+		}
 		return result;
 	}
 
@@ -20,7 +20,7 @@ import de.prob.prolog.term.CompoundPrologTerm;
 import de.prob.prolog.term.ListPrologTerm;
 import de.prob.prolog.term.PrologTerm;
 
-public final class GetPreferencesCommand implements IComposableCommand {
+public final class GetPreferencesCommand implements ICacheableCommand {
 
 	private static final String PREFS_VARIABLE = "Prefs";
 	private List<ProBPreference> prefs;
@@ -0,0 +1,69 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.command;
+
+import java.util.Collection;
+import java.util.List;
+
+import de.prob.core.domainobjects.StateError;
+import de.prob.core.domainobjects.StateValues;
+import de.prob.core.domainobjects.Variable;
+import de.prob.parser.ISimplifiedROMap;
+import de.prob.prolog.output.IPrologTermOutput;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Retrieves the parts of a state that a lazy {@link ExploreStateCommand}
+ * leaves out: the values of the variables, the invariant status and the state
+ * based errors.
+ */
+public final class GetStateDetailsCommand implements IReadOnlyCommand {
+	private final GetStateValuesCommand getValuesCmd;
+	private final CheckInvariantStatusCommand checkInvCmd;
+	private final GetStateBasedErrorsCommand getStateErrCmd;
+	private final ComposedCommand allCommands;
+
+	public GetStateDetailsCommand(final String stateId) {
+		this(stateId, null);
+	}
+
+	/**
+	 * @param base
+	 *            the values of a similar state or <code>null</code>, see
+	 *            {@link GetStateValuesCommand#GetStateValuesCommand(String, StateValues)}
+	 */
+	public GetStateDetailsCommand(final String stateId, final StateValues base) {
+		getValuesCmd = new GetStateValuesCommand(stateId, base);
+		checkInvCmd = new CheckInvariantStatusCommand(stateId);
+		getStateErrCmd = new GetStateBasedErrorsCommand(stateId);
+		allCommands = new ComposedCommand(getValuesCmd, checkInvCmd,
+				getStateErrCmd);
+	}
+
+	public void writeCommand(final IPrologTermOutput pto)
+			throws CommandException {
+		allCommands.writeCommand(pto);
+	}
+
+	public void processResult(
+			final ISimplifiedROMap<String, PrologTerm> bindings)
+			throws CommandException {
+		allCommands.processResult(bindings);
+	}
+
+	public List<Variable> getValues() {
+		return getValuesCmd.getResult();
+	}
+
+	public boolean isInvariantViolated() {
+		return checkInvCmd.getResult();
+	}
+
+	public Collection<StateError> getStateErrors() {
+		return getStateErrCmd.getResult();
+	}
+}
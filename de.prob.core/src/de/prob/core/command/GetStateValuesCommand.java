@@ -9,6 +9,7 @@ package de.prob.core.command;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.prob.core.domainobjects.StateValues;
 import de.prob.core.domainobjects.Variable;
 import de.prob.parser.BindingGenerator;
 import de.prob.parser.ISimplifiedROMap;
@@ -18,13 +19,26 @@ import de.prob.prolog.term.CompoundPrologTerm;
 import de.prob.prolog.term.ListPrologTerm;
 import de.prob.prolog.term.PrologTerm;
 
-public final class GetStateValuesCommand implements IComposableCommand {
+public final class GetStateValuesCommand implements IReadOnlyCommand {
 
 	private final String stateId;
+	private final StateValues base;
 	private List<Variable> result;
 
 	public GetStateValuesCommand(final String stateID) {
+		this(stateID, null);
+	}
+
+	/**
+	 * @param base
+	 *            the values of a similar state or <code>null</code>. Bindings
+	 *            that did not change with respect to the base are not
+	 *            translated again, the variables of the base are returned
+	 *            instead.
+	 */
+	public GetStateValuesCommand(final String stateID, final StateValues base) {
 		stateId = stateID;
+		this.base = base;
 	}
 
 	public List<Variable> getResult() {
@@ -57,11 +71,24 @@ public final class GetStateValuesCommand implements IComposableCommand {
 				commandException.notifyUserOnce();
 				throw commandException;
 			}
-			variables.add(new Variable(compoundTerm));
+			variables.add(toVariable(compoundTerm));
 		}
 		result = variables;
 	}
 
+	private Variable toVariable(final CompoundPrologTerm binding)
+			throws CommandException {
+		final PrologTerm name = binding.getArgument(1);
+		if (base != null && name instanceof CompoundPrologTerm) {
+			final Variable unchanged = base.get(((CompoundPrologTerm) name)
+					.getFunctor());
+			if (unchanged != null
+					&& unchanged.hasRawValue(binding.getArgument(2)))
+				return unchanged;
+		}
+		return new Variable(binding);
+	}
+
 	public void writeCommand(final IPrologTermOutput pto) {
 		pto.openTerm("getStateValues").printAtomOrNumber(stateId)
 				.printVariable("Bindings").closeTerm();
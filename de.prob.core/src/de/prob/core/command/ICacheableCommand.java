@@ -0,0 +1,24 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.command;
+
+/**
+ * Marks a command whose answer only depends on the loaded machine and ProB's
+ * preferences, not on the state space or the current state. Commands that
+ * write the same query get the same answer as long as the machine is loaded.
+ *
+ * The animator remembers the answers of such commands and processes a
+ * remembered answer instead of asking ProB again. The answers are forgotten
+ * when a machine is loaded or cleared ({@link ClearMachineCommand}) and when a
+ * preference is changed ({@link SetPreferenceCommand}). Answers that contain
+ * errors are never remembered.
+ *
+ * Cacheable commands are always executed by the primary ProB process, they
+ * should not be {@link IReadOnlyCommand}s as well.
+ */
+public interface ICacheableCommand extends IComposableCommand {
+}
@@ -0,0 +1,19 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.command;
+
+/**
+ * Marks a command that changes ProB's state space in a way that cannot be
+ * reproduced by sending the same query again, e.g. model checking that stops
+ * after a time budget and explores the states in a nondeterministic order.
+ *
+ * The worker processes of the {@link de.prob.core.internal.ProBProcessPool}
+ * cannot replay such a command, so they are not used after it until the next
+ * machine is loaded.
+ */
+public interface INonReplayableCommand extends IComposableCommand {
+}
@@ -0,0 +1,21 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.command;
+
+/**
+ * Marks a command that only reads from ProB's state space. It must neither
+ * add states or transitions, nor change the current state, the preferences or
+ * the loaded machine.
+ *
+ * Such commands can be executed by any ProB process that has the same state
+ * space as the primary one, see {@link de.prob.core.internal.ProBProcessPool}.
+ * Commands that compute successor states (like {@link ExploreStateCommand} or
+ * {@link GetOperationByPredicateCommand}) are not read-only, because the new
+ * state ids would only be known to the process that computed them.
+ */
+public interface IReadOnlyCommand extends IComposableCommand {
+}
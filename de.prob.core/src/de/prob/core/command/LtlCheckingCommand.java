@@ -7,6 +7,7 @@
 package de.prob.core.command;
 
 import de.prob.core.Animator;
+import de.prob.core.CommandPriority;
 import de.prob.core.domainobjects.Operation;
 import de.prob.exceptions.ProBException;
 import de.prob.parser.ISimplifiedROMap;
@@ -19,7 +20,7 @@ import de.prob.prolog.term.PrologTerm;
 /**
  * @ Andriy: Das ist jetzt deine Baustelle :)
  */
-public final class LtlCheckingCommand implements IComposableCommand {
+public final class LtlCheckingCommand implements INonReplayableCommand {
 
 	private static final String VARIABLE_NAME_ATOMICS = "A";
 	private static final String VARIABLE_NAME_STRUCTURE = "S";
@@ -173,7 +174,8 @@ public final class LtlCheckingCommand implements IComposableCommand {
 	public static Result modelCheck(final Animator a, final PrologTerm fomula,
 			final int max, final StartMode mode) throws ProBException {
 		LtlCheckingCommand command = new LtlCheckingCommand(fomula, max, mode);
-		a.execute(command);
+		// slices of model checking must not hold up the user's commands
+		a.execute(command, CommandPriority.BACKGROUND);
 		return command.getResult();
 	}
 
@@ -31,7 +31,8 @@ public final class SetPreferenceCommand implements IComposableCommand {
 	public void processResult(
 			final ISimplifiedROMap<String, PrologTerm> bindings)
 			throws CommandException {
-		// no result
+		// answers that depend on the preference are outdated
+		Animator.getAnimator().clearResultCache();
 	}
 
 	public void writeCommand(final IPrologTermOutput pto) {
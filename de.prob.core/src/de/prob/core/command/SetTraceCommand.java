@@ -5,11 +5,13 @@ package de.prob.core.command;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import de.prob.core.Animator;
 import de.prob.core.domainobjects.History;
 import de.prob.core.domainobjects.Operation;
 import de.prob.core.domainobjects.State;
+import de.prob.core.domainobjects.StateCache;
 import de.prob.parser.ISimplifiedROMap;
 import de.prob.prolog.output.IPrologTermOutput;
 import de.prob.prolog.term.PrologTerm;
@@ -21,6 +23,7 @@ import de.prob.prolog.term.PrologTerm;
 public class SetTraceCommand implements IComposableCommand {
 
 	private final Collection<Operation> operations;
+	private final State[] states;
 	private final ExploreStateCommand[] exploreStateCmds;
 	private final ComposedCommand compExplore;
 
@@ -29,27 +32,45 @@ public class SetTraceCommand implements IComposableCommand {
 	public SetTraceCommand(final Collection<Operation> operations) {
 		super();
 		this.operations = new ArrayList<Operation>(operations);
-		this.exploreStateCmds = toExplore(operations);
-		compExplore = new ComposedCommand(exploreStateCmds);
+		final String[] stateIds = toStateIds(operations);
+		this.states = new State[stateIds.length];
+		this.exploreStateCmds = new ExploreStateCommand[stateIds.length];
+		this.compExplore = toExplore(stateIds);
 	}
 
-	private static ExploreStateCommand[] toExplore(
-			Collection<Operation> operations) {
-		final int size = operations.size();
-		ExploreStateCommand[] states = new ExploreStateCommand[size + 1];
+	private static String[] toStateIds(final Collection<Operation> operations) {
+		final String[] ids = new String[operations.size() + 1];
 		if (operations.isEmpty()) {
-			states[0] = new ExploreStateCommand("root");
+			ids[0] = "root";
 		} else {
-			final String initial = operations.iterator().next().getSource();
-			states[0] = new ExploreStateCommand(initial);
+			ids[0] = operations.iterator().next().getSource();
 			int i = 1;
 			for (final Operation op : operations) {
-				final String dest = op.getDestination();
-				states[i] = new ExploreStateCommand(dest);
+				ids[i] = op.getDestination();
 				i++;
 			}
 		}
-		return states;
+		return ids;
+	}
+
+	/**
+	 * States that are in the {@link StateCache} are
+	 * taken from there, only the others are explored.
+	 */
+	private ComposedCommand toExplore(final String[] stateIds) {
+		final StateCache cache = Animator.getAnimator().getStateCache();
+		final List<ExploreStateCommand> missing = new ArrayList<ExploreStateCommand>();
+		for (int i = 0; i < stateIds.length; i++) {
+			states[i] = cache.getState(stateIds[i]);
+			if (states[i] == null) {
+				// the states are lazy, their values are only retrieved from
+				// ProB if somebody looks at them
+				exploreStateCmds[i] = new ExploreStateCommand(stateIds[i],
+						true, i == 0 ? null : states[i - 1]);
+				missing.add(exploreStateCmds[i]);
+			}
+		}
+		return new ComposedCommand(missing);
 	}
 
 	@Override
@@ -61,6 +82,11 @@ public class SetTraceCommand implements IComposableCommand {
 	public void processResult(ISimplifiedROMap<String, PrologTerm> bindings)
 			throws CommandException {
 		compExplore.processResult(bindings);
+		for (int i = 0; i < states.length; i++) {
+			if (exploreStateCmds[i] != null) {
+				states[i] = exploreStateCmds[i].getState();
+			}
+		}
 		hasBeenProcessed = true;
 	}
 
@@ -75,14 +101,14 @@ public class SetTraceCommand implements IComposableCommand {
 		Operation curOp = null;
 		State curState = null;
 		// let's start in the root state
-		final State rootState = exploreStateCmds[0].getState();
+		final State rootState = states[0];
 		history.add(rootState, null);
 		if (currentPosition != null && currentPosition == 0) {
 			curState = rootState;
 		}
 		int pos = 1;
 		for (final Operation operation : operations) {
-			final State state = exploreStateCmds[pos].getState();
+			final State state = states[pos];
 			history.add(state, operation);
 			if (currentPosition != null && pos == currentPosition) {
 				curOp = operation;
@@ -1,13 +1,13 @@
 package de.prob.core.command.internal;
 
 import de.prob.core.command.CommandException;
-import de.prob.core.command.IComposableCommand;
+import de.prob.core.command.ICacheableCommand;
 import de.prob.parser.ISimplifiedROMap;
 import de.prob.prolog.output.IPrologTermOutput;
 import de.prob.prolog.term.ListPrologTerm;
 import de.prob.prolog.term.PrologTerm;
 
-public class GetAllOperationsNamesCommand implements IComposableCommand {
+public class GetAllOperationsNamesCommand implements ICacheableCommand {
 
 	private static final String NAMES_VARIABLE = "Names";
 	private ListPrologTerm term;
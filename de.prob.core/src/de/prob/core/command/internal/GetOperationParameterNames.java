@@ -3,13 +3,13 @@ package de.prob.core.command.internal;
 import java.util.List;
 
 import de.prob.core.command.CommandException;
-import de.prob.core.command.IComposableCommand;
+import de.prob.core.command.ICacheableCommand;
 import de.prob.parser.ISimplifiedROMap;
 import de.prob.prolog.output.IPrologTermOutput;
 import de.prob.prolog.term.ListPrologTerm;
 import de.prob.prolog.term.PrologTerm;
 
-public class GetOperationParameterNames implements IComposableCommand {
+public class GetOperationParameterNames implements ICacheableCommand {
 
 	private static final String PARAMETER_NAMES_VARIABLE = "Names";
 	private final String name;
@@ -33,6 +33,10 @@ public class GetOperationParameterNames implements IComposableCommand {
 		pto.closeTerm();
 	}
 
+	public String getName() {
+		return name;
+	}
+
 	public List<String> getParameterNames() {
 		return paramNames;
 	}
@@ -1,9 +1,13 @@
 package de.prob.core.domainobjects;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import de.prob.core.Animator;
+import de.prob.core.command.ComposedCommand;
 import de.prob.core.command.EvaluationExpandCommand;
 import de.prob.core.command.EvaluationGetValuesCommand;
 import de.prob.eventb.translator.FormulaTranslator;
@@ -15,7 +19,7 @@ public class EvaluationElement {
 	private final Animator animator;
 	private final EvaluationElement parent;
 
-	private EvLazyInformation lazy;
+	private volatile EvLazyInformation lazy;
 
 	public EvaluationElement(final Animator animator, final PrologTerm id,
 			final EvaluationElement parent) {
@@ -54,6 +58,43 @@ public class EvaluationElement {
 		return lazy.label;
 	}
 
+	/**
+	 * @return <code>true</code> if the label and the children are known
+	 *         without asking ProB
+	 */
+	public boolean isExpanded() {
+		return lazy != null;
+	}
+
+	/**
+	 * Retrieves the labels and children of all given elements that have not
+	 * been expanded yet with one query to ProB.
+	 */
+	public static void expand(final Collection<EvaluationElement> elements)
+			throws ProBException {
+		final Set<EvaluationElement> unexpanded = new LinkedHashSet<EvaluationElement>();
+		for (final EvaluationElement element : elements) {
+			if (element.lazy == null) {
+				unexpanded.add(element);
+			}
+		}
+		if (unexpanded.isEmpty())
+			return;
+		final List<EvaluationElement> toExpand = new ArrayList<EvaluationElement>(
+				unexpanded);
+		final List<EvaluationExpandCommand> cmds = new ArrayList<EvaluationExpandCommand>(
+				toExpand.size());
+		for (final EvaluationElement element : toExpand) {
+			cmds.add(new EvaluationExpandCommand(element.id));
+		}
+		final Animator animator = toExpand.get(0).animator;
+		animator.execute(cmds.size() == 1 ? cmds.get(0) : new ComposedCommand(
+				cmds));
+		for (int i = 0; i < toExpand.size(); i++) {
+			toExpand.get(i).setLazyInformation(cmds.get(i));
+		}
+	}
+
 	public EvaluationStateElement evaluateForState(final State state)
 			throws ProBException {
 		return EvaluationGetValuesCommand.getSingleValueCached(state, this);
@@ -63,6 +104,12 @@ public class EvaluationElement {
 		if (lazy == null) {
 			final EvaluationExpandCommand cmd = new EvaluationExpandCommand(id);
 			animator.execute(cmd);
+			setLazyInformation(cmd);
+		}
+	}
+
+	private void setLazyInformation(final EvaluationExpandCommand cmd) {
+		if (lazy == null) {
 			final Collection<PrologTerm> childIds = cmd.getChildrenIds();
 			final EvaluationElement[] children = new EvaluationElement[childIds
 					.size()];
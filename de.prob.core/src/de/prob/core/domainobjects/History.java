@@ -8,10 +8,9 @@ package de.prob.core.domainobjects;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.eclipse.core.runtime.Assert;
 
@@ -22,9 +21,15 @@ import de.prob.exceptions.ProBException;
 
 public class History implements Iterable<HistoryItem>, IComputationListener {
 
-	private static final HistoryItem[] EMPTY_ITEM_ARRAY = new HistoryItem[0];
+	/**
+	 * The system property that sets how many history items are kept in
+	 * memory, older items are moved to a temporary file. A value <= 0 keeps
+	 * all items in memory.
+	 */
+	public static final String MAX_ITEMS_IN_MEMORY_PROPERTY = "de.prob.core.history.maxItemsInMemory";
+	private static final int DEFAULT_MAX_ITEMS_IN_MEMORY = 50000;
 
-	private final List<HistoryItem> items = new LinkedList<HistoryItem>();
+	private final HistoryStore items;
 	private int currentPosition = 0;
 	private final Collection<HistoryListener> listeners = new ArrayList<HistoryListener>();
 
@@ -38,12 +43,45 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 	 * @
 	 */
 
+	public History() {
+		this(Integer.getInteger(MAX_ITEMS_IN_MEMORY_PROPERTY,
+				DEFAULT_MAX_ITEMS_IN_MEMORY));
+	}
+
+	/**
+	 * @param maxItemsInMemory
+	 *            the number of items that are kept in memory, older items are
+	 *            moved to a temporary file. A value <= 0 keeps all items in
+	 *            memory.
+	 */
+	public History(final int maxItemsInMemory) {
+		items = new HistoryStore(maxItemsInMemory);
+	}
+
 	public synchronized/* @ pure @ */Iterator<HistoryItem> iterator() {
-		return Collections.unmodifiableList(items).iterator();
+		return new Iterator<HistoryItem>() {
+			private int next = 0;
+
+			public boolean hasNext() {
+				return next < size();
+			}
+
+			public HistoryItem next() {
+				synchronized (History.this) {
+					if (next >= items.size())
+						throw new NoSuchElementException();
+					return items.get(next++);
+				}
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
 	public synchronized void add(final State s, final Operation o) {
-		if (items.isEmpty()) {
+		if (items.size() == 0) {
 			items.add(new HistoryItem(s, null));
 			currentPosition = 0;
 			notifyAboutNewState(s, 0);
@@ -56,9 +94,7 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 			}
 
 			// Delete all following item (including the current one)
-			while (items.size() > currentPosition) {
-				items.remove(currentPosition);
-			}
+			items.truncate(currentPosition);
 			items.add(newItem);
 			// Create a new last item
 			HistoryItem historyItem = new HistoryItem(s, null);
@@ -68,6 +104,48 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 		}
 	}
 
+	/**
+	 * Adds a path of states at once, like calling
+	 * {@link #add(State, Operation)} for each state and the operation that
+	 * leads to it. The following states are removed only once and the
+	 * listeners are notified after the whole path has been added.
+	 * 
+	 * @param states
+	 *            the states of the path, without the current state
+	 * @param operations
+	 *            the operations that lead to the states
+	 */
+	public synchronized void addAll(final List<State> states,
+			final List<Operation> operations) {
+		// @StartAssert
+		Assert.isTrue(states.size() == operations.size(),
+				"Each state needs an operation");
+		// @EndAssert
+		if (states.isEmpty())
+			return;
+		if (items.size() == 0) {
+			add(states.get(0), operations.get(0));
+			addAll(states.subList(1, states.size()),
+					operations.subList(1, operations.size()));
+			return;
+		}
+		for (int i = currentPosition + 1; i < items.size(); i++) {
+			notifyAboutRemoval(items.get(i).getState(), i);
+		}
+		State previous = items.get(currentPosition).getState();
+		items.truncate(currentPosition);
+		for (int i = 0; i < states.size(); i++) {
+			items.add(new HistoryItem(previous, operations.get(i)));
+			previous = states.get(i);
+		}
+		items.add(new HistoryItem(previous, null));
+		final int first = currentPosition + 1;
+		currentPosition += states.size();
+		for (int i = 0; i < states.size(); i++) {
+			notifyAboutNewState(states.get(i), first + i);
+		}
+	}
+
 	private void notifyAboutNewState(final State state, final int position) {
 		for (HistoryListener l : listeners) {
 			l.stateEntersHistory(state, position);
@@ -85,7 +163,7 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 	}
 
 	public synchronized/* @ pure @ */boolean isEmpty() {
-		return items.isEmpty();
+		return items.size() == 0;
 	}
 
 	/*
@@ -95,19 +173,25 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 	 * 
 	 * @
 	 */
-	public synchronized void gotoPos(final int pos) throws ProBException {
-		// @StartAssert
-		Assert.isTrue(!isEmpty(), "History is empty");
-		Assert.isTrue(0 <= pos, "Position must be greater or equal 0, was "
-				+ pos);
-		Assert.isTrue(pos < size(), "Position must be less than history size");
-		// @EndAssert
-		currentPosition = pos;
-		SetStateCommand.setState(Animator.getAnimator(), getCurrent()
-				.getStateId());
+	public void gotoPos(final int pos) throws ProBException {
+		// the command and the listeners are called without holding the
+		// monitor, the thread that executes a command may need it
+		final HistoryItem current;
+		synchronized (this) {
+			// @StartAssert
+			Assert.isTrue(!isEmpty(), "History is empty");
+			Assert.isTrue(0 <= pos,
+					"Position must be greater or equal 0, was " + pos);
+			Assert.isTrue(pos < size(),
+					"Position must be less than history size");
+			// @EndAssert
+			currentPosition = pos;
+			current = getCurrent();
+		}
+		SetStateCommand.setState(Animator.getAnimator(), current.getStateId());
 
-		Animator.getAnimator().announceCurrentStateChanged(
-				getCurrent().getState(), Operation.NULL_OPERATION);
+		Animator.getAnimator().announceCurrentStateChanged(current.getState(),
+				Operation.NULL_OPERATION);
 	}
 
 	public synchronized HistoryItem getCurrent() {
@@ -131,6 +215,18 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 			return null;
 	}
 
+	/**
+	 * Returns an item of the animator history by its absolute position.
+	 * 
+	 * @param position
+	 *            the position of the item, 0 is the first state of the history
+	 * @return the history item or <code>null</code> if there is no such element
+	 */
+	public synchronized HistoryItem getItemAt(final int position) {
+		return position >= 0 && position < items.size() ? items.get(position)
+				: null;
+	}
+
 	/**
 	 * Like, {@link #getHistoryItem(int)}, but the state of the history item is
 	 * returned.
@@ -146,11 +242,15 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 		return item == null ? null : item.getState();
 	}
 
-	public synchronized void gotoNext() {
-		if (currentPosition < items.size() - 1) {
+	public void gotoNext() {
+		final HistoryItem current;
+		synchronized (this) {
+			if (currentPosition >= items.size() - 1)
+				return;
 			currentPosition++;
-			announceCurrentState();
+			current = getCurrent();
 		}
+		announceCurrentState(current);
 	}
 
 	/*
@@ -160,15 +260,18 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 	 * 
 	 * @
 	 */
-	public synchronized void gotoPrevious() {
-		if (currentPosition > 0) {
+	public void gotoPrevious() {
+		final HistoryItem current;
+		synchronized (this) {
+			if (currentPosition <= 0)
+				return;
 			currentPosition--;
-			announceCurrentState();
+			current = getCurrent();
 		}
+		announceCurrentState(current);
 	}
 
-	private void announceCurrentState() {
-		HistoryItem item = getCurrent();
+	private void announceCurrentState(final HistoryItem item) {
 		Animator.getAnimator().announceCurrentStateChanged(item.getState(),
 				Operation.NULL_OPERATION);
 	}
@@ -176,8 +279,10 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 	public synchronized void reset() {
 		// notify listeners about removal of elements
 		// from last to first state
-		for (int i = items.size() - 1; i >= 0; i--) {
-			notifyAboutRemoval(items.get(i).getState(), i);
+		if (!listeners.isEmpty()) {
+			for (int i = items.size() - 1; i >= 0; i--) {
+				notifyAboutRemoval(items.get(i).getState(), i);
+			}
 		}
 		items.clear();
 		currentPosition = 0;
@@ -193,8 +298,12 @@ public class History implements Iterable<HistoryItem>, IComputationListener {
 		}
 	}
 
-	public HistoryItem[] getAllItems() {
-		return items.toArray(EMPTY_ITEM_ARRAY);
+	public synchronized HistoryItem[] getAllItems() {
+		final HistoryItem[] result = new HistoryItem[items.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = items.get(i);
+		}
+		return result;
 	}
 
 	synchronized public void addListener(final HistoryListener listener) {
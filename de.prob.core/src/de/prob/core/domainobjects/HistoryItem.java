@@ -6,6 +6,8 @@
 
 package de.prob.core.domainobjects;
 
+import java.io.Serializable;
+
 import org.eclipse.core.runtime.Assert;
 
 /**
@@ -29,7 +31,9 @@ import org.eclipse.core.runtime.Assert;
  * 
  */
 
-public final class HistoryItem {
+public final class HistoryItem implements Serializable {
+	private static final long serialVersionUID = -3125439412777020266L;
+
 	private final State state;
 	private final Operation operation;
 
@@ -0,0 +1,222 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.domainobjects;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.prob.logging.Logger;
+
+/**
+ * Stores the items of the {@link History} in chunks of fixed size, so that
+ * positional access, appending and truncating take constant time.
+ *
+ * If the history grows beyond a given number of items, the oldest chunks are
+ * serialised into a temporary file and read back on demand. Only full chunks
+ * are written to the file and they are always a prefix of all chunks, so the
+ * file can be truncated together with the history.
+ */
+final class HistoryStore {
+	private static final int CHUNK_BITS = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private final int maxItemsInMemory;
+
+	/**
+	 * The chunks, a spilled chunk is represented by <code>null</code>
+	 */
+	private final List<HistoryItem[]> chunks = new ArrayList<HistoryItem[]>();
+	private int size = 0;
+
+	/**
+	 * The first <code>spilledChunks</code> chunks are stored in the file,
+	 * chunk <code>i</code> starts at <code>spillOffsets[i]</code> and ends at
+	 * <code>spillOffsets[i + 1]</code>
+	 */
+	private long[] spillOffsets = new long[] { 0 };
+	private int spilledChunks = 0;
+	private RandomAccessFile spillFile;
+	private File spillPath;
+	private boolean spillingDisabled = false;
+
+	// the chunk that has been read from the file most recently
+	private int cachedChunkIndex = -1;
+	private HistoryItem[] cachedChunk;
+
+	/**
+	 * @param maxItemsInMemory
+	 *            the number of items that are kept in memory at least, older
+	 *            items are moved to a temporary file. A value <= 0 disables
+	 *            moving items to a file.
+	 */
+	public HistoryStore(final int maxItemsInMemory) {
+		this.maxItemsInMemory = maxItemsInMemory;
+		this.spillingDisabled = maxItemsInMemory <= 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public HistoryItem get(final int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		return getChunk(index >> CHUNK_BITS)[index & CHUNK_MASK];
+	}
+
+	public void add(final HistoryItem item) {
+		if (size == chunks.size() << CHUNK_BITS) {
+			chunks.add(new HistoryItem[CHUNK_SIZE]);
+		}
+		chunks.get(chunks.size() - 1)[size & CHUNK_MASK] = item;
+		size++;
+		while (!spillingDisabled
+				&& spilledChunks < chunks.size() - 1
+				&& size - ((spilledChunks + 1) << CHUNK_BITS) >= maxItemsInMemory) {
+			spill();
+		}
+	}
+
+	/**
+	 * Removes all items from the given position to the end.
+	 */
+	public void truncate(final int newSize) {
+		if (newSize >= size)
+			return;
+		if (newSize <= 0) {
+			clear();
+			return;
+		}
+		final int lastChunk = (newSize - 1) >> CHUNK_BITS;
+		if (lastChunk < spilledChunks) {
+			// the last chunk must be in memory, so it can grow again
+			final HistoryItem[] chunk = getChunk(lastChunk);
+			chunks.set(lastChunk, chunk);
+			truncateSpillFile(lastChunk);
+		}
+		while (chunks.size() > lastChunk + 1) {
+			chunks.remove(chunks.size() - 1);
+		}
+		final HistoryItem[] chunk = chunks.get(lastChunk);
+		final int end = Math.min(CHUNK_SIZE, size - (lastChunk << CHUNK_BITS));
+		for (int i = ((newSize - 1) & CHUNK_MASK) + 1; i < end; i++) {
+			chunk[i] = null;
+		}
+		size = newSize;
+	}
+
+	public void clear() {
+		chunks.clear();
+		size = 0;
+		closeSpillFile();
+	}
+
+	private HistoryItem[] getChunk(final int index) {
+		if (index >= spilledChunks)
+			return chunks.get(index);
+		if (index != cachedChunkIndex) {
+			cachedChunk = readChunk(index);
+			cachedChunkIndex = index;
+		}
+		return cachedChunk;
+	}
+
+	private void spill() {
+		final int index = spilledChunks;
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(chunks.get(index));
+			out.close();
+			if (spillFile == null) {
+				spillPath = File.createTempFile("prob_history", ".bin");
+				spillPath.deleteOnExit();
+				spillFile = new RandomAccessFile(spillPath, "rw");
+			}
+			final long offset = spillOffsets[index];
+			spillFile.seek(offset);
+			spillFile.write(bytes.toByteArray());
+			if (spillOffsets.length < index + 2) {
+				final long[] larger = new long[spillOffsets.length * 2 + 2];
+				System.arraycopy(spillOffsets, 0, larger, 0,
+						spillOffsets.length);
+				spillOffsets = larger;
+			}
+			spillOffsets[index + 1] = offset + bytes.size();
+		} catch (IOException e) {
+			Logger.info("Could not move old history items to a file, they are kept in memory: "
+					+ e.getLocalizedMessage());
+			spillingDisabled = true;
+			return;
+		}
+		chunks.set(index, null);
+		spilledChunks++;
+	}
+
+	private HistoryItem[] readChunk(final int index) {
+		final long offset = spillOffsets[index];
+		final byte[] bytes = new byte[(int) (spillOffsets[index + 1] - offset)];
+		try {
+			spillFile.seek(offset);
+			spillFile.readFully(bytes);
+			final ObjectInputStream in = new ObjectInputStream(
+					new ByteArrayInputStream(bytes));
+			try {
+				return (HistoryItem[]) in.readObject();
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"Could not read history items from " + spillPath, e);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(
+					"Could not read history items from " + spillPath, e);
+		}
+	}
+
+	private void truncateSpillFile(final int chunks) {
+		spilledChunks = chunks;
+		if (cachedChunkIndex >= chunks) {
+			cachedChunkIndex = -1;
+			cachedChunk = null;
+		}
+		try {
+			spillFile.setLength(spillOffsets[chunks]);
+		} catch (IOException e) {
+			// the chunks are overwritten the next time
+			Logger.info("Could not truncate " + spillPath + ": "
+					+ e.getLocalizedMessage());
+		}
+	}
+
+	private void closeSpillFile() {
+		spilledChunks = 0;
+		cachedChunkIndex = -1;
+		cachedChunk = null;
+		if (spillFile != null) {
+			try {
+				spillFile.close();
+			} catch (IOException e) {
+				Logger.info("Could not close " + spillPath + ": "
+						+ e.getLocalizedMessage());
+			}
+			spillPath.delete();
+			spillFile = null;
+			spillPath = null;
+		}
+	}
+}
@@ -6,6 +6,7 @@
 
 package de.prob.core.domainobjects;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -20,7 +21,9 @@ import de.prob.prolog.term.IntegerPrologTerm;
 import de.prob.prolog.term.ListPrologTerm;
 import de.prob.prolog.term.PrologTerm;
 
-public final class Operation {
+public final class Operation implements Serializable {
+	private static final long serialVersionUID = -4207890502962912647L;
+
 	private static final String INTERNAL_NAME_INITIALISE_MACHINE = "$initialise_machine";
 	private static final String INTERNAL_NAME_SETUP_CONSTANTS = "$setup_constants";
 
@@ -48,7 +51,9 @@ public final class Operation {
 		return displayname;
 	}
 
-	public static class EventStackElement {
+	public static class EventStackElement implements Serializable {
+		private static final long serialVersionUID = 4405843793472883364L;
+
 		private final String eventName;
 		private final List<String> parameters;
 
@@ -6,56 +6,124 @@
 
 package de.prob.core.domainobjects;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import de.prob.core.Animator;
+import de.prob.core.command.GetStateDetailsCommand;
+import de.prob.exceptions.ProBException;
 import de.prob.logging.Logger;
 
-public final class State {
+public final class State implements Serializable {
+	private static final long serialVersionUID = -3932426189138190279L;
+
+	/**
+	 * The result of the invariant check of a state. It is
+	 * {@link #UNKNOWN} if the details of a lazy state could not be retrieved.
+	 */
+	public enum InvariantStatus {
+		PRESERVED, VIOLATED, UNKNOWN
+	}
 
 	private static final String ERROR_MSG = "Enabled Operations was null, this is most likely an error in the core.";
 
 	private final String id;
 	private final boolean initialized;
-	private final boolean invariantViolated;
 	private final List<Operation> enabledOperations;
 	private final boolean timeoutOccured;
 	private final boolean maxOperationReached;
-	private final Collection<StateError> stateErrors;
-	private final Map<String, Variable> stateValues;
 	private final Set<String> timeout;
 
+	/**
+	 * The values, invariant status and errors. <code>null</code> if they have
+	 * not been retrieved yet.
+	 */
+	private volatile Details details;
+
+	/**
+	 * A state whose values are reused when the details are retrieved, see
+	 * {@link StateValues}. Only needed until the details are known.
+	 */
+	private transient volatile State base;
+
+	/**
+	 * The generation of the {@link StateCache} when the state was created.
+	 * The details are not retrieved for a state of an earlier generation,
+	 * because its id refers to a machine that is not loaded anymore.
+	 */
+	private final int generation;
+
+	public State(final String stateId, final boolean initialised,
+			final boolean invariantKo, final boolean timeoutOccured,
+			final boolean maxOperationReached,
+			final Collection<Variable> stateValues,
+			final List<Operation> enabledOperations,
+			final Collection<StateError> stateErrors,
+			final Set<String> timeoutedOperations) {
+		this(stateId, initialised, invariantKo, timeoutOccured,
+				maxOperationReached, stateValues, enabledOperations,
+				stateErrors, timeoutedOperations, null);
+	}
+
+	/**
+	 * Like the other constructor, but variables that are equal to the
+	 * variables of <code>base</code> share their instances and are not stored
+	 * again.
+	 *
+	 * @param base
+	 *            a similar state, usually the predecessor, or
+	 *            <code>null</code>
+	 */
 	public State(final String stateId, final boolean initialised,
 			final boolean invariantKo, final boolean timeoutOccured,
 			final boolean maxOperationReached,
 			final Collection<Variable> stateValues,
 			final List<Operation> enabledOperations,
 			final Collection<StateError> stateErrors,
+			final Set<String> timeoutedOperations, final State base) {
+		this(stateId, initialised, timeoutOccured, maxOperationReached,
+				enabledOperations, timeoutedOperations);
+		this.details = new Details(invariantKo, StateValues.create(
+				stateValues, getLoadedValues(base)), stateErrors);
+	}
+
+	/**
+	 * Creates a lazy state. The values of the variables, the invariant status
+	 * and the state based errors are retrieved from ProB when they are
+	 * accessed for the first time.
+	 */
+	public State(final String stateId, final boolean initialised,
+			final boolean timeoutOccured, final boolean maxOperationReached,
+			final List<Operation> enabledOperations,
 			final Set<String> timeoutedOperations) {
+		this(stateId, initialised, timeoutOccured, maxOperationReached,
+				enabledOperations, timeoutedOperations, null);
+	}
+
+	/**
+	 * Creates a lazy state. When the values are retrieved, the values of
+	 * <code>base</code> are reused if they are known by then.
+	 *
+	 * @param base
+	 *            a similar state, usually the predecessor, or
+	 *            <code>null</code>
+	 */
+	public State(final String stateId, final boolean initialised,
+			final boolean timeoutOccured, final boolean maxOperationReached,
+			final List<Operation> enabledOperations,
+			final Set<String> timeoutedOperations, final State base) {
+		this.base = base;
+		this.generation = Animator.getAnimator().getStateCache()
+				.getGeneration();
 		this.id = stateId;
 		this.initialized = initialised;
-		this.invariantViolated = invariantKo;
 		this.timeoutOccured = timeoutOccured;
 		this.maxOperationReached = maxOperationReached;
-		this.stateErrors = stateErrors;
 		this.timeout = timeoutedOperations;
 
-		Map<String, Variable> vars = new HashMap<String, Variable>(
-				stateValues.size());
-		for (Variable v : stateValues) {
-			final String identifier = v.getIdentifier();
-			if (vars.containsKey(identifier)) {
-				Logger.notifyUser("ProB returned a variable twice.");
-			} else {
-				vars.put(identifier, v);
-			}
-		}
-		this.stateValues = Collections.unmodifiableMap(vars);
-
 		Logger.assertProB(ERROR_MSG, enabledOperations != null);
 
 		this.enabledOperations = Collections
@@ -66,12 +134,32 @@ public final class State {
 		return initialized;
 	}
 
+	/**
+	 * Retrieves the details of a lazy state if necessary.
+	 * 
+	 * @return the invariant status, {@link InvariantStatus#UNKNOWN} if the
+	 *         details could not be retrieved
+	 */
+	public InvariantStatus getInvariantStatus() {
+		final Details d = getDetails();
+		if (d == null)
+			return InvariantStatus.UNKNOWN;
+		return d.invariantViolated ? InvariantStatus.VIOLATED
+				: InvariantStatus.PRESERVED;
+	}
+
+	/**
+	 * @return <code>true</code> if the invariant is known to be violated
+	 */
 	public boolean isInvariantViolated() {
-		return invariantViolated;
+		return getInvariantStatus() == InvariantStatus.VIOLATED;
 	}
 
+	/**
+	 * @return <code>true</code> if the invariant is known to be preserved
+	 */
 	public boolean isInvariantPreserved() {
-		return !invariantViolated;
+		return getInvariantStatus() == InvariantStatus.PRESERVED;
 	}
 
 	public boolean isMaxOperationReached() {
@@ -98,23 +186,45 @@ public final class State {
 		return enabledOperations;
 	}
 
-	public Map<String, Variable> getValues() {
-		return stateValues;
+	/**
+	 * Retrieves the details of a lazy state if necessary.
+	 * 
+	 * @return the values, empty if the details could not be retrieved
+	 */
+	public StateValues getValues() {
+		final Details d = getDetails();
+		return d == null ? StateValues.EMPTY : d.stateValues;
 	}
 
 	public boolean variableHasValue(final String variable) {
-		return stateValues.containsKey(variable);
+		return getValues().containsKey(variable);
 	}
 
+	/**
+	 * @return <code>true</code> if the values, the invariant status and the
+	 *         errors of this state are known without asking ProB
+	 */
+	public boolean isDetailsLoaded() {
+		return details != null;
+	}
+
+	/**
+	 * Does not retrieve the details of a lazy state.
+	 */
 	@Override
 	public String toString() {
 		final StringBuilder result = new StringBuilder();
 		result.append(id);
-		if (isInvariantViolated()) {
+		final Details d = details;
+		if (d == null) {
+			result.append(": (not retrieved)");
+			return result.toString();
+		}
+		if (d.invariantViolated) {
 			result.append(" (Invariant violated)");
 		}
 		result.append(": Var[");
-		result.append(stateValues.values());
+		result.append(d.stateValues.values());
 		result.append("]");
 		return result.toString();
 	}
@@ -131,16 +241,94 @@ public final class State {
 		return this.id.hashCode();
 	}
 
+	/**
+	 * Retrieves the details of a lazy state if necessary.
+	 * 
+	 * @return the errors, empty if the details could not be retrieved
+	 */
 	public Collection<StateError> getStateBasedErrors() {
-		return stateErrors;
+		final Details d = getDetails();
+		return d == null ? Collections.<StateError> emptyList()
+				: d.stateErrors;
 	}
 
 	public boolean hasStateBasedErrors() {
-		return !stateErrors.isEmpty();
+		return !getStateBasedErrors().isEmpty();
 	}
 
 	public boolean isTimeoutOp(final String opName) {
 		return timeout.contains(opName);
 	}
 
+	/**
+	 * Retrieves the values, the invariant status and the errors of a lazy
+	 * state from ProB, if they are not known yet. This blocks until ProB has
+	 * answered, so user interfaces should call it in the background before
+	 * they show a state whose details are not loaded. The lock of this state
+	 * is not held while ProB is asked, so it might happen that two threads
+	 * retrieve the details at the same time.
+	 * 
+	 * @return <code>false</code> if the details are not known and cannot be
+	 *         retrieved, because the state belongs to a machine that is not
+	 *         loaded anymore
+	 * @throws ProBException
+	 *             if ProB could not retrieve the details
+	 */
+	public boolean loadDetails() throws ProBException {
+		if (details != null)
+			return true;
+		if (generation != Animator.getAnimator().getStateCache()
+				.getGeneration())
+			return false;
+		final StateValues baseValues = getLoadedValues(base);
+		final GetStateDetailsCommand cmd = new GetStateDetailsCommand(id,
+				baseValues);
+		Animator.getAnimator().execute(cmd);
+		details = new Details(cmd.isInvariantViolated(), StateValues.create(
+				cmd.getValues(), baseValues), cmd.getStateErrors());
+		base = null;
+		return true;
+	}
+
+	/**
+	 * Returns the details, retrieves them from ProB if necessary.
+	 * 
+	 * @return the details or <code>null</code> if they could not be retrieved
+	 */
+	private Details getDetails() {
+		try {
+			if (!loadDetails())
+				return null;
+		} catch (ProBException e) {
+			// the user has been notified, we try again next time
+			return null;
+		}
+		return details;
+	}
+
+	/**
+	 * @return the values of the state if they are known without asking ProB,
+	 *         <code>null</code> otherwise
+	 */
+	private static StateValues getLoadedValues(final State state) {
+		final Details d = state == null ? null : state.details;
+		return d == null ? null : d.stateValues;
+	}
+
+	private static final class Details implements Serializable {
+		private static final long serialVersionUID = 2480394151780436727L;
+
+		private final boolean invariantViolated;
+		private final StateValues stateValues;
+		private final Collection<StateError> stateErrors;
+
+		public Details(final boolean invariantViolated,
+				final StateValues stateValues,
+				final Collection<StateError> stateErrors) {
+			this.invariantViolated = invariantViolated;
+			this.stateErrors = stateErrors;
+			this.stateValues = stateValues;
+		}
+	}
+
 }
@@ -0,0 +1,237 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.domainobjects;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches explored {@link State}s and the values of {@link EvaluationElement}s
+ * in these states, keyed by the state id. In contrast to the
+ * {@link HistoryBasedCache}, states stay in the cache when they leave the
+ * history, so going back to a state that has been seen before does not need
+ * to ask ProB again.
+ *
+ * The cache has a budget for the (estimated) memory its entries use. If the
+ * budget is exceeded, the least recently used states are evicted. The budget
+ * is set by the system property {@value #MAX_WEIGHT_PROPERTY} in bytes. The
+ * cache must be cleared when a new machine is loaded, because the state ids
+ * are not valid anymore. Each time the cache is cleared, a new generation
+ * starts, see {@link #getGeneration()}.
+ */
+public final class StateCache {
+	public static final String MAX_WEIGHT_PROPERTY = "de.prob.core.stateCache.maxWeight";
+	private static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+	// rough estimations of the memory used by the cached objects
+	private static final int ENTRY_WEIGHT = 128;
+	private static final int OPERATION_WEIGHT = 256;
+	private static final int VARIABLE_WEIGHT = 64;
+	private static final int VALUE_WEIGHT = 96;
+
+	private final long maxWeight;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(
+			16, 0.75f, true);
+	private long weight = 0;
+	private volatile int generation = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public StateCache() {
+		this(Long.getLong(MAX_WEIGHT_PROPERTY, DEFAULT_MAX_WEIGHT));
+	}
+
+	public StateCache(final long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * @return the cached state or <code>null</code> if the state is not in the
+	 *         cache
+	 */
+	public synchronized State getState(final String stateId) {
+		final Entry entry = entries.get(stateId);
+		if (entry == null || entry.state == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		if (!entry.stateDetailsWeighed && entry.state.isDetailsLoaded()) {
+			// a lazy state has retrieved its values in the meantime
+			updateWeight(entry);
+			evict();
+		}
+		return entry.state;
+	}
+
+	public synchronized void putState(final State state) {
+		final Entry entry = getOrCreateEntry(state.getId());
+		// a lazy state does not replace a state that knows its values
+		if (entry.state == null || !entry.state.isDetailsLoaded()
+				|| state.isDetailsLoaded()) {
+			entry.state = state;
+			updateWeight(entry);
+			evict();
+		}
+	}
+
+	/**
+	 * @return the cached value or <code>null</code> if the value is not in the
+	 *         cache
+	 */
+	public synchronized EvaluationStateElement getValue(final State state,
+			final EvaluationElement element) {
+		final Entry entry = entries.get(state.getId());
+		final EvaluationStateElement value = entry == null
+				|| entry.values == null ? null : entry.values.get(element);
+		if (value == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return value;
+	}
+
+	public synchronized void putValue(final EvaluationStateElement value) {
+		final Entry entry = getOrCreateEntry(value.getState().getId());
+		if (entry.values == null) {
+			entry.values = new HashMap<EvaluationElement, EvaluationStateElement>();
+		}
+		final EvaluationStateElement old = entry.values.put(
+				value.getElement(), value);
+		if (old != null) {
+			entry.weight -= weigh(old);
+			weight -= weigh(old);
+		}
+		entry.weight += weigh(value);
+		weight += weigh(value);
+		evict();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+		generation++;
+	}
+
+	/**
+	 * @return the number of times the cache has been cleared. State ids are
+	 *         only valid in the generation they have been created in.
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the ratio of hits to all requests, or 0 if there have not been
+	 *         any requests yet
+	 */
+	public synchronized double getHitRate() {
+		final long requests = hits + misses;
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	/**
+	 * @return the estimated memory used by the cached entries in bytes
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "StateCache[states=" + entries.size() + ", weight=" + weight
+				+ "/" + maxWeight + ", hits=" + hits + ", misses=" + misses
+				+ ", evictions=" + evictions + "]";
+	}
+
+	private Entry getOrCreateEntry(final String stateId) {
+		Entry entry = entries.get(stateId);
+		if (entry == null) {
+			entry = new Entry();
+			entry.weight = ENTRY_WEIGHT;
+			weight += ENTRY_WEIGHT;
+			entries.put(stateId, entry);
+		}
+		return entry;
+	}
+
+	private void updateWeight(final Entry entry) {
+		long newWeight = ENTRY_WEIGHT;
+		if (entry.values != null) {
+			for (final EvaluationStateElement value : entry.values.values()) {
+				newWeight += weigh(value);
+			}
+		}
+		entry.stateDetailsWeighed = entry.state.isDetailsLoaded();
+		newWeight += weigh(entry.state);
+		weight += newWeight - entry.weight;
+		entry.weight = newWeight;
+	}
+
+	/**
+	 * Removes the least recently used entries until the budget is kept. The
+	 * most recently used entry is never removed.
+	 */
+	private void evict() {
+		final Iterator<Entry> iterator = entries.values().iterator();
+		while (weight > maxWeight && entries.size() > 1) {
+			final Entry eldest = iterator.next();
+			iterator.remove();
+			weight -= eldest.weight;
+			evictions++;
+		}
+	}
+
+	private static long weigh(final State state) {
+		long result = state.getEnabledOperations().size() * OPERATION_WEIGHT;
+		if (state.isDetailsLoaded()) {
+			// unchanged variables are shared with the predecessor
+			for (final Variable variable : state.getValues()
+					.getChangedVariables()) {
+				result += VARIABLE_WEIGHT + 2 * length(variable.getIdentifier())
+						+ 4 * length(variable.getValue());
+			}
+		}
+		return result;
+	}
+
+	private static long weigh(final EvaluationStateElement value) {
+		return VALUE_WEIGHT + 2 * length(value.getText());
+	}
+
+	private static int length(final String string) {
+		return string == null ? 0 : string.length();
+	}
+
+	private static final class Entry {
+		private State state;
+		private boolean stateDetailsWeighed;
+		private Map<EvaluationElement, EvaluationStateElement> values;
+		private long weight;
+	}
+}
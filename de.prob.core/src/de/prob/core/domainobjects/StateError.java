@@ -3,6 +3,8 @@
  */
 package de.prob.core.domainobjects;
 
+import java.io.Serializable;
+
 import de.prob.prolog.term.CompoundPrologTerm;
 import de.prob.prolog.term.PrologTerm;
 
@@ -16,7 +18,9 @@ import de.prob.prolog.term.PrologTerm;
  * 
  * @author plagge
  */
-public class StateError {
+public class StateError implements Serializable {
+	private static final long serialVersionUID = 1279939632070881329L;
+
 	private final String event;
 	private final String shortDescription;
 	private final String longDescription;
@@ -0,0 +1,203 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.domainobjects;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import de.prob.logging.Logger;
+
+/**
+ * The values of the variables of a {@link State}, an unmodifiable map from the
+ * identifier to the {@link Variable}.
+ *
+ * Successive states usually differ only in a few variables. If the values are
+ * created with a base (usually the values of the predecessor), only the
+ * variables that changed are stored, the others are looked up in the base. The
+ * {@link Variable} instances of unchanged variables are shared with the base.
+ * To keep lookups cheap, a full copy of the map is made after a few deltas.
+ */
+public final class StateValues extends AbstractMap<String, Variable> implements
+		Serializable {
+	private static final long serialVersionUID = -4839183470193016493L;
+
+	private static final int MAX_DEPTH = 8;
+
+	public static final StateValues EMPTY = new StateValues(null,
+			Collections.<String, Variable> emptyMap(), 0);
+
+	/**
+	 * the values this map is a delta of, <code>null</code> if
+	 * {@link #changed} contains all values
+	 */
+	private final StateValues base;
+	private final Map<String, Variable> changed;
+	private final int depth;
+	private transient Set<Map.Entry<String, Variable>> entrySet;
+
+	private StateValues(final StateValues base,
+			final Map<String, Variable> changed, final int depth) {
+		this.base = base;
+		this.changed = changed;
+		this.depth = depth;
+	}
+
+	/**
+	 * Creates the values of a state.
+	 *
+	 * @param variables
+	 *            the variables as retrieved from ProB
+	 * @param base
+	 *            the values of a similar state, usually the predecessor, or
+	 *            <code>null</code>. Variables of <code>variables</code> that
+	 *            are equal to a variable of the base are replaced by the
+	 *            instance of the base.
+	 */
+	public static StateValues create(final Collection<Variable> variables,
+			final StateValues base) {
+		final Map<String, Variable> changed = new HashMap<String, Variable>();
+		boolean sameIdentifiers = base != null
+				&& base.size() == variables.size();
+		for (final Variable variable : variables) {
+			final String identifier = variable.getIdentifier();
+			if (changed.containsKey(identifier)) {
+				Logger.notifyUser("ProB returned a variable twice.");
+				sameIdentifiers = false;
+				continue;
+			}
+			final Variable baseVariable = base == null ? null : base
+					.get(identifier);
+			if (baseVariable == null) {
+				sameIdentifiers = false;
+				changed.put(identifier, variable);
+			} else if (baseVariable.equals(variable)) {
+				changed.put(identifier, baseVariable);
+			} else {
+				changed.put(identifier, variable);
+			}
+		}
+		if (!sameIdentifiers || base.depth >= MAX_DEPTH)
+			// the unchanged variables are still shared with the base
+			return new StateValues(null, changed, 0);
+		final Iterator<Variable> it = changed.values().iterator();
+		while (it.hasNext()) {
+			final Variable variable = it.next();
+			if (base.get(variable.getIdentifier()) == variable) {
+				it.remove();
+			}
+		}
+		return new StateValues(base, changed, base.depth + 1);
+	}
+
+	@Override
+	public Variable get(final Object key) {
+		final Variable result = changed.get(key);
+		if (result != null || base == null)
+			return result;
+		return base.get(key);
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return base == null ? changed.containsKey(key) : base.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return base == null ? changed.size() : base.size();
+	}
+
+	/**
+	 * @return the variables that are stored in this map and not in its base,
+	 *         all variables if the map has no base
+	 */
+	public Collection<Variable> getChangedVariables() {
+		return Collections.unmodifiableCollection(changed.values());
+	}
+
+	/**
+	 * @return the identifiers whose variables differ between this map and the
+	 *         other map, including identifiers that are only in one of them.
+	 *         If one map is a delta of the other, only the delta is compared.
+	 */
+	public Set<String> getDifferences(final StateValues other) {
+		final Set<String> result = new HashSet<String>();
+		if (other == this)
+			return result;
+		if (other == null) {
+			result.addAll(keySet());
+		} else if (base == other || other.base == this) {
+			final StateValues delta = base == other ? this : other;
+			// unchanged variables have been removed from the delta
+			result.addAll(delta.changed.keySet());
+		} else {
+			addDifferences(this, other, result);
+			addDifferences(other, this, result);
+		}
+		return result;
+	}
+
+	private static void addDifferences(final StateValues a,
+			final StateValues b, final Set<String> result) {
+		for (final Map.Entry<String, Variable> entry : a.entrySet()) {
+			final Variable variable = b.get(entry.getKey());
+			if (variable != entry.getValue()
+					&& (variable == null || !variable.equals(entry.getValue()))) {
+				result.add(entry.getKey());
+			}
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<String, Variable>> entrySet() {
+		if (entrySet == null) {
+			entrySet = base == null ? Collections.unmodifiableMap(changed)
+					.entrySet() : new DeltaEntrySet();
+		}
+		return entrySet;
+	}
+
+	private final class DeltaEntrySet extends
+			AbstractSet<Map.Entry<String, Variable>> {
+		@Override
+		public Iterator<Map.Entry<String, Variable>> iterator() {
+			final Iterator<Map.Entry<String, Variable>> baseIterator = base
+					.entrySet().iterator();
+			return new Iterator<Map.Entry<String, Variable>>() {
+				public boolean hasNext() {
+					return baseIterator.hasNext();
+				}
+
+				public Map.Entry<String, Variable> next() {
+					final Map.Entry<String, Variable> entry = baseIterator
+							.next();
+					final Variable value = changed.get(entry.getKey());
+					return value == null ? entry
+							: new SimpleImmutableEntry<String, Variable>(
+									entry.getKey(), value);
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return base.size();
+		}
+	}
+}
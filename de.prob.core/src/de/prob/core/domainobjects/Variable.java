@@ -6,6 +6,8 @@
 
 package de.prob.core.domainobjects;
 
+import java.io.Serializable;
+
 import org.apache.commons.lang.ObjectUtils;
 
 import de.prob.core.command.CommandException;
@@ -15,7 +17,8 @@ import de.prob.parser.ResultParserException;
 import de.prob.prolog.term.CompoundPrologTerm;
 import de.prob.prolog.term.PrologTerm;
 
-public final class Variable {
+public final class Variable implements Serializable {
+	private static final long serialVersionUID = -1926245660628247928L;
 
 	private final String identifier;
 	private final String value;
@@ -79,6 +82,17 @@ public final class Variable {
 		return rawValue != null;
 	}
 
+	/**
+	 * @param raw
+	 *            the second argument of a binding as returned by ProB
+	 * @return <code>true</code> if the binding denotes the same value as this
+	 *         variable, i.e. a variable created from the binding would be
+	 *         equal to this one
+	 */
+	public boolean hasRawValue(final PrologTerm raw) {
+		return raw.hasFunctor("?", 0) ? rawValue == null : raw.equals(rawValue);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
@@ -27,7 +27,7 @@ public final class CounterExample {
 	private final List<CounterExampleProposition> propositions = new ArrayList<CounterExampleProposition>();
 	private final List<CounterExampleState> states = new ArrayList<CounterExampleState>();
 	private final int loopEntry;
-	private List<ArrayList<Boolean>> predicateValues;
+	private CounterExampleValues[] predicateValues;
 	private final List<Operation> initPath;
 
 	private final ListPrologTerm atomics;
@@ -64,17 +64,20 @@ public final class CounterExample {
 					.getArgument(3);
 
 			if (predicateValues == null) {
-				predicateValues = new ArrayList<ArrayList<Boolean>>();
+				predicateValues = new CounterExampleValues[values.size()];
 
 				for (int i = 0; i < values.size(); i++) {
-					predicateValues.add(new ArrayList<Boolean>());
+					predicateValues[i] = new CounterExampleValues(
+							example.size());
 				}
 			}
 
 			for (int i = 0; i < values.size(); i++) {
 				int value = ((IntegerPrologTerm) values.get(i)).getValue()
 						.intValue();
-				predicateValues.get(i).add(value == 0 ? false : true);
+				predicateValues[i].set(index,
+						value == 0 ? CounterExampleValueType.FALSE
+								: CounterExampleValueType.TRUE);
 			}
 
 			// final boolean inLoop = isLoopType && index >= loopEntry;
@@ -94,18 +97,19 @@ public final class CounterExample {
 		String functor = term.getFunctor();
 		int arity = term.getArity();
 
-		CounterExampleValueType[] values = new CounterExampleValueType[states
-				.size()];
-
 		if (arity == 0) {
+			CounterExampleValues values = new CounterExampleValues(states
+					.size());
 			if (functor.equals("true")) {
-				Arrays.fill(values, CounterExampleValueType.TRUE);
+				values = CounterExampleValues.filled(states.size(),
+						CounterExampleValueType.TRUE);
 			} else if (functor.equals("false")) {
-				Arrays.fill(values, CounterExampleValueType.FALSE);
+				values = CounterExampleValues.filled(states.size(),
+						CounterExampleValueType.FALSE);
 			}
 
 			proposition = new CounterExamplePredicate(functor, pathType,
-					loopEntry, Arrays.asList(values));
+					loopEntry, values);
 		} else if (arity == 1) {
 			if (functor.equals("ap") || functor.equals("tp")) {
 				IntegerPrologTerm atomic = (IntegerPrologTerm) term
@@ -117,18 +121,17 @@ public final class CounterExample {
 				atomicTerm = (CompoundPrologTerm) atomicTerm.getArgument(1);
 				String name = atomicTerm.getFunctor();
 
-				Logger.assertProB("CounterExample invalid",
-						values.length == predicateValues.get(atomicId).size());
+				// the values are never changed, so propositions of the same
+				// atomic can share them
+				final CounterExampleValues values = predicateValues[atomicId];
 
-				for (int i = 0; i < predicateValues.get(atomicId).size(); i++) {
-					values[i] = predicateValues.get(atomicId).get(i) ? CounterExampleValueType.TRUE
-							: CounterExampleValueType.FALSE;
-				}
+				Logger.assertProB("CounterExample invalid",
+						values.size() == states.size());
 
 				proposition = functor.equals("ap") ? new CounterExamplePredicate(
-						name, pathType, loopEntry, Arrays.asList(values))
+						name, pathType, loopEntry, values)
 						: new CounterExampleTransition(name, pathType,
-								loopEntry, Arrays.asList(values));
+								loopEntry, values);
 			} else {
 				CounterExampleProposition argument = createExample(term
 						.getArgument(1));
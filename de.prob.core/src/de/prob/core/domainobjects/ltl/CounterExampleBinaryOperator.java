@@ -1,6 +1,5 @@
 package de.prob.core.domainobjects.ltl;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import de.prob.core.command.LtlCheckingCommand.PathType;
@@ -16,8 +15,8 @@ public abstract class CounterExampleBinaryOperator extends
 		CounterExampleProposition {
 	protected final CounterExampleProposition firstArgument;
 	protected final CounterExampleProposition secondArgument;
-	protected List<List<Integer>> firstHighlightedPositions = new ArrayList<List<Integer>>();
-	protected List<List<Integer>> secondHighlightedPositions = new ArrayList<List<Integer>>();
+	private final CounterExampleHighlightedPositions firstHighlightedPositions = new HighlightedPositions();
+	private final CounterExampleHighlightedPositions secondHighlightedPositions = new HighlightedPositions();
 
 	public CounterExampleBinaryOperator(final String name,
 			final String fullName, final PathType pathType,
@@ -28,6 +27,12 @@ public abstract class CounterExampleBinaryOperator extends
 		this.secondArgument = secondArgument;
 	}
 
+	/**
+	 * Calculates the value at the given position and fills the highlighted
+	 * positions of this position. Operators that can calculate the values of
+	 * all positions faster override {@link #calculate()}, this method is then
+	 * only used for the highlighted positions.
+	 */
 	protected abstract CounterExampleValueType calculate(int position);
 
 	@Override
@@ -38,10 +43,10 @@ public abstract class CounterExampleBinaryOperator extends
 
 		Logger.assertProB("Sizes of traces do not match", size == second.size());
 
-		final List<CounterExampleValueType> values = new ArrayList<CounterExampleValueType>();
+		final CounterExampleValues values = new CounterExampleValues(size);
 
 		for (int i = 0; i < size; i++) {
-			values.add(calculate(i));
+			values.set(i, calculate(i));
 		}
 
 		return values;
@@ -86,10 +91,15 @@ public abstract class CounterExampleBinaryOperator extends
 	protected void fillHighlightedPositions(final int position,
 			final int firstIndex, final int secondIndex,
 			final int firstCheckedSize, int secondCheckedSize, boolean isPast) {
-		firstHighlightedPositions.add(fillPositions(position, firstIndex,
-				firstCheckedSize, isPast));
-		secondHighlightedPositions.add(fillPositions(position, secondIndex,
-				secondCheckedSize, isPast));
+		firstHighlightedPositions.store(position, fillPositions(position,
+				firstIndex, firstCheckedSize, isPast));
+		secondHighlightedPositions.store(position, fillPositions(position,
+				secondIndex, secondCheckedSize, isPast));
+	}
+
+	protected void assertSizesMatch() {
+		Logger.assertProB("Sizes of traces do not match", firstArgument
+				.getValues().size() == secondArgument.getValues().size());
 	}
 
 	@Override
@@ -128,4 +138,20 @@ public abstract class CounterExampleBinaryOperator extends
 
 		return unknownStateIndex;
 	}
+
+	private final class HighlightedPositions extends
+			CounterExampleHighlightedPositions {
+		@Override
+		public int size() {
+			return getValues().size();
+		}
+
+		@Override
+		protected void calculate(final int position) {
+			final CounterExampleValueType value = CounterExampleBinaryOperator.this
+					.calculate(position);
+			Logger.assertProB(fullName + " invalid",
+					value == getValues().get(position));
+		}
+	}
 }
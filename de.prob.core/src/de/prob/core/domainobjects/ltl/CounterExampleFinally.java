@@ -1,7 +1,6 @@
 package de.prob.core.domainobjects.ltl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import de.prob.core.command.LtlCheckingCommand.PathType;
@@ -21,16 +20,36 @@ public final class CounterExampleFinally extends CounterExampleUnaryOperator {
 			final CounterExampleProposition argument) {
 		super("F", "Finally", pathType, loopEntry, argument);
 
-		CounterExampleValueType[] firstValues = new CounterExampleValueType[argument
-				.getValues().size()];
-		Arrays.fill(firstValues, CounterExampleValueType.TRUE);
+		CounterExampleValues firstValues = CounterExampleValues.filled(
+				argument.getValues().size(),
+				CounterExampleValueType.TRUE);
 
 		CounterExamplePredicate first = new CounterExamplePredicate(pathType,
-				loopEntry, Arrays.asList(firstValues));
+				loopEntry, firstValues);
 
 		until = new CounterExampleUntil(pathType, loopEntry, first, argument);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		final int size = argument.getValues().size();
+		final CounterExampleSearch search = CounterExampleSearch.future(
+				argument.getValues(), pathType, loopEntry);
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			if (search.indexOf(position, CounterExampleValueType.TRUE) != -1) {
+				values.set(position, CounterExampleValueType.TRUE);
+			} else {
+				values.set(position, pathType != PathType.REDUCED ? CounterExampleValueType.FALSE
+						: CounterExampleValueType.UNKNOWN);
+			}
+		}
+		return values;
+	}
+
 	@Override
 	protected CounterExampleValueType calculate(final int position) {
 		CounterExampleValueType value = calculateFinallyOperator(position);
@@ -1,7 +1,6 @@
 package de.prob.core.domainobjects.ltl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import de.prob.core.command.LtlCheckingCommand.PathType;
@@ -23,12 +22,12 @@ public final class CounterExampleGlobally extends CounterExampleUnaryOperator {
 			final CounterExampleProposition argument) {
 		super("G", "Globally", pathType, loopEntry, argument);
 
-		CounterExampleValueType[] falseValues = new CounterExampleValueType[argument
-				.getValues().size()];
-		Arrays.fill(falseValues, CounterExampleValueType.FALSE);
+		CounterExampleValues falseValues = CounterExampleValues.filled(
+				argument.getValues().size(),
+				CounterExampleValueType.FALSE);
 
 		CounterExamplePredicate falsePredicate = new CounterExamplePredicate(
-				pathType, loopEntry, Arrays.asList(falseValues));
+				pathType, loopEntry, falseValues);
 
 		release = new CounterExampleRelease(pathType, loopEntry,
 				falsePredicate, argument);
@@ -42,18 +41,38 @@ public final class CounterExampleGlobally extends CounterExampleUnaryOperator {
 		notFinally = new CounterExampleNegation(pathType, loopEntry,
 				finallyOperator);
 
-		CounterExampleValueType[] trueValues = new CounterExampleValueType[argument
-				.getValues().size()];
-		Arrays.fill(trueValues, CounterExampleValueType.TRUE);
+		CounterExampleValues trueValues = CounterExampleValues.filled(
+				argument.getValues().size(),
+				CounterExampleValueType.TRUE);
 
 		CounterExamplePredicate truePredicate = new CounterExamplePredicate(
-				pathType, loopEntry, Arrays.asList(trueValues));
+				pathType, loopEntry, trueValues);
 
 		CounterExampleUntil until = new CounterExampleUntil(pathType,
 				loopEntry, truePredicate, notArgument);
 		notUntil = new CounterExampleNegation(pathType, loopEntry, until);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		final int size = argument.getValues().size();
+		final CounterExampleSearch search = CounterExampleSearch.future(
+				argument.getValues(), pathType, loopEntry);
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			if (search.indexOf(position, CounterExampleValueType.FALSE) != -1) {
+				values.set(position, CounterExampleValueType.FALSE);
+			} else {
+				values.set(position, pathType != PathType.REDUCED ? CounterExampleValueType.TRUE
+						: CounterExampleValueType.UNKNOWN);
+			}
+		}
+		return values;
+	}
+
 	@Override
 	protected CounterExampleValueType calculate(final int position) {
 		CounterExampleValueType value = calculateGlobally(position);
@@ -0,0 +1,40 @@
+package de.prob.core.domainobjects.ltl;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides the highlighted positions of an operator for each position of a
+ * counter-example. The highlighted positions of a position are only
+ * calculated when they are requested for the first time, because that takes
+ * linear time per position.
+ */
+abstract class CounterExampleHighlightedPositions extends
+		AbstractList<List<Integer>> {
+	private final List<List<Integer>> positions = new ArrayList<List<Integer>>();
+
+	@Override
+	public List<Integer> get(final int position) {
+		if (position < 0 || position >= size())
+			throw new IndexOutOfBoundsException("Index: " + position
+					+ ", Size: " + size());
+		if (position >= positions.size() || positions.get(position) == null) {
+			calculate(position);
+		}
+		return positions.get(position);
+	}
+
+	public void store(final int position, final List<Integer> highlighted) {
+		while (positions.size() <= position) {
+			positions.add(null);
+		}
+		positions.set(position, highlighted);
+	}
+
+	/**
+	 * Calculates the highlighted positions of the given position and stores
+	 * them with {@link #store(int, List)}.
+	 */
+	protected abstract void calculate(int position);
+}
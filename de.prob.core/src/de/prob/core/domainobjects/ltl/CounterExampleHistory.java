@@ -1,7 +1,6 @@
 package de.prob.core.domainobjects.ltl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import de.prob.core.command.LtlCheckingCommand.PathType;
@@ -30,18 +29,39 @@ public final class CounterExampleHistory extends CounterExampleUnaryOperator {
 
 		notOnce = new CounterExampleNegation(pathType, loopEntry, onceOperator);
 
-		CounterExampleValueType[] trueValues = new CounterExampleValueType[argument
-				.getValues().size()];
-		Arrays.fill(trueValues, CounterExampleValueType.TRUE);
+		CounterExampleValues trueValues = CounterExampleValues.filled(
+				argument.getValues().size(),
+				CounterExampleValueType.TRUE);
 
 		CounterExamplePredicate truePredicate = new CounterExamplePredicate(
-				pathType, loopEntry, Arrays.asList(trueValues));
+				pathType, loopEntry, trueValues);
 
 		CounterExampleSince since = new CounterExampleSince(pathType,
 				loopEntry, truePredicate, notArgument);
 		notSince = new CounterExampleNegation(pathType, loopEntry, since);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		final int size = argument.getValues().size();
+		final CounterExampleSearch search = CounterExampleSearch
+				.past(argument.getValues());
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			if (search.lastIndexOf(position, CounterExampleValueType.FALSE) != -1) {
+				values.set(position, CounterExampleValueType.FALSE);
+			} else {
+				values.set(position, search.lastIndexOf(position,
+						CounterExampleValueType.UNKNOWN) == -1 ? CounterExampleValueType.TRUE
+						: CounterExampleValueType.UNKNOWN);
+			}
+		}
+		return values;
+	}
+
 	@Override
 	public CounterExampleValueType calculate(final int position) {
 		CounterExampleValueType value = calculateHistoryOperator(position);
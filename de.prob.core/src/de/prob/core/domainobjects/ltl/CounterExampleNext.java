@@ -18,6 +18,32 @@ public final class CounterExampleNext extends CounterExampleUnaryOperator {
 		super("X", "Next", pathType, loopEntry, argument);
 	}
 
+	/**
+	 * Calculates the values of all positions without copying the values of
+	 * the argument.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		final List<CounterExampleValueType> argumentValues = argument
+				.getValues();
+		final int size = argumentValues.size();
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			if (position + 1 < size) {
+				values.set(position, argumentValues.get(position + 1));
+			} else if (pathType == PathType.INFINITE && position > loopEntry) {
+				values.set(position, argumentValues.get(loopEntry));
+			} else if (pathType == PathType.FINITE) {
+				values.set(position, CounterExampleValueType.FALSE);
+			} else if (pathType == PathType.INFINITE) {
+				values.set(position, argumentValues.get(position));
+			} else {
+				values.set(position, CounterExampleValueType.UNKNOWN);
+			}
+		}
+		return values;
+	}
+
 	@Override
 	public CounterExampleValueType calculate(final int position) {
 		return calculateNextOperator(position);
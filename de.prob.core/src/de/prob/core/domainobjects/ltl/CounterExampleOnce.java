@@ -1,7 +1,6 @@
 package de.prob.core.domainobjects.ltl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import de.prob.core.command.LtlCheckingCommand.PathType;
@@ -21,12 +20,12 @@ public final class CounterExampleOnce extends CounterExampleUnaryOperator {
 			final CounterExampleProposition argument) {
 		super("O", "Once", pathType, loopEntry, argument);
 
-		CounterExampleValueType[] firstValues = new CounterExampleValueType[argument
-				.getValues().size()];
-		Arrays.fill(firstValues, CounterExampleValueType.TRUE);
+		CounterExampleValues firstValues = CounterExampleValues.filled(
+				argument.getValues().size(),
+				CounterExampleValueType.TRUE);
 
 		CounterExamplePredicate first = new CounterExamplePredicate(pathType,
-				loopEntry, Arrays.asList(firstValues));
+				loopEntry, firstValues);
 
 		since = new CounterExampleSince(pathType, loopEntry, first, argument);
 	}
@@ -36,6 +35,27 @@ public final class CounterExampleOnce extends CounterExampleUnaryOperator {
 		this(pathType, -1, argument);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		final int size = argument.getValues().size();
+		final CounterExampleSearch search = CounterExampleSearch
+				.past(argument.getValues());
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			if (search.lastIndexOf(position, CounterExampleValueType.TRUE) != -1) {
+				values.set(position, CounterExampleValueType.TRUE);
+			} else {
+				values.set(position, search.lastIndexOf(position,
+						CounterExampleValueType.UNKNOWN) == -1 ? CounterExampleValueType.FALSE
+						: CounterExampleValueType.UNKNOWN);
+			}
+		}
+		return values;
+	}
+
 	@Override
 	public CounterExampleValueType calculate(final int position) {
 		CounterExampleValueType value = calculateOnceOperator(position);
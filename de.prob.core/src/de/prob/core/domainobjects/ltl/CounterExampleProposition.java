@@ -3,6 +3,7 @@ package de.prob.core.domainobjects.ltl;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import de.prob.core.command.LtlCheckingCommand.PathType;
@@ -20,7 +21,7 @@ public abstract class CounterExampleProposition {
 	protected final int loopEntry;
 	protected final PathType pathType;
 	protected CounterExampleProposition parent;
-	private List<CounterExampleValueType> values;
+	private CounterExampleValues values;
 
 	protected final PropertyChangeSupport listeners = new PropertyChangeSupport(
 			this);
@@ -47,9 +48,32 @@ public abstract class CounterExampleProposition {
 		return fullName;
 	}
 
+	/**
+	 * @return the values of this proposition as a read-only list; propositions
+	 *         of the same atomic share their values, so they must not be
+	 *         changed
+	 */
 	public List<CounterExampleValueType> getValues() {
+		return Collections.unmodifiableList(values());
+	}
+
+	/**
+	 * @return the value of this proposition at the given position
+	 */
+	public CounterExampleValueType getValue(final int position) {
+		return values().get(position);
+	}
+
+	/**
+	 * @return the number of positions of this proposition
+	 */
+	public int getValueCount() {
+		return values().size();
+	}
+
+	private CounterExampleValues values() {
 		if (values == null) {
-			values = calculate();
+			values = CounterExampleValues.valueOf(calculate());
 		}
 
 		return values;
@@ -36,6 +36,44 @@ public final class CounterExampleRelease extends CounterExampleBinaryOperator {
 		this(pathType, -1, firstArgument, secondArgument);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		assertSizesMatch();
+		final int size = getFirstArgument().getValues().size();
+		final CounterExampleSearch first = CounterExampleSearch.future(
+				getFirstArgument().getValues(), pathType, loopEntry);
+		final CounterExampleSearch second = CounterExampleSearch.future(
+				getSecondArgument().getValues(), pathType, loopEntry);
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			values.set(position, calculate(first, second, position));
+		}
+		return values;
+	}
+
+	private CounterExampleValueType calculate(final CounterExampleSearch first,
+			final CounterExampleSearch second, final int position) {
+		final int firstTrue = first.indexOf(position,
+				CounterExampleValueType.TRUE);
+		final int secondFalse = second.indexOf(position,
+				CounterExampleValueType.FALSE);
+		if (firstTrue != -1 && (secondFalse == -1 || secondFalse > firstTrue))
+			return second.occursWithin(position, firstTrue + 1,
+					CounterExampleValueType.UNKNOWN) ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.TRUE;
+		if (firstTrue == -1 && secondFalse == -1
+				&& pathType != PathType.REDUCED)
+			return CounterExampleValueType.TRUE;
+		if (secondFalse != -1)
+			return first.occursWithin(position, secondFalse,
+					CounterExampleValueType.UNKNOWN) ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.FALSE;
+		return CounterExampleValueType.UNKNOWN;
+	}
+
 	@Override
 	protected CounterExampleValueType calculate(final int position) {
 		final CounterExampleValueType value = calculateReleaseOperator(position);
@@ -0,0 +1,107 @@
+package de.prob.core.domainobjects.ltl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import de.prob.core.command.LtlCheckingCommand.PathType;
+
+/**
+ * Provides the positions of the next (or last) occurrence of each value in the
+ * values of a proposition, so that temporal operators can be evaluated for all
+ * positions of a counter-example in linear time.
+ *
+ * A future search looks at the same states as the per-position calculation of
+ * the future operators: the states from the position to the end and, on an
+ * infinite path, the states of the loop that are before the position. A past
+ * search looks at the states from the beginning to the position.
+ */
+final class CounterExampleSearch {
+	private static final int TYPES = CounterExampleValueType.values().length;
+
+	private final int size;
+	private final int loopLength;
+	private final int[][] occurrences;
+
+	private CounterExampleSearch(final int size, final int loopLength,
+			final int[][] occurrences) {
+		this.size = size;
+		this.loopLength = loopLength;
+		this.occurrences = occurrences;
+	}
+
+	public static CounterExampleSearch future(
+			final List<CounterExampleValueType> values,
+			final PathType pathType, final int loopEntry) {
+		final int size = values.size();
+		final int loopLength = pathType == PathType.INFINITE && loopEntry >= 0 ? size
+				- loopEntry
+				: 0;
+		// the states of the loop are appended once, the last entry is the
+		// sentinel
+		final int length = size + loopLength;
+		final int[][] next = new int[TYPES][length + 1];
+		for (int type = 0; type < TYPES; type++) {
+			next[type][length] = length;
+		}
+		for (int i = length - 1; i >= 0; i--) {
+			final int type = values.get(i < size ? i : i - loopLength)
+					.ordinal();
+			for (int t = 0; t < TYPES; t++) {
+				next[t][i] = t == type ? i : next[t][i + 1];
+			}
+		}
+		return new CounterExampleSearch(size, loopLength, next);
+	}
+
+	public static CounterExampleSearch past(
+			final List<CounterExampleValueType> values) {
+		final int size = values.size();
+		final int[][] last = new int[TYPES][size];
+		final int[] current = new int[TYPES];
+		Arrays.fill(current, -1);
+		for (int i = 0; i < size; i++) {
+			current[values.get(i).ordinal()] = i;
+			for (int t = 0; t < TYPES; t++) {
+				last[t][i] = current[t];
+			}
+		}
+		return new CounterExampleSearch(size, 0, last);
+	}
+
+	/**
+	 * Future search only.
+	 *
+	 * @return the offset of the first state with the given value, counted
+	 *         from the position, or -1 if there is none
+	 */
+	public int indexOf(final int position, final CounterExampleValueType value) {
+		final int end = loopLength > 0 && position > size - loopLength ? position
+				+ loopLength
+				: size;
+		final int index = occurrences[value.ordinal()][position];
+		return index < end ? index - position : -1;
+	}
+
+	/**
+	 * Future search only.
+	 *
+	 * @return <code>true</code> if a state with the given value occurs among
+	 *         the first <code>count</code> states, counted from the position
+	 */
+	public boolean occursWithin(final int position, final int count,
+			final CounterExampleValueType value) {
+		final int index = indexOf(position, value);
+		return index != -1 && index < count;
+	}
+
+	/**
+	 * Past search only.
+	 *
+	 * @return the position of the last state with the given value at or
+	 *         before the position, or -1 if there is none
+	 */
+	public int lastIndexOf(final int position,
+			final CounterExampleValueType value) {
+		return occurrences[value.ordinal()][position];
+	}
+}
@@ -25,6 +25,44 @@ public final class CounterExampleSince extends CounterExampleBinaryOperator {
 		this(pathType, -1, firstArgument, secondArgument);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		assertSizesMatch();
+		final int size = getFirstArgument().getValues().size();
+		final CounterExampleSearch first = CounterExampleSearch
+				.past(getFirstArgument().getValues());
+		final CounterExampleSearch second = CounterExampleSearch
+				.past(getSecondArgument().getValues());
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			values.set(position, calculate(first, second, position));
+		}
+		return values;
+	}
+
+	private CounterExampleValueType calculate(final CounterExampleSearch first,
+			final CounterExampleSearch second, final int position) {
+		final int secondTrue = second.lastIndexOf(position,
+				CounterExampleValueType.TRUE);
+		final int firstFalse = first.lastIndexOf(position,
+				CounterExampleValueType.FALSE);
+		final int firstUnknown = first.lastIndexOf(position,
+				CounterExampleValueType.UNKNOWN);
+		final int secondUnknown = second.lastIndexOf(position,
+				CounterExampleValueType.UNKNOWN);
+		if (secondTrue != -1 && firstFalse <= secondTrue)
+			return firstUnknown > secondTrue ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.TRUE;
+		if (firstFalse != -1)
+			return secondUnknown >= firstFalse ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.FALSE;
+		return firstUnknown == -1 && secondUnknown == -1 ? CounterExampleValueType.FALSE
+				: CounterExampleValueType.UNKNOWN;
+	}
+
 	@Override
 	protected CounterExampleValueType calculate(final int position) {
 		final CounterExampleValueType result = calculateSinceOperator(position);
@@ -36,6 +36,46 @@ public final class CounterExampleTrigger extends CounterExampleBinaryOperator {
 		this(pathType, -1, firstArgument, secondArgument);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		assertSizesMatch();
+		final int size = getFirstArgument().getValues().size();
+		final CounterExampleSearch first = CounterExampleSearch
+				.past(getFirstArgument().getValues());
+		final CounterExampleSearch second = CounterExampleSearch
+				.past(getSecondArgument().getValues());
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			values.set(position, calculate(first, second, position));
+		}
+		return values;
+	}
+
+	private CounterExampleValueType calculate(final CounterExampleSearch first,
+			final CounterExampleSearch second, final int position) {
+		final int firstTrue = first.lastIndexOf(position,
+				CounterExampleValueType.TRUE);
+		final int secondFalse = second.lastIndexOf(position,
+				CounterExampleValueType.FALSE);
+		final int firstUnknown = first.lastIndexOf(position,
+				CounterExampleValueType.UNKNOWN);
+		final int secondUnknown = second.lastIndexOf(position,
+				CounterExampleValueType.UNKNOWN);
+		if (firstTrue != -1 && secondFalse < firstTrue)
+			return secondUnknown >= firstTrue ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.TRUE;
+		if (firstTrue == -1 && secondFalse == -1 && firstUnknown == -1
+				&& secondUnknown == -1)
+			return CounterExampleValueType.TRUE;
+		if (secondFalse != -1)
+			return firstUnknown > secondFalse ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.FALSE;
+		return CounterExampleValueType.UNKNOWN;
+	}
+
 	@Override
 	protected CounterExampleValueType calculate(final int position) {
 		final CounterExampleValueType value = calculateTriggerOperator(position);
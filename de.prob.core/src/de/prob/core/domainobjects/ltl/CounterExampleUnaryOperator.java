@@ -1,9 +1,9 @@
 package de.prob.core.domainobjects.ltl;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import de.prob.core.command.LtlCheckingCommand.PathType;
+import de.prob.logging.Logger;
 
 /**
  * Provides operators with one parameter.
@@ -14,7 +14,20 @@ import de.prob.core.command.LtlCheckingCommand.PathType;
 public abstract class CounterExampleUnaryOperator extends
 		CounterExampleProposition {
 	protected final CounterExampleProposition argument;
-	protected List<List<Integer>> highlightedPositions = new ArrayList<List<Integer>>();
+	private final CounterExampleHighlightedPositions highlightedPositions = new CounterExampleHighlightedPositions() {
+		@Override
+		public int size() {
+			return getValues().size();
+		}
+
+		@Override
+		protected void calculate(final int position) {
+			final CounterExampleValueType value = CounterExampleUnaryOperator.this
+					.calculate(position);
+			Logger.assertProB(fullName + " invalid",
+					value == getValues().get(position));
+		}
+	};
 
 	public CounterExampleUnaryOperator(final String name,
 			final String fullName, final PathType pathType,
@@ -54,21 +67,27 @@ public abstract class CounterExampleUnaryOperator extends
 				.getValues();
 
 		final int size = argumentValues.size();
-		final List<CounterExampleValueType> values = new ArrayList<CounterExampleValueType>();
+		final CounterExampleValues values = new CounterExampleValues(size);
 
 		for (int i = 0; i < size; i++) {
-			values.add(calculate(i));
+			values.set(i, calculate(i));
 		}
 
 		return values;
 	}
 
+	/**
+	 * Calculates the value at the given position and fills the highlighted
+	 * positions of this position. Operators that can calculate the values of
+	 * all positions faster override {@link #calculate()}, this method is then
+	 * only used for the highlighted positions.
+	 */
 	protected abstract CounterExampleValueType calculate(int position);
 
 	protected void fillHighlightedPositions(final int position,
 			final int index, final int checkedSize, boolean isPast) {
-		highlightedPositions.add(fillPositions(position, index, checkedSize,
-				isPast));
+		highlightedPositions.store(position, fillPositions(position, index,
+				checkedSize, isPast));
 	}
 
 	@Override
@@ -25,6 +25,42 @@ public final class CounterExampleUntil extends CounterExampleBinaryOperator {
 		this(pathType, -1, firstArgument, secondArgument);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		assertSizesMatch();
+		final int size = getFirstArgument().getValues().size();
+		final CounterExampleSearch first = CounterExampleSearch.future(
+				getFirstArgument().getValues(), pathType, loopEntry);
+		final CounterExampleSearch second = CounterExampleSearch.future(
+				getSecondArgument().getValues(), pathType, loopEntry);
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			values.set(position, calculate(first, second, position));
+		}
+		return values;
+	}
+
+	private CounterExampleValueType calculate(final CounterExampleSearch first,
+			final CounterExampleSearch second, final int position) {
+		final int secondTrue = second.indexOf(position,
+				CounterExampleValueType.TRUE);
+		final int firstFalse = first.indexOf(position,
+				CounterExampleValueType.FALSE);
+		if (secondTrue != -1 && (firstFalse == -1 || firstFalse >= secondTrue))
+			return first.occursWithin(position, secondTrue,
+					CounterExampleValueType.UNKNOWN) ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.TRUE;
+		if (firstFalse != -1)
+			return second.occursWithin(position, firstFalse + 1,
+					CounterExampleValueType.UNKNOWN) ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.FALSE;
+		return pathType != PathType.REDUCED ? CounterExampleValueType.FALSE
+				: CounterExampleValueType.UNKNOWN;
+	}
+
 	@Override
 	protected CounterExampleValueType calculate(final int position) {
 		final CounterExampleValueType result = calculateUntilOperator(position);
@@ -0,0 +1,111 @@
+package de.prob.core.domainobjects.ltl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Provides the values of a proposition at the positions of a counter-example.
+ * Each value takes two bits, so long counter-examples with many
+ * sub-formulas need little memory. The list has a fixed size, values can be
+ * changed but not added or removed. All values are
+ * {@link CounterExampleValueType#UNKNOWN} initially.
+ */
+public final class CounterExampleValues extends
+		AbstractList<CounterExampleValueType> implements RandomAccess {
+	private static final int BITS = 2;
+	private static final int VALUES_PER_WORD = Long.SIZE / BITS;
+	private static final long MASK = (1L << BITS) - 1;
+
+	private static final int UNKNOWN = 0;
+	private static final int TRUE = 1;
+	private static final int FALSE = 2;
+
+	private final int size;
+	private final long[] words;
+
+	public CounterExampleValues(final int size) {
+		this.size = size;
+		this.words = new long[(size + VALUES_PER_WORD - 1) / VALUES_PER_WORD];
+	}
+
+	/**
+	 * @return a list of the given size where all values are the given value
+	 */
+	public static CounterExampleValues filled(final int size,
+			final CounterExampleValueType value) {
+		final CounterExampleValues result = new CounterExampleValues(size);
+		final int code = encode(value);
+		if (code != UNKNOWN) {
+			long word = 0;
+			for (int i = 0; i < VALUES_PER_WORD; i++) {
+				word |= (long) code << (i * BITS);
+			}
+			Arrays.fill(result.words, word);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the given values, copied into a new list if they are not a
+	 *         {@link CounterExampleValues} already
+	 */
+	public static CounterExampleValues valueOf(
+			final List<CounterExampleValueType> values) {
+		if (values instanceof CounterExampleValues)
+			return (CounterExampleValues) values;
+		final CounterExampleValues result = new CounterExampleValues(
+				values.size());
+		for (int i = 0; i < result.size; i++) {
+			result.set(i, values.get(i));
+		}
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public CounterExampleValueType get(final int index) {
+		switch (code(index)) {
+		case TRUE:
+			return CounterExampleValueType.TRUE;
+		case FALSE:
+			return CounterExampleValueType.FALSE;
+		default:
+			return CounterExampleValueType.UNKNOWN;
+		}
+	}
+
+	@Override
+	public CounterExampleValueType set(final int index,
+			final CounterExampleValueType value) {
+		final CounterExampleValueType old = get(index);
+		final int shift = (index % VALUES_PER_WORD) * BITS;
+		final int word = index / VALUES_PER_WORD;
+		words[word] = (words[word] & ~(MASK << shift))
+				| ((long) encode(value) << shift);
+		return old;
+	}
+
+	private int code(final int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		final int shift = (index % VALUES_PER_WORD) * BITS;
+		return (int) ((words[index / VALUES_PER_WORD] >>> shift) & MASK);
+	}
+
+	private static int encode(final CounterExampleValueType value) {
+		if (value == CounterExampleValueType.TRUE)
+			return TRUE;
+		if (value == CounterExampleValueType.FALSE)
+			return FALSE;
+		if (value == CounterExampleValueType.UNKNOWN)
+			return UNKNOWN;
+		throw new NullPointerException("value must not be null");
+	}
+}
@@ -1,7 +1,6 @@
 package de.prob.core.domainobjects.ltl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import de.prob.core.command.LtlCheckingCommand.PathType;
@@ -32,12 +31,12 @@ public final class CounterExampleWeakUntil extends CounterExampleBinaryOperator
 		CounterExampleNegation not = new CounterExampleNegation(pathType,
 				loopEntry, firstArgument);
 
-		CounterExampleValueType[] trueValues = new CounterExampleValueType[firstArgument
-				.getValues().size()];
-		Arrays.fill(trueValues, CounterExampleValueType.TRUE);
+		CounterExampleValues trueValues = CounterExampleValues.filled(
+				firstArgument.getValues().size(),
+				CounterExampleValueType.TRUE);
 
 		CounterExamplePredicate truePredicate = new CounterExamplePredicate(
-				pathType, loopEntry, Arrays.asList(trueValues));
+				pathType, loopEntry, trueValues);
 
 		CounterExampleNegation notUntil = new CounterExampleNegation(pathType,
 				loopEntry, new CounterExampleUntil(pathType, loopEntry,
@@ -58,6 +57,44 @@ public final class CounterExampleWeakUntil extends CounterExampleBinaryOperator
 		this(pathType, -1, firstArgument, secondArgument);
 	}
 
+	/**
+	 * Calculates the values of all positions in one pass over the arguments.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		assertSizesMatch();
+		final int size = getFirstArgument().getValues().size();
+		final CounterExampleSearch first = CounterExampleSearch.future(
+				getFirstArgument().getValues(), pathType, loopEntry);
+		final CounterExampleSearch second = CounterExampleSearch.future(
+				getSecondArgument().getValues(), pathType, loopEntry);
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			values.set(position, calculate(first, second, position));
+		}
+		return values;
+	}
+
+	private CounterExampleValueType calculate(final CounterExampleSearch first,
+			final CounterExampleSearch second, final int position) {
+		final int secondTrue = second.indexOf(position,
+				CounterExampleValueType.TRUE);
+		final int firstFalse = first.indexOf(position,
+				CounterExampleValueType.FALSE);
+		if (secondTrue != -1 && (firstFalse == -1 || firstFalse >= secondTrue))
+			return first.occursWithin(position, secondTrue,
+					CounterExampleValueType.UNKNOWN) ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.TRUE;
+		if (secondTrue == -1 && firstFalse == -1
+				&& pathType != PathType.REDUCED)
+			return CounterExampleValueType.TRUE;
+		if (firstFalse != -1)
+			return second.occursWithin(position, firstFalse + 1,
+					CounterExampleValueType.UNKNOWN) ? CounterExampleValueType.UNKNOWN
+					: CounterExampleValueType.FALSE;
+		return CounterExampleValueType.UNKNOWN;
+	}
+
 	@Override
 	protected CounterExampleValueType calculate(final int position) {
 		final CounterExampleValueType value = calculateWeakUntilOperator(position);
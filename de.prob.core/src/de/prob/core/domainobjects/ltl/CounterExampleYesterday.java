@@ -23,6 +23,23 @@ public final class CounterExampleYesterday extends CounterExampleUnaryOperator {
 		this(pathType, -1, argument);
 	}
 
+	/**
+	 * Calculates the values of all positions without copying the values of
+	 * the argument.
+	 */
+	@Override
+	protected List<CounterExampleValueType> calculate() {
+		final List<CounterExampleValueType> argumentValues = argument
+				.getValues();
+		final int size = argumentValues.size();
+		final CounterExampleValues values = new CounterExampleValues(size);
+		for (int position = 0; position < size; position++) {
+			values.set(position, position > 0 ? argumentValues.get(position - 1)
+					: CounterExampleValueType.FALSE);
+		}
+		return values;
+	}
+
 	@Override
 	public CounterExampleValueType calculate(final int position) {
 		CounterExampleValueType result = calculateYesterday(position);
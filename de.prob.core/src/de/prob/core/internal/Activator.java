@@ -42,6 +42,11 @@ public final class Activator extends Plugin {
 	private static final String LIFECYCLE_EXTENSION_POINT = PLUGIN_ID
 			+ ".lifecycle";
 
+	/*
+	 * The listeners are registered once when the class is initialized. They
+	 * are notified without holding a lock, because they may execute commands
+	 * while another thread that executes a command announces an event.
+	 */
 	private final static Set<ILifecycleListener> lifeCycleListeners = initLifeCycleListeners();
 	private final static Set<IComputationListener> computationListeners = initComputationListeners();
 	private final static Set<IAnimationListener> animationListeners = initAnimationListeners();
@@ -92,64 +97,58 @@ public final class Activator extends Plugin {
 	}
 
 	public static void reset() {
-		synchronized (lifeCycleListeners) {
-			final LimitedLogger logger = LimitedLogger.getLogger();
-			logger.log("lifecycle", "start announcing reset", null);
-			for (final ILifecycleListener l : lifeCycleListeners) {
-				try {
-					l.reset();
-				} catch (final RuntimeException e) {
-					final String message = "Runtime Exception thrown in bad behaving listener class "
-							+ l.getClass() + " while sending reset event";
-					Logger.notifyUser(message, e);
-				}
+		final LimitedLogger logger = LimitedLogger.getLogger();
+		logger.log("lifecycle", "start announcing reset", null);
+		for (final ILifecycleListener l : lifeCycleListeners) {
+			try {
+				l.reset();
+			} catch (final RuntimeException e) {
+				final String message = "Runtime Exception thrown in bad behaving listener class "
+						+ l.getClass() + " while sending reset event";
+				Logger.notifyUser(message, e);
 			}
-			logger.log("lifecycle", "finished announcing reset", null);
 		}
+		logger.log("lifecycle", "finished announcing reset", null);
 	}
 
 	public static void computedState(final State state) {
-		synchronized (computationListeners) {
-			final String stateId = state == null ? null : state.getId();
-			final LimitedLogger logger = LimitedLogger.getLogger();
-			logger.log("lifecycle", "start announcing computed state "
-					+ stateId, null);
-			for (final IComputationListener l : computationListeners) {
-				try {
-					l.computedState(state);
-				} catch (final RuntimeException e) {
-					final String message = "Runtime Exception thrown in bad behaving listener class "
-							+ l.getClass()
-							+ " while sending computation event.";
-					Logger.notifyUser(message, e);
-				}
+		final String stateId = state == null ? null : state.getId();
+		final LimitedLogger logger = LimitedLogger.getLogger();
+		logger.log("lifecycle", "start announcing computed state "
+				+ stateId, null);
+		for (final IComputationListener l : computationListeners) {
+			try {
+				l.computedState(state);
+			} catch (final RuntimeException e) {
+				final String message = "Runtime Exception thrown in bad behaving listener class "
+						+ l.getClass()
+						+ " while sending computation event.";
+				Logger.notifyUser(message, e);
 			}
-			logger.log("lifecycle", "finished announcing computed state "
-					+ stateId, null);
 		}
+		logger.log("lifecycle", "finished announcing computed state "
+				+ stateId, null);
 	}
 
 	public static void currentStateChanged(final State currentState,
 			final Operation operation) {
-		synchronized (animationListeners) {
-			final String stateId = currentState == null ? null : currentState
-					.getId();
-			final LimitedLogger logger = LimitedLogger.getLogger();
-			logger.log("lifecycle",
-					"start announcing current state " + stateId, null);
-			for (final IAnimationListener l : animationListeners) {
-				try {
-					l.currentStateChanged(currentState, operation);
-				} catch (final RuntimeException e) {
-					final String message = "Runtime Exception thrown in bad behaving listener class "
-							+ l.getClass()
-							+ " while sending state change event";
-					Logger.notifyUser(message, e);
-				}
+		final String stateId = currentState == null ? null : currentState
+				.getId();
+		final LimitedLogger logger = LimitedLogger.getLogger();
+		logger.log("lifecycle",
+				"start announcing current state " + stateId, null);
+		for (final IAnimationListener l : animationListeners) {
+			try {
+				l.currentStateChanged(currentState, operation);
+			} catch (final RuntimeException e) {
+				final String message = "Runtime Exception thrown in bad behaving listener class "
+						+ l.getClass()
+						+ " while sending state change event";
+				Logger.notifyUser(message, e);
 			}
-			logger.log("lifecycle", "finished announcing current state "
-					+ stateId, null);
 		}
+		logger.log("lifecycle", "finished announcing current state "
+				+ stateId, null);
 	}
 
 	// The shared instance
@@ -7,10 +7,16 @@
 package de.prob.core.internal;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import de.prob.cli.CliException;
+import de.prob.core.CommandMetrics;
+import de.prob.core.CommandMetrics.Metric;
+import de.prob.core.IPipelinedServerConnection;
+import de.prob.core.IPipelinedServerConnection.PendingAnswer;
 import de.prob.core.IServerConnection;
 import de.prob.core.ITrace;
 import de.prob.core.LanguageDependendAnimationPart;
@@ -18,16 +24,17 @@ import de.prob.core.ProblemHandler;
 import de.prob.core.command.CommandException;
 import de.prob.core.command.ComposedCommand;
 import de.prob.core.command.GetErrorsCommand;
+import de.prob.core.command.ICacheableCommand;
 import de.prob.core.command.IComposableCommand;
+import de.prob.core.command.INonReplayableCommand;
+import de.prob.core.command.IReadOnlyCommand;
 import de.prob.core.domainobjects.History;
 import de.prob.core.domainobjects.HistoryItem;
 import de.prob.core.domainobjects.MachineDescription;
 import de.prob.core.domainobjects.RandomSeed;
 import de.prob.core.domainobjects.State;
-import de.prob.core.sablecc.node.Start;
 import de.prob.exceptions.ProBException;
 import de.prob.logging.Logger;
-import de.prob.parser.BindingGenerator;
 import de.prob.prolog.output.PrologTermStringOutput;
 import de.prob.prolog.term.PrologTerm;
 
@@ -50,19 +57,72 @@ public class AnimatorImpl {
 
 	private LanguageDependendAnimationPart langdep;
 
+	private final ProBProcessPool workers;
+
+	/**
+	 * the answers to {@link ICacheableCommand}s by their query, guarded by
+	 * itself
+	 */
+	private final Map<String, SimplifiedROMap<String, PrologTerm>> resultCache = new HashMap<String, SimplifiedROMap<String, PrologTerm>>();
+
 	public AnimatorImpl(final IServerConnection serverConnection,
 			final File file) {
+		this(serverConnection, file, true, true);
+	}
+
+	/**
+	 * @param useWorkers
+	 *            if a pool of worker processes should be created for this
+	 *            animator (if configured, see {@link ProBProcessPool})
+	 */
+	AnimatorImpl(final IServerConnection serverConnection, final File file,
+			final boolean useWorkers) {
+		this(serverConnection, file, useWorkers, true);
+	}
+
+	private AnimatorImpl(final IServerConnection serverConnection,
+			final File file, final boolean useWorkers,
+			final boolean startConnection) {
+		this.file = file;
+		if (startConnection) {
+			setConnector(serverConnection);
+		} else {
+			this.connector = serverConnection;
+		}
+		this.workers = useWorkers && connector != null ? ProBProcessPool
+				.create(file) : null;
+	}
+
+	/**
+	 * Creates an animator that uses the given pool of workers.
+	 */
+	AnimatorImpl(final IServerConnection serverConnection, final File file,
+			final ProBProcessPool workers) {
 		this.file = file;
 		setConnector(serverConnection);
+		this.workers = workers;
+	}
+
+	/**
+	 * Creates an animator for a connection that has already been started,
+	 * e.g. by {@link ProBProcessStandby}.
+	 */
+	public static AnimatorImpl createWithStartedConnection(
+			final IServerConnection serverConnection, final File file) {
+		return new AnimatorImpl(serverConnection, file, true, false);
 	}
 
 	public synchronized void shutdownImplementation() {
+		if (workers != null) {
+			workers.shutdown();
+		}
 		if (connector != null) {
 			connector.shutdown();
 		}
 		connector = null;
 		history.reset();
 		description = null;
+		clearResultCache();
 	}
 
 	private void checkConnector(final String command) throws CliException {
@@ -78,18 +138,9 @@ public class AnimatorImpl {
 		return item == null ? null : item.getState();
 	}
 
-	public synchronized Start sendCommandImpl(final String command)
+	public synchronized String sendCommandImpl(final String command)
 			throws ProBException {
-		String input = connector.sendCommand(command);
-		return parseResult(input);
-	}
-
-	private Start parseResult(final String input) throws CliException,
-			ResultParserException {
-		if (input == null)
-			return null;
-		else
-			return ProBResultParser.parse(input);
+		return sendQuery(command, new CommandMetrics.Sample());
 	}
 
 	public History getHistoryImpl() {
@@ -112,6 +163,10 @@ public class AnimatorImpl {
 		return true;
 	}
 
+	synchronized boolean isConnected() {
+		return connector != null;
+	}
+
 	public synchronized final ITrace getTraceImpl() {
 		if (connector instanceof ServerTraceConnection) {
 			ServerTraceConnection conn = (ServerTraceConnection) connector;
@@ -146,25 +201,107 @@ public class AnimatorImpl {
 		return connector == null ? null : connector.getDebuggingKey();
 	}
 
+	/**
+	 * Executes a read-only command on an idle worker process.
+	 * 
+	 * @return <code>false</code> if there was no idle worker, the command
+	 *         must be executed with {@link #execute(IComposableCommand)} then
+	 */
+	public boolean executeOnWorker(final IReadOnlyCommand command)
+			throws ProBException {
+		return workers != null && workers.execute(command);
+	}
+
+	/**
+	 * Tells the worker processes that a new machine has been loaded. Called
+	 * while the answer of the load query is processed, the load query is
+	 * replicated afterwards.
+	 */
+	public void resetWorkers() {
+		if (workers != null) {
+			workers.reset(seed);
+		}
+	}
+
+	/**
+	 * Processes the remembered answer if the command is an
+	 * {@link ICacheableCommand} that has been executed before with the same
+	 * query.
+	 * 
+	 * @return <code>false</code> if there is no remembered answer, the command
+	 *         must be executed then
+	 */
+	public boolean answerFromCache(final IComposableCommand command)
+			throws ProBException {
+		if (!(command instanceof ICacheableCommand))
+			return false;
+		final SimplifiedROMap<String, PrologTerm> bindings;
+		synchronized (resultCache) {
+			bindings = resultCache.get(createQuery(command));
+		}
+		if (bindings == null)
+			return false;
+		// the bindings have been stored in the form execute() receives them
+		new ComposedCommand(command, new GetErrorsCommand()).reprocessResult(
+				command, bindings);
+		return true;
+	}
+
+	/**
+	 * Forgets all answers of {@link ICacheableCommand}s, e.g. because another
+	 * machine is loaded.
+	 */
+	public void clearResultCache() {
+		synchronized (resultCache) {
+			resultCache.clear();
+		}
+	}
+
+	private void rememberResult(final IComposableCommand command,
+			final SimplifiedROMap<String, PrologTerm> bindings,
+			final List<String> errors) throws CommandException {
+		if (command instanceof ICacheableCommand
+				&& (errors == null || errors.isEmpty())) {
+			final String query = createQuery(command);
+			synchronized (resultCache) {
+				resultCache.put(query, bindings);
+			}
+		}
+	}
+
 	public void execute(final IComposableCommand command) throws ProBException {
 		checkConnector(command.getClass().getName());
 
 		final GetErrorsCommand getErrors = new GetErrorsCommand();
 		final ComposedCommand cmds = new ComposedCommand(command, getErrors);
+		final CommandMetrics.Sample sample = new CommandMetrics.Sample();
+		String query = null;
 		SimplifiedROMap<String, PrologTerm> bindings = null;
 		List<String> errors = null;
 		try {
-			bindings = sendCommand(cmds);
+			query = createQuery(cmds, sample);
+			bindings = sendCommand(query, sample);
+			final long start = System.nanoTime();
 			cmds.processResult(bindings);
+			sample.setElapsed(Metric.BINDING, start);
 			errors = getErrors.getErrors();
+			rememberResult(command, bindings, errors);
 		} catch (RuntimeException e) {
 			Logger.notifyUser(e.getLocalizedMessage(), e);
 		} finally {
+			if (bindings != null) {
+				// only now, a load has reset the workers while its answer
+				// was processed
+				replicate(command, query);
+			}
+			final boolean processed = errors != null;
 			if (errors == null) {
 				if (bindings == null) {
 					// the exception occurred while sending the commands
 					// launch another query to get errors
-					bindings = sendCommand(getErrors);
+					final CommandMetrics.Sample errorSample = new CommandMetrics.Sample();
+					bindings = sendCommand(
+							createQuery(getErrors, errorSample), errorSample);
 					getErrors.processResult(bindings);
 				} else {
 					// we cannot call getErrors.processResult directly because
@@ -173,32 +310,233 @@ public class AnimatorImpl {
 				}
 				errors = getErrors.getErrors();
 			}
+			CommandMetrics.getMetrics().record(command.getClass(), sample,
+					!processed || (errors != null && !errors.isEmpty()));
 			if (errors != null && !errors.isEmpty()) {
 				ProblemHandler.raisePrologException(errors);
 			}
 		}
 	}
 
-	private SimplifiedROMap<String, PrologTerm> sendCommand(
-			final IComposableCommand command) throws ProBException,
+	/**
+	 * Executes several independent commands. If the connection supports it,
+	 * all queries are sent to ProB before the first answer is read, so the
+	 * commands do not have to wait for each other's round trip. Errors of one
+	 * command do not prevent the results of the other commands from being
+	 * processed. All errors reported by ProB are raised at the end. Commands
+	 * that can be answered from the cache are not sent.
+	 */
+	public void executePipelined(
+			final List<? extends IComposableCommand> allCommands)
+			throws ProBException {
+		final List<IComposableCommand> commands = new ArrayList<IComposableCommand>(
+				allCommands.size());
+		for (final IComposableCommand command : allCommands) {
+			if (!answerFromCache(command)) {
+				commands.add(command);
+			}
+		}
+		if (!(connector instanceof IPipelinedServerConnection)) {
+			for (final IComposableCommand command : commands) {
+				execute(command);
+			}
+			return;
+		}
+		checkConnector(commands.toString());
+		final IPipelinedServerConnection pipeline = (IPipelinedServerConnection) connector;
+
+		final int size = commands.size();
+		final GetErrorsCommand[] getErrors = new GetErrorsCommand[size];
+		final ComposedCommand[] cmds = new ComposedCommand[size];
+		final String[] queries = new String[size];
+		final PendingAnswer[] answers = new PendingAnswer[size];
+		final CommandMetrics.Sample[] samples = new CommandMetrics.Sample[size];
+		for (int i = 0; i < size; i++) {
+			getErrors[i] = new GetErrorsCommand();
+			cmds[i] = new ComposedCommand(commands.get(i), getErrors[i]);
+			samples[i] = new CommandMetrics.Sample();
+			queries[i] = createQuery(cmds[i], samples[i]);
+			answers[i] = pipeline.sendCommandPipelined(queries[i]);
+		}
+
+		final List<String> errors = new ArrayList<String>();
+		for (int i = 0; i < size; i++) {
+			final SimplifiedROMap<String, PrologTerm> bindings = getBindings(
+					queries[i], answers[i], samples[i]);
+			final long start = System.nanoTime();
+			boolean processed = false;
+			try {
+				cmds[i].processResult(bindings);
+				samples[i].setElapsed(Metric.BINDING, start);
+				processed = true;
+				rememberResult(commands.get(i), bindings,
+						getErrors[i].getErrors());
+			} catch (RuntimeException e) {
+				Logger.notifyUser(e.getLocalizedMessage(), e);
+				cmds[i].reprocessResult(getErrors[i], bindings);
+			}
+			replicate(commands.get(i), queries[i]);
+			final List<String> cmdErrors = getErrors[i].getErrors();
+			if (cmdErrors != null) {
+				errors.addAll(cmdErrors);
+			}
+			CommandMetrics.getMetrics().record(commands.get(i).getClass(),
+					samples[i], !processed
+							|| (cmdErrors != null && !cmdErrors.isEmpty()));
+		}
+		if (!errors.isEmpty()) {
+			ProblemHandler.raisePrologException(errors);
+		}
+	}
+
+	/**
+	 * Tells the worker processes about a query that the primary process has
+	 * answered, so that they can replay it or stop answering if it cannot be
+	 * replayed.
+	 */
+	private void replicate(final IComposableCommand command, final String query) {
+		if (workers == null || command instanceof IReadOnlyCommand)
+			return;
+		if (command instanceof INonReplayableCommand) {
+			workers.invalidate();
+		} else {
+			workers.replicate(query);
+		}
+	}
+
+	/**
+	 * Sends queries to ProB whose answers are not needed, e.g. to bring a
+	 * worker process into the same state as the primary process.
+	 */
+	void replay(final List<String> queries) throws ProBException {
+		checkConnector("replay");
+		if (connector instanceof IPipelinedServerConnection) {
+			final IPipelinedServerConnection pipeline = (IPipelinedServerConnection) connector;
+			final List<PendingAnswer> answers = new ArrayList<PendingAnswer>(
+					queries.size());
+			for (final String query : queries) {
+				answers.add(pipeline.sendCommandPipelined(query));
+			}
+			for (final PendingAnswer answer : answers) {
+				answer.getAnswer();
+			}
+		} else {
+			for (final String query : queries) {
+				sendCommandImpl(query);
+			}
+		}
+	}
+
+	/**
+	 * Sends a query to ProB and waits for the bindings of its variables. The
+	 * sizes, the time ProB needed and the time to parse the answer are added
+	 * to the sample.
+	 */
+	private synchronized SimplifiedROMap<String, PrologTerm> sendCommand(
+			final String query, final CommandMetrics.Sample sample)
+			throws ProBException, CommandException {
+		if (connector instanceof IPipelinedServerConnection)
+			return getBindings(query,
+					((IPipelinedServerConnection) connector)
+							.sendCommandPipelined(query), sample);
+		final String answer = sendQuery(query, sample);
+		final long start = System.nanoTime();
+		final SimplifiedROMap<String, PrologTerm> bindings = createBindings(
+				query, answer);
+		sample.setElapsed(Metric.PARSING, start);
+		return bindings;
+	}
+
+	/**
+	 * Waits for the answer of a query and parses it. The answer of a
+	 * {@link ServerConnection} is parsed while it is read from the socket,
+	 * the time ProB needed includes the parsing then.
+	 */
+	private SimplifiedROMap<String, PrologTerm> getBindings(
+			final String query, final PendingAnswer pending,
+			final CommandMetrics.Sample sample) throws ProBException,
 			CommandException {
+		if (pending instanceof ServerConnection.Request) {
+			final Map<String, PrologTerm> bindings;
+			try {
+				bindings = ((ServerConnection.Request) pending)
+						.getBindings(query);
+			} catch (de.prob.parser.ResultParserException e) {
+				throw toCommandException(e);
+			} finally {
+				addTo(pending, sample);
+			}
+			return new SimplifiedROMap<String, PrologTerm>(bindings);
+		}
+		final String answer = pending.getAnswer();
+		addTo(pending, sample);
+		final long start = System.nanoTime();
+		final SimplifiedROMap<String, PrologTerm> bindings = createBindings(
+				query, answer);
+		sample.setElapsed(Metric.PARSING, start);
+		return bindings;
+	}
+
+	/**
+	 * Sends a query to ProB and waits for its raw answer, e.g. for
+	 * {@link #sendCommandImpl(String)}. The sizes and the time ProB needed
+	 * are added to the sample.
+	 */
+	private synchronized String sendQuery(final String query,
+			final CommandMetrics.Sample sample) throws ProBException {
+		if (connector instanceof IPipelinedServerConnection) {
+			final PendingAnswer pending = ((IPipelinedServerConnection) connector)
+					.sendCommandPipelined(query);
+			final String answer = pending.getAnswer();
+			addTo(pending, sample);
+			return answer;
+		}
+		final long start = System.nanoTime();
+		final String answer = connector.sendCommand(query);
+		sample.setElapsed(Metric.PROLOG_WAIT, start);
+		return answer;
+	}
 
+	private static void addTo(final PendingAnswer answer,
+			final CommandMetrics.Sample sample) {
+		if (answer instanceof ServerConnection.Request) {
+			((ServerConnection.Request) answer).addTo(sample);
+		}
+	}
+
+	private String createQuery(final IComposableCommand command)
+			throws CommandException {
 		PrologTermStringOutput pto = new PrologTermStringOutput();
 		command.writeCommand(pto);
-		final String query = pto.fullstop().toString();
-		final Start ast = sendCommandImpl(query);
+		return pto.fullstop().toString();
+	}
+
+	private String createQuery(final IComposableCommand command,
+			final CommandMetrics.Sample sample) throws CommandException {
+		final long start = System.nanoTime();
+		final String query = createQuery(command);
+		sample.setElapsed(Metric.ENCODING, start);
+		return query;
+	}
+
+	private SimplifiedROMap<String, PrologTerm> createBindings(
+			final String query, final String answer) throws CommandException {
 		Map<String, PrologTerm> bindings;
 		try {
-			bindings = BindingGenerator
-					.createBindingMustNotFail(query, ast);
+			bindings = StreamingResultParser.parseBindings(query, answer);
 		} catch (de.prob.parser.ResultParserException e) {
-			CommandException commandException = new CommandException(e.getLocalizedMessage(), e);
-			commandException.notifyUserOnce();
-			throw commandException;
+			throw toCommandException(e);
 		}
 		return new SimplifiedROMap<String, PrologTerm>(bindings);
 	}
 
+	private static CommandException toCommandException(
+			final de.prob.parser.ResultParserException e) {
+		CommandException commandException = new CommandException(e.getLocalizedMessage(), e);
+		commandException.notifyUserOnce();
+		return commandException;
+	}
+
 	public LanguageDependendAnimationPart getLangdep() {
 		return langdep;
 	}
@@ -0,0 +1,244 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the answers of ProB from a stream. An answer is terminated by the end
+ * of transmission marker (a byte with value 1).
+ *
+ * The reader uses one buffer for all reads and collects the bytes of an answer
+ * in a reusable array. Bytes that follow the end of transmission marker (i.e.
+ * the beginning of the next answer if several queries are pipelined) are kept
+ * for the next call. The bytes are decoded only once, after the answer is
+ * complete, so multi-byte characters are never split. After an unusually large
+ * answer, the array is replaced by one of the default size again.
+ *
+ * Alternatively, {@link #openAnswer()} hands the bytes of the next answer on
+ * as a stream while they arrive, without collecting them, e.g. to parse the
+ * answer directly from the socket.
+ *
+ * The stream should be a blocking socket stream: reading from it is not
+ * affected by interrupting the reading thread, so an interrupt does not close
+ * the connection to ProB (in contrast to an interruptible channel).
+ */
+final class AnswerReader {
+	private static final byte END_OF_TRANSMISSION = 1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** answers larger than this are not kept for the next answer */
+	private static final int MAX_RETAINED_SIZE = 16 * BUFFER_SIZE;
+
+	private final InputStream stream;
+	private final Charset charset;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+
+	private byte[] answer = new byte[BUFFER_SIZE];
+	private int start;
+	private int end;
+	private int size;
+
+	public AnswerReader(final InputStream stream, final Charset charset) {
+		this.stream = stream;
+		this.charset = charset;
+	}
+
+	/**
+	 * Reads the next answer and returns it as a string.
+	 *
+	 * @return the answer without leading and trailing white spaces, or
+	 *         <code>null</code> if ProB did not send anything
+	 * @throws IOException
+	 */
+	public String readAnswer() throws IOException {
+		final String result = readNextAnswer() ? new String(answer, start, end
+				- start, charset) : null;
+		if (answer.length > MAX_RETAINED_SIZE) {
+			answer = new byte[BUFFER_SIZE];
+		}
+		return result;
+	}
+
+	/**
+	 * Opens the next answer as a stream that reads directly from the
+	 * underlying stream and ends at the end of transmission marker. The answer
+	 * must be read or closed before the next answer is read, closing the
+	 * stream skips the rest of the answer.
+	 *
+	 * @return the answer including leading and trailing white spaces, or
+	 *         <code>null</code> if ProB did not send anything
+	 * @throws IOException
+	 */
+	public InputStream openAnswer() throws IOException {
+		size = 0;
+		return fill() ? new AnswerStream() : null;
+	}
+
+	/**
+	 * @return the number of bytes of the last answer, including white spaces
+	 *         and the end of transmission marker
+	 */
+	public int getLastAnswerSize() {
+		return size;
+	}
+
+	/**
+	 * @return the charset that is used to decode the answers
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
+	private boolean readNextAnswer() throws IOException {
+		int length = 0;
+		boolean done = false;
+		while (!done) {
+			if (!fill()) {
+				break;
+			}
+			final int chunkEnd = findMarker(limit);
+			done = chunkEnd < limit;
+			length = append(length, chunkEnd - position);
+			if (done) {
+				// skip the end of transmission marker
+				position = chunkEnd + 1;
+			} else {
+				position = limit;
+			}
+		}
+		size = done ? length + 1 : length;
+		trim(length);
+		return end > start;
+	}
+
+	/**
+	 * Reads more bytes if all bytes of the buffer have been consumed.
+	 *
+	 * @return <code>false</code> if the stream has ended
+	 */
+	private boolean fill() throws IOException {
+		if (position == limit) {
+			final int count = stream.read(buffer);
+			if (count < 0)
+				return false;
+			position = 0;
+			limit = count;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the position of the end of transmission marker between the
+	 *         current position and the given end, or the end if there is none
+	 */
+	private int findMarker(final int to) {
+		for (int i = position; i < to; i++) {
+			if (buffer[i] == END_OF_TRANSMISSION)
+				return i;
+		}
+		return to;
+	}
+
+	private int append(final int length, final int count) {
+		if (length + count > answer.length) {
+			final byte[] larger = new byte[Math.max(answer.length * 2, length
+					+ count)];
+			System.arraycopy(answer, 0, larger, 0, length);
+			answer = larger;
+		}
+		System.arraycopy(buffer, position, answer, length, count);
+		return length + count;
+	}
+
+	/*
+	 * On windows prob uses \r\n as new line, so we cannot just remove the last
+	 * byte.
+	 */
+	private void trim(final int length) {
+		start = 0;
+		end = length;
+		while (start < end && isWhitespace(answer[start])) {
+			start++;
+		}
+		while (end > start && isWhitespace(answer[end - 1])) {
+			end--;
+		}
+	}
+
+	private static boolean isWhitespace(final byte b) {
+		return b >= 0 && b <= ' ';
+	}
+
+	/**
+	 * The bytes of one answer, read from the buffer of the reader. If the
+	 * underlying stream ends before the end of transmission marker, the
+	 * answer ends there, too.
+	 */
+	private final class AnswerStream extends InputStream {
+		private boolean complete = false;
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len)
+				throws IOException {
+			if (complete)
+				return -1;
+			if (len == 0)
+				return 0;
+			if (!fill()) {
+				complete = true;
+				return -1;
+			}
+			final int count = consume(Math.min(limit, position + len), b, off);
+			return count > 0 || !complete ? count : -1;
+		}
+
+		@Override
+		public void close() throws IOException {
+			// skip the rest of the answer
+			while (!complete) {
+				if (fill()) {
+					consume(limit, null, 0);
+				} else {
+					complete = true;
+				}
+			}
+		}
+
+		/**
+		 * Consumes the bytes of the buffer up to the given end or the end of
+		 * transmission marker and copies them into the given array, if any.
+		 *
+		 * @return the number of bytes of the answer that have been consumed
+		 */
+		private int consume(final int to, final byte[] b, final int off) {
+			final int chunkEnd = findMarker(to);
+			final int count = chunkEnd - position;
+			if (b != null) {
+				System.arraycopy(buffer, position, b, off, count);
+			}
+			position = chunkEnd;
+			size += count;
+			if (chunkEnd < to) {
+				// skip the end of transmission marker
+				position++;
+				size++;
+				complete = true;
+			}
+			return count;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.internal;
+
+import java.util.PriorityQueue;
+
+import de.prob.core.CommandPriority;
+
+/**
+ * Decides which command is sent to the primary ProB process next. Each
+ * command takes a {@link Ticket} with {@link #enqueue(CommandPriority, long)}
+ * and waits with {@link #await(Ticket)} until it is its turn, that is until
+ * no other command is running and no waiting command has a higher priority or
+ * the same priority and an older ticket. After the command has been executed,
+ * the ticket is handed back with {@link #release(Ticket)}.
+ *
+ * A waiting ticket can be withdrawn with {@link #cancel(Ticket)}, this does
+ * not affect the running command. A ticket with a deadline is withdrawn
+ * automatically if its command could not be started before the deadline.
+ *
+ * The queue is reentrant: a command that is enqueued by the thread that
+ * executes the running command (e.g. by a listener that is notified while the
+ * result is processed) runs right away, nested in the running command.
+ */
+public final class CommandQueue {
+
+	private final PriorityQueue<Ticket> waiting = new PriorityQueue<Ticket>();
+	private Ticket running;
+	private Thread owner;
+	private long nextSequence;
+
+	/**
+	 * @param deadline
+	 *            the latest time to start the command, as returned by
+	 *            {@link System#nanoTime()}, or {@link Long#MAX_VALUE} for no
+	 *            deadline
+	 */
+	public synchronized Ticket enqueue(final CommandPriority priority,
+			final long deadline) {
+		final Ticket ticket = new Ticket(priority, nextSequence++, deadline);
+		waiting.add(ticket);
+		return ticket;
+	}
+
+	/**
+	 * Waits until the command of the ticket may be sent to ProB. If the
+	 * thread is interrupted, the ticket is withdrawn.
+	 *
+	 * @return <code>true</code> if the command may be sent now and the ticket
+	 *         must be released afterwards, <code>false</code> if the ticket
+	 *         has been cancelled or its deadline has passed
+	 */
+	public synchronized boolean await(final Ticket ticket)
+			throws InterruptedException {
+		try {
+			return awaitTurn(ticket);
+		} catch (InterruptedException e) {
+			withdraw(ticket);
+			throw e;
+		}
+	}
+
+	/**
+	 * Like {@link #await(Ticket)}, but keeps waiting if the thread is
+	 * interrupted. The interrupt status is restored before returning.
+	 */
+	public boolean awaitUninterruptibly(final Ticket ticket) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return awaitTurn(ticket);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private synchronized boolean awaitTurn(final Ticket ticket)
+			throws InterruptedException {
+		while (!ticket.withdrawn) {
+			if (owner == Thread.currentThread()) {
+				waiting.remove(ticket);
+				ticket.nested = true;
+				return true;
+			}
+			if (running == null && waiting.peek() == ticket) {
+				waiting.poll();
+				running = ticket;
+				owner = Thread.currentThread();
+				return true;
+			}
+			if (ticket.deadline == Long.MAX_VALUE) {
+				wait();
+			} else {
+				final long remaining = ticket.deadline - System.nanoTime();
+				if (remaining <= 0) {
+					withdraw(ticket);
+				} else {
+					wait(remaining / 1000000L + 1);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Marks the command of the ticket as finished, so that the next command
+	 * can be sent.
+	 */
+	public synchronized void release(final Ticket ticket) {
+		if (ticket.nested) {
+			ticket.nested = false;
+		} else if (running == ticket) {
+			running = null;
+			owner = null;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the current thread executes the running
+	 *         command
+	 */
+	public synchronized boolean isHeldByCurrentThread() {
+		return owner == Thread.currentThread();
+	}
+
+	/**
+	 * Withdraws the ticket if its command is still waiting.
+	 *
+	 * @return <code>true</code> if the command had not been started and will
+	 *         not be started
+	 */
+	public synchronized boolean cancel(final Ticket ticket) {
+		if (ticket.withdrawn || running == ticket || !waiting.contains(ticket))
+			return false;
+		withdraw(ticket);
+		return true;
+	}
+
+	private void withdraw(final Ticket ticket) {
+		ticket.withdrawn = true;
+		waiting.remove(ticket);
+		notifyAll();
+	}
+
+	/**
+	 * The place of a command in the queue.
+	 */
+	public static final class Ticket implements Comparable<Ticket> {
+		private final CommandPriority priority;
+		private final long sequence;
+		private final long deadline;
+		private boolean withdrawn;
+		private boolean nested;
+
+		private Ticket(final CommandPriority priority, final long sequence,
+				final long deadline) {
+			this.priority = priority;
+			this.sequence = sequence;
+			this.deadline = deadline;
+		}
+
+		public int compareTo(final Ticket other) {
+			final int result = priority.compareTo(other.priority);
+			if (result != 0)
+				return result;
+			return sequence < other.sequence ? -1
+					: (sequence == other.sequence ? 0 : 1);
+		}
+	}
+
+}
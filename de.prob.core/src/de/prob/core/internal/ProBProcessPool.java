@@ -0,0 +1,357 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import de.prob.cli.CliException;
+import de.prob.core.IServerConnection;
+import de.prob.core.command.INonReplayableCommand;
+import de.prob.core.command.IReadOnlyCommand;
+import de.prob.core.command.SetPrologRandomSeed;
+import de.prob.core.domainobjects.RandomSeed;
+import de.prob.exceptions.ProBException;
+import de.prob.logging.Logger;
+import de.prob.prolog.output.PrologTermStringOutput;
+
+/**
+ * A pool of additional probcli processes (workers) that execute
+ * {@link IReadOnlyCommand}s in parallel to the primary process of the
+ * {@link AnimatorImpl}.
+ *
+ * ProB numbers its states in the order they are computed, so a worker has the
+ * same state space as the primary process if it receives the same queries in
+ * the same order. The primary process reports every query that may change its
+ * state space with {@link #replicate(String)} after it has processed the
+ * answer. Before a worker executes a read-only command, it replays all queries
+ * it has not seen yet. Loading a machine starts a new log with
+ * {@link #reset(RandomSeed)} while the answer of the load query is processed,
+ * so the load query is the first query of the new log and clears the machine
+ * in the worker, too.
+ *
+ * Commands whose effect cannot be reproduced by replaying their query (see
+ * {@link INonReplayableCommand}) are reported with {@link #invalidate()}
+ * instead. Until the next reset, the workers are not used anymore and all
+ * commands are executed by the primary process.
+ *
+ * Queries that every worker has replayed are discarded from the log. A worker
+ * that has not been used for more than {@value #MAX_LOG_SIZE} queries is not
+ * used again until the next machine is loaded.
+ *
+ * The number of workers is configured by the system property
+ * {@value #WORKERS_PROPERTY}, by default no workers are started. Workers are
+ * started in the background, as long as no worker is idle the commands are
+ * executed by the primary process.
+ */
+public final class ProBProcessPool {
+	public static final String WORKERS_PROPERTY = "de.prob.core.workers";
+
+	private static final int COMPACT_THRESHOLD = 256;
+	private static final int MAX_LOG_SIZE = 4096;
+
+	/**
+	 * Creates the connections to the worker processes.
+	 */
+	interface ConnectionFactory {
+		IServerConnection createConnection();
+	}
+
+	private static final ConnectionFactory PROCESS_FACTORY = new ConnectionFactory() {
+		public IServerConnection createConnection() {
+			return new ServerConnection();
+		}
+	};
+
+	private final File file;
+	private final int size;
+	private final ConnectionFactory factory;
+
+	/**
+	 * The queries that have been sent to the primary process since the last
+	 * reset, without the first {@link #offset} ones that all workers have
+	 * replayed already. The log and the positions of the workers are guarded
+	 * by the log. Never acquire the pool's monitor while holding the log.
+	 */
+	private final List<String> log = new ArrayList<String>();
+	private int offset = 0;
+	private int generation = 0;
+	/**
+	 * <code>true</code> if the state space of the primary process has been
+	 * changed by a query that cannot be replayed since the last reset
+	 */
+	private boolean diverged = false;
+
+	private final LinkedList<Worker> idleWorkers = new LinkedList<Worker>();
+	private final List<Worker> allWorkers = new ArrayList<Worker>();
+	private boolean started = false;
+	private volatile boolean shutdown = false;
+
+	ProBProcessPool(final File file, final int size,
+			final ConnectionFactory factory) {
+		this.file = file;
+		this.size = size;
+		this.factory = factory;
+	}
+
+	/**
+	 * Creates a pool with the configured number of workers and starts them in
+	 * the background.
+	 *
+	 * @param file
+	 *            the file given to the probcli processes on startup, may be
+	 *            <code>null</code>
+	 * @return the new pool or <code>null</code> if no workers are configured
+	 */
+	public static ProBProcessPool create(final File file) {
+		final int size = Integer.getInteger(WORKERS_PROPERTY, 0);
+		if (size <= 0)
+			return null;
+		final ProBProcessPool pool = new ProBProcessPool(file, size,
+				PROCESS_FACTORY);
+		pool.startWorkers();
+		return pool;
+	}
+
+	/**
+	 * Records a query whose answer the primary process has processed.
+	 */
+	public void replicate(final String query) {
+		final List<Worker> workers = getStartedWorkers();
+		synchronized (log) {
+			if (diverged)
+				return;
+			log.add(query);
+			if (workers != null && log.size() >= COMPACT_THRESHOLD) {
+				compact(workers);
+			}
+		}
+	}
+
+	/**
+	 * Records that the primary process has executed a query that cannot be
+	 * replayed. The workers are not used until the next reset.
+	 */
+	public void invalidate() {
+		synchronized (log) {
+			diverged = true;
+			log.clear();
+			offset = 0;
+		}
+	}
+
+	/**
+	 * Discards the recorded queries because a new machine has been loaded.
+	 * Must be called before the load query is replicated. The workers will
+	 * start over with the queries recorded from now on.
+	 *
+	 * @param seed
+	 *            the random seed of the primary process, may be
+	 *            <code>null</code>
+	 */
+	public void reset(final RandomSeed seed) {
+		synchronized (log) {
+			log.clear();
+			offset = 0;
+			generation++;
+			diverged = false;
+			if (seed != null) {
+				// random operations must produce the same states in the
+				// workers
+				final PrologTermStringOutput pto = new PrologTermStringOutput();
+				new SetPrologRandomSeed(seed).writeCommand(pto);
+				log.add(pto.fullstop().toString());
+			}
+		}
+	}
+
+	/**
+	 * Executes the command on an idle worker.
+	 *
+	 * @return <code>false</code> if no worker was available, the command has
+	 *         not been executed then
+	 * @throws ProBException
+	 *             if ProB reported errors while executing the command
+	 */
+	public boolean execute(final IReadOnlyCommand command)
+			throws ProBException {
+		final Worker worker = acquireWorker();
+		if (worker == null)
+			return false;
+		try {
+			try {
+				if (!worker.catchUp())
+					return false;
+			} catch (ProBException e) {
+				// the worker does not have the same state space as the primary
+				// process anymore
+				worker.broken = true;
+				return false;
+			}
+			worker.animator.execute(command);
+			return true;
+		} catch (CliException e) {
+			// the worker's process is broken, it will not be used anymore and
+			// the primary process executes the command instead
+			worker.broken = true;
+			return false;
+		} finally {
+			releaseWorker(worker);
+		}
+	}
+
+	public void shutdown() {
+		synchronized (this) {
+			shutdown = true;
+			idleWorkers.clear();
+			for (final Worker worker : allWorkers) {
+				worker.animator.shutdownImplementation();
+			}
+			allWorkers.clear();
+		}
+	}
+
+	private synchronized Worker acquireWorker() {
+		return idleWorkers.isEmpty() ? null : idleWorkers.removeFirst();
+	}
+
+	private synchronized void releaseWorker(final Worker worker) {
+		if (shutdown || worker.broken) {
+			allWorkers.remove(worker);
+			worker.animator.shutdownImplementation();
+		} else {
+			idleWorkers.addLast(worker);
+		}
+	}
+
+	private synchronized boolean addWorker(final Worker worker) {
+		if (shutdown)
+			return false;
+		allWorkers.add(worker);
+		idleWorkers.addLast(worker);
+		return true;
+	}
+
+	private synchronized void setStarted() {
+		started = true;
+	}
+
+	/**
+	 * @return the workers or <code>null</code> if not all workers have been
+	 *         started yet
+	 */
+	private synchronized List<Worker> getStartedWorkers() {
+		return started ? new ArrayList<Worker>(allWorkers) : null;
+	}
+
+	/**
+	 * Discards the queries that all workers have replayed. If the log gets too
+	 * long, all queries are discarded and the workers that lag behind are not
+	 * used until the next reset. Must be called while holding the log.
+	 */
+	private void compact(final List<Worker> workers) {
+		final int end = offset + log.size();
+		int replayed = end;
+		if (log.size() <= MAX_LOG_SIZE) {
+			for (final Worker worker : workers) {
+				final int position = worker.workerGeneration == generation ? worker.position
+						: 0;
+				if (position >= offset) {
+					replayed = Math.min(replayed, position);
+				}
+			}
+		}
+		if (replayed > offset) {
+			log.subList(0, replayed - offset).clear();
+			offset = replayed;
+		}
+	}
+
+	/**
+	 * Starts the worker processes in the background.
+	 * 
+	 * @return the thread that starts the workers
+	 */
+	Thread startWorkers() {
+		final Thread starter = new Thread("ProB worker startup") {
+			@Override
+			public void run() {
+				try {
+					startWorkerProcesses();
+				} finally {
+					setStarted();
+				}
+			}
+		};
+		starter.setDaemon(true);
+		starter.start();
+		return starter;
+	}
+
+	private void startWorkerProcesses() {
+		for (int i = 0; i < size && !shutdown; i++) {
+			final AnimatorImpl animator = new AnimatorImpl(
+					factory.createConnection(), file, false);
+			if (!animator.isConnected()) {
+				Logger.info("Could not start ProB worker process, " + i
+						+ " of " + size + " workers are running");
+				break;
+			}
+			if (!addWorker(new Worker(animator))) {
+				animator.shutdownImplementation();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of queries that are kept for the workers
+	 */
+	int getLogSize() {
+		synchronized (log) {
+			return log.size();
+		}
+	}
+
+	private final class Worker {
+		private final AnimatorImpl animator;
+		private int workerGeneration = -1;
+		private int position = 0;
+		private boolean broken = false;
+
+		public Worker(final AnimatorImpl animator) {
+			this.animator = animator;
+		}
+
+		/**
+		 * Replays the queries the worker has not seen yet.
+		 * 
+		 * @return <code>false</code> if some of these queries have been
+		 *         discarded already or the worker cannot catch up with the
+		 *         primary process anymore
+		 */
+		public boolean catchUp() throws ProBException {
+			final List<String> missing;
+			synchronized (log) {
+				if (workerGeneration != generation) {
+					workerGeneration = generation;
+					position = 0;
+				}
+				if (diverged || position < offset)
+					return false;
+				missing = new ArrayList<String>(log.subList(position - offset,
+						log.size()));
+				position = offset + log.size();
+			}
+			if (!missing.isEmpty()) {
+				animator.replay(missing);
+			}
+			return true;
+		}
+	}
+}
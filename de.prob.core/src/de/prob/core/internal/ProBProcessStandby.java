@@ -0,0 +1,117 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen, Heinrich
+ * Heine Universitaet Duesseldorf This software is licenced under EPL 1.0
+ * (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.internal;
+
+import java.io.File;
+
+import de.prob.cli.CliException;
+import de.prob.core.IConnectionProvider;
+import de.prob.core.IServerConnection;
+
+/**
+ * Keeps one probcli process in reserve that has already been started and
+ * connected, so that a restart of ProB does not have to wait for the process
+ * startup. The standby process is started in the background with
+ * {@link #prepare(IConnectionProvider, File)} and handed out with
+ * {@link #take(IConnectionProvider, File)}.
+ */
+public final class ProBProcessStandby {
+
+	private IConnectionProvider provider;
+	private File file;
+	private IServerConnection connection;
+	private Thread starter;
+
+	/**
+	 * Returns the standby connection if it has been created by the given
+	 * provider for the given file. If the standby process is still starting,
+	 * this method waits for it, because it is ahead of a newly started one.
+	 *
+	 * @return a started connection or <code>null</code> if no matching
+	 *         standby process is available
+	 */
+	public synchronized IServerConnection take(
+			final IConnectionProvider provider, final File file) {
+		if (this.provider != provider || !sameFile(this.file, file)) {
+			discard();
+			return null;
+		}
+		while (starter != null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		final IServerConnection result = connection;
+		connection = null;
+		this.provider = null;
+		this.file = null;
+		return result;
+	}
+
+	/**
+	 * Starts a new standby process in the background, replacing the current
+	 * one if it was created by a different provider or for a different file.
+	 */
+	public synchronized void prepare(final IConnectionProvider provider,
+			final File file) {
+		if (this.provider == provider && sameFile(this.file, file)
+				&& (connection != null || starter != null))
+			return;
+		discard();
+		this.provider = provider;
+		this.file = file;
+		starter = new Thread("ProB standby startup") {
+			@Override
+			public void run() {
+				IServerConnection started = provider.getISeverConnection();
+				try {
+					started.startup(file);
+				} catch (CliException e) {
+					// the user has been notified, the next restart will start
+					// the process in the foreground again
+					started = null;
+				}
+				started(this, started);
+			}
+		};
+		starter.setDaemon(true);
+		starter.start();
+	}
+
+	/**
+	 * Shuts the standby process down.
+	 */
+	public synchronized void discard() {
+		if (connection != null) {
+			connection.shutdown();
+		}
+		connection = null;
+		provider = null;
+		file = null;
+		// a process that is still starting is shut down when it is ready
+		starter = null;
+		notifyAll();
+	}
+
+	private synchronized void started(final Thread thread,
+			final IServerConnection started) {
+		if (starter == thread) {
+			connection = started;
+			starter = null;
+			notifyAll();
+		} else if (started != null) {
+			started.shutdown();
+		}
+	}
+
+	private static boolean sameFile(final File a, final File b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -6,24 +6,30 @@
 
 package de.prob.core.internal;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.Map;
 
 import de.prob.cli.CliException;
 import de.prob.cli.CliStarter;
-import de.prob.core.IServerConnection;
+import de.prob.core.CommandMetrics;
+import de.prob.core.IPipelinedServerConnection;
 import de.prob.core.ProblemHandler;
 import de.prob.exceptions.ProBException;
 import de.prob.logging.Logger;
+import de.prob.parser.ResultParserException;
+import de.prob.prolog.term.PrologTerm;
 
-public class ServerConnection implements IServerConnection {
+public class ServerConnection implements IPipelinedServerConnection {
 
 	private Socket socket = null;
-	private BufferedInputStream inputStream = null;
+	private AnswerReader answerReader = null;
 	private PrintStream outputStream = null;
 
 	private CliStarter cli = null;
@@ -32,6 +38,18 @@ public class ServerConnection implements IServerConnection {
 
 	private volatile boolean shutdown = true;
 
+	/**
+	 * Queries that have been sent to ProB but whose answers have not been read
+	 * yet, in the order they have been sent.
+	 */
+	private final LinkedList<Request> pendingRequests = new LinkedList<Request>();
+	private long requestCounter = 0;
+
+	// guards writing queries and the registration in pendingRequests
+	private final Object writeLock = new Object();
+	// guards reading answers from the socket
+	private final Object readLock = new Object();
+
 	// private static final ScheduledExecutorService exec = new
 	// ScheduledThreadPoolExecutor(
 	// 1);
@@ -55,8 +73,10 @@ public class ServerConnection implements IServerConnection {
 
 	private void establishConnection(final int port) throws CliException {
 		try {
+			// blocking streams, see AnswerReader
 			socket = new Socket(InetAddress.getByName(null), port);
-			inputStream = new BufferedInputStream(socket.getInputStream());
+			answerReader = new AnswerReader(socket.getInputStream(),
+					Charset.defaultCharset());
 			outputStream = new PrintStream(socket.getOutputStream());
 		} catch (final IOException e) {
 			if (socket != null) {
@@ -66,7 +86,7 @@ public class ServerConnection implements IServerConnection {
 					Logger.info(e.getLocalizedMessage());
 				} finally {
 					socket = null;
-					inputStream = null;
+					answerReader = null;
 					outputStream = null;
 				}
 			}
@@ -76,23 +96,91 @@ public class ServerConnection implements IServerConnection {
 	}
 
 	public String sendCommand(final String commandString) throws ProBException {
-		if (shutdown) {
-			final String message = "probcli is currently shutting down";
-			ProblemHandler.raiseCliException(message);
+		return sendCommandPipelined(commandString).getAnswer();
+	}
+
+	public PendingAnswer sendCommandPipelined(final String commandString)
+			throws ProBException {
+		synchronized (writeLock) {
+			if (shutdown) {
+				final String message = "probcli is currently shutting down";
+				ProblemHandler.raiseCliException(message);
+			}
+			checkState();
+			final Request request = new Request(++requestCounter);
+			synchronized (pendingRequests) {
+				pendingRequests.addLast(request);
+			}
+			request.setSent(sendQuery(commandString));
+			return request;
+		}
+	}
+
+	public int getNumberOfPendingAnswers() {
+		synchronized (pendingRequests) {
+			return pendingRequests.size();
 		}
-		checkState();
-		sendQuery(commandString);
-		return getAnswer();
 	}
 
-	private void sendQuery(final String commandString) throws ProBException {
+	/**
+	 * @return the number of bytes sent, without the line separator
+	 */
+	private int sendQuery(final String commandString) throws ProBException {
 		lastCommand = commandString;
 		Logger.assertProB("commandString.trim().endsWith(\".\")", commandString
 				.trim().endsWith("."));
 
-		outputStream.println(commandString);
+		final byte[] bytes = commandString.getBytes(Charset.defaultCharset());
+		outputStream.write(bytes, 0, bytes.length);
+		outputStream.println();
 
 		outputStream.flush();
+		return bytes.length;
+	}
+
+	/**
+	 * Reads answers from the socket until the answer for the given request has
+	 * been received. Answers belonging to requests that have been sent earlier
+	 * are stored in their requests.
+	 * 
+	 * @param query
+	 *            if not <code>null</code>, the answer of the given request is
+	 *            parsed while it is read from the socket, if the connection
+	 *            allows it (see {@link #canStreamAnswers()})
+	 */
+	private void readUntilAnswered(final Request request, final String query) {
+		synchronized (readLock) {
+			while (!request.isAnswered()) {
+				final Request next;
+				synchronized (pendingRequests) {
+					next = pendingRequests.removeFirst();
+				}
+				try {
+					checkState();
+					if (next == request && query != null && canStreamAnswers()) {
+						parseAnswer(next, query);
+					} else {
+						final String answer = getAnswer();
+						next.setAnswer(answer, answerReader == null ? -1
+								: answerReader.getLastAnswerSize());
+					}
+				} catch (ProBException e) {
+					// the connection is not usable anymore, no other request
+					// will get an answer
+					next.setFailure(e);
+					failPendingRequests(e);
+				}
+			}
+		}
+	}
+
+	private void failPendingRequests(final ProBException e) {
+		synchronized (pendingRequests) {
+			for (final Request pending : pendingRequests) {
+				pending.setFailure(e);
+			}
+			pendingRequests.clear();
+		}
 	}
 
 	private String getAnswer() throws ProBException {
@@ -109,6 +197,43 @@ public class ServerConnection implements IServerConnection {
 		return input;
 	}
 
+	/**
+	 * Parses the next answer directly from the socket, the answer is never
+	 * stored as a whole.
+	 */
+	private void parseAnswer(final Request request, final String query)
+			throws ProBException {
+		final AnswerReader reader = answerReader;
+		try {
+			final InputStream answer = reader.openAnswer();
+			if (answer == null)
+				throw new IOException("ProB binary returned nothing - it might have crashed");
+			try {
+				request.setBindings(StreamingResultParser.parseBindings(query,
+						answer, reader.getCharset()), null);
+			} catch (ResultParserException e) {
+				request.setBindings(null, e);
+			} finally {
+				// the rest of a malformed answer must not be taken for the
+				// next answer
+				answer.close();
+			}
+			request.setReceived(reader.getLastAnswerSize());
+		} catch (final IOException e) {
+			shutdown();
+			String message = "Exception while reading from socket";
+			ProblemHandler.handleCliException(message, e);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if answers may be parsed while they are read
+	 *         from the socket, without being passed to {@link #readAnswer()}
+	 */
+	protected boolean canStreamAnswers() {
+		return true;
+	}
+
 	// private String timedRun(final Callable<String> r, final long timeOut,
 	// final TimeUnit unit) throws InterruptedException, ProBException {
 	// String s = null;
@@ -128,37 +253,11 @@ public class ServerConnection implements IServerConnection {
 	// }
 
 	protected String readAnswer() throws IOException {
-		final StringBuilder result = new StringBuilder();
-		final byte[] buffer = new byte[1024];
-		boolean done = false;
-
-		while (!done) {
-			/*
-			 * It might be necessary to check for inputStream.available() > 0.
-			 * Or add some kind of timer to prevent the thread blocks forever.
-			 * See task#102
-			 */
-			int count = inputStream.read(buffer);
-
-			if (count > 0) {
-				final byte length = 1;
-
-				// check for end of transmission (i.e. last byte is 1)
-				if (buffer[count - length] == 1) {
-					done = true;
-					count--; // remove end of transmission marker
-				}
-
-				// trim white spaces and append
-				// instead of removing the last byte trim is used, because on
-				// windows prob uses \r\n as new line.
-				result.append((new String(buffer, 0, count)).trim());
-			} else {
-				done = true;
-			}
-		}
-
-		return result.length() > 0 ? result.toString() : null;
+		/*
+		 * It might be necessary to add some kind of timer to prevent the thread
+		 * blocks forever. See task#102
+		 */
+		return answerReader.readAnswer();
 	}
 
 	public void startup(final File file) throws CliException {
@@ -184,9 +283,12 @@ public class ServerConnection implements IServerConnection {
 			}
 
 			socket = null;
-			inputStream = null;
+			answerReader = null;
 			outputStream = null;
 
+			failPendingRequests(new CliException(
+					"The connection to ProB has been shut down"));
+
 			cli.shutdown();
 			cli = null;
 			shutdown = true;
@@ -194,7 +296,7 @@ public class ServerConnection implements IServerConnection {
 	}
 
 	private void checkState() throws CliException {
-		if (inputStream == null || outputStream == null) {
+		if (answerReader == null || outputStream == null) {
 			ProblemHandler.raiseCliException("Stream to ProB server not ready");
 		}
 	}
@@ -209,4 +311,104 @@ public class ServerConnection implements IServerConnection {
 			cli.sendUserInterruptReference();
 		}
 	}
+
+	/**
+	 * A query that has been sent, together with the sizes and the time it
+	 * took until the answer arrived.
+	 */
+	final class Request implements PendingAnswer {
+		private final long requestId;
+		private String answer;
+		private Map<String, PrologTerm> bindings;
+		private ResultParserException parseFailure;
+		private ProBException failure;
+		private volatile boolean answered = false;
+		private int bytesSent = -1;
+		private int bytesReceived = -1;
+		private long sentAt;
+		private long answeredAt;
+
+		public Request(final long requestId) {
+			this.requestId = requestId;
+		}
+
+		public long getRequestId() {
+			return requestId;
+		}
+
+		public boolean isAnswered() {
+			return answered;
+		}
+
+		public String getAnswer() throws ProBException {
+			readUntilAnswered(this, null);
+			if (failure != null)
+				throw failure;
+			return answer;
+		}
+
+		/**
+		 * Like {@link #getAnswer()}, but returns the bindings of the query's
+		 * variables. If the answer has not been read yet, it is parsed
+		 * directly from the socket. The time ProB needed includes the time
+		 * to parse the answer then.
+		 * 
+		 * @param query
+		 *            the query of this request
+		 * @throws ResultParserException
+		 *             if the answer could not be parsed, the query failed or
+		 *             ProB raised an exception
+		 */
+		public Map<String, PrologTerm> getBindings(final String query)
+				throws ProBException, ResultParserException {
+			readUntilAnswered(this, query);
+			if (failure != null)
+				throw failure;
+			if (parseFailure != null)
+				throw parseFailure;
+			return bindings != null ? bindings : StreamingResultParser
+					.parseBindings(query, answer);
+		}
+
+		private void setSent(final int bytes) {
+			this.bytesSent = bytes;
+			this.sentAt = System.nanoTime();
+		}
+
+		private void setAnswer(final String answer, final int bytes) {
+			this.answer = answer;
+			setReceived(bytes);
+		}
+
+		private void setBindings(final Map<String, PrologTerm> bindings,
+				final ResultParserException parseFailure) {
+			this.bindings = bindings;
+			this.parseFailure = parseFailure;
+		}
+
+		private void setReceived(final int bytes) {
+			this.bytesReceived = bytes;
+			this.answeredAt = System.nanoTime();
+			this.answered = true;
+		}
+
+		/**
+		 * Adds the sizes of the query and the answer and the time ProB
+		 * needed to the sample. Must only be called after the answer has
+		 * been read.
+		 */
+		void addTo(final CommandMetrics.Sample sample) {
+			sample.set(CommandMetrics.Metric.SENT, bytesSent);
+			if (failure == null) {
+				sample.set(CommandMetrics.Metric.RECEIVED, bytesReceived);
+				sample.set(CommandMetrics.Metric.PROLOG_WAIT, answeredAt
+						- sentAt);
+			}
+		}
+
+		private void setFailure(final ProBException failure) {
+			this.failure = failure;
+			this.answered = true;
+		}
+	}
 }
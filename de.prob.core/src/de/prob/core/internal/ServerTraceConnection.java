@@ -41,9 +41,10 @@ public class ServerTraceConnection extends ServerConnection implements
 	}
 
 	@Override
-	public String sendCommand(final String commandString) throws ProBException {
+	public PendingAnswer sendCommandPipelined(final String commandString)
+			throws ProBException {
 		sendMessage(commandString);
-		return super.sendCommand(commandString);
+		return super.sendCommandPipelined(commandString);
 	}
 
 	@Override
@@ -54,6 +55,14 @@ public class ServerTraceConnection extends ServerConnection implements
 
 	}
 
+	/**
+	 * The answers are added to the trace, so they must be read as a whole.
+	 */
+	@Override
+	protected boolean canStreamAnswers() {
+		return false;
+	}
+
 	private void sendMessage(final String content) {
 		trace.addMessage(Type.QUERY, content);
 	}
@@ -0,0 +1,495 @@
+/**
+ * (c) 2009 Lehrstuhl fuer Softwaretechnik und Programmiersprachen,
+ * Heinrich Heine Universitaet Duesseldorf
+ * This software is licenced under EPL 1.0 (http://www.eclipse.org/org/documents/epl-v10.html)
+ * */
+
+package de.prob.core.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.prob.parser.ResultParserException;
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.IntegerPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+import de.prob.prolog.term.VariablePrologTerm;
+
+/**
+ * Parses the answers of ProB directly into {@link PrologTerm}s in a single
+ * pass. In contrast to {@link ProBResultParser} no SableCC syntax tree and no
+ * token objects are created. If the answer is parsed from a stream (as
+ * {@link ServerConnection} does), the memory needed is proportional to the
+ * resulting terms.
+ *
+ * The accepted syntax and the created terms are the same as with
+ * {@link ProBResultParser} and the {@link de.prob.parser.BindingGenerator}: An
+ * answer is either <code>yes(Term)</code>, <code>no</code> or
+ * <code>exception...</code>. Lists are encoded as <code>'.'(Head,Tail)</code>
+ * and are converted into {@link ListPrologTerm}s if they end with
+ * <code>[]</code>.
+ */
+public final class StreamingResultParser {
+	private static final int BUFFER_SIZE = 8192;
+	private static final int EOF = -1;
+	private static final PrologTerm[] EMPTY_TERMS = new PrologTerm[0];
+	private static final String SYMBOL_CHARS = "+-*/\\^<>=~:.?@#&$";
+	private static final String LIST_FUNCTOR = ".";
+	private static final String EMPTY_LIST = "[]";
+
+	private final Reader reader;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+	private int offset = 0;
+
+	private final StringBuilder token = new StringBuilder();
+	// set by readName()
+	private boolean quoted;
+
+	private StreamingResultParser(final Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Parses the answer of ProB and extracts the bindings of the query's
+	 * variables.
+	 *
+	 * @param query
+	 *            the query, only used for error messages
+	 * @param answer
+	 *            the answer of ProB
+	 * @return a map from the variable names to their values
+	 * @throws ResultParserException
+	 *             if the answer could not be parsed, the query failed or ProB
+	 *             raised an exception
+	 */
+	public static Map<String, PrologTerm> parseBindings(final String query,
+			final String answer) throws ResultParserException {
+		if (answer == null)
+			throw new ResultParserException("ProB sent no answer to query: "
+					+ query, null);
+		return parseBindings(query, new StringReader(answer));
+	}
+
+	/**
+	 * Like {@link #parseBindings(String, String)}, but reads the answer from a
+	 * stream.
+	 */
+	public static Map<String, PrologTerm> parseBindings(final String query,
+			final InputStream answer, final Charset charset)
+			throws ResultParserException {
+		return parseBindings(query, new InputStreamReader(answer, charset));
+	}
+
+	/**
+	 * Parses the answer of ProB.
+	 *
+	 * @param answer
+	 *            the answer of ProB
+	 * @return the term of a <code>yes</code> answer or <code>null</code> if
+	 *         the query failed
+	 * @throws ResultParserException
+	 *             if the answer could not be parsed or ProB raised an
+	 *             exception
+	 */
+	public static PrologTerm parseTerm(final String answer)
+			throws ResultParserException {
+		return new StreamingResultParser(new StringReader(answer)).parseResult();
+	}
+
+	private static Map<String, PrologTerm> parseBindings(final String query,
+			final Reader answer) throws ResultParserException {
+		final PrologTerm result = new StreamingResultParser(answer)
+				.parseResult();
+		if (result == null)
+			throw new ResultParserException(
+					"Prolog query unexpectedly failed: " + query, null);
+		return createBindings(result);
+	}
+
+	private static Map<String, PrologTerm> createBindings(
+			final PrologTerm result) throws ResultParserException {
+		if (!result.isList())
+			throw new ResultParserException("Expected list of bindings, but was "
+					+ result, null);
+		final ListPrologTerm list = (ListPrologTerm) result;
+		final Map<String, PrologTerm> bindings = new HashMap<String, PrologTerm>(
+				list.size() * 2);
+		for (final PrologTerm binding : list) {
+			if (!binding.hasFunctor("=", 2))
+				throw new ResultParserException(
+						"Expected binding (=/2), but was " + binding, null);
+			final CompoundPrologTerm compound = (CompoundPrologTerm) binding;
+			final PrologTerm name = compound.getArgument(1);
+			if (name.isAtom()) {
+				bindings.put(((CompoundPrologTerm) name).getFunctor(),
+						compound.getArgument(2));
+			}
+		}
+		return bindings;
+	}
+
+	private PrologTerm parseResult() throws ResultParserException {
+		final String name = readName();
+		final PrologTerm result;
+		if ("yes".equals(name) && !quoted) {
+			expect('(');
+			result = parseTerm();
+			expect(')');
+			skipWhitespace();
+			if (peek() != EOF)
+				throw error("Unexpected input after end of answer");
+		} else if ("no".equals(name) && !quoted) {
+			result = null;
+		} else if ("exception".equals(name) && !quoted) {
+			throw new ResultParserException("ProB raised an exception: "
+					+ readRemaining(), null);
+		} else
+			throw error("Expected yes, no or exception, but was " + name);
+		return result;
+	}
+
+	private PrologTerm parseTerm() throws ResultParserException {
+		skipWhitespace();
+		final int c = peek();
+		final PrologTerm term;
+		if (isDigit(c) || c == '-' && isDigit(peek(1))) {
+			term = readNumber();
+		} else if (c == '_' || c >= 'A' && c <= 'Z') {
+			term = new VariablePrologTerm(readAlphanumeric());
+		} else {
+			final String name = readName();
+			term = parseTermWithName(name, quoted);
+		}
+		return term;
+	}
+
+	private PrologTerm parseTermWithName(final String name,
+			final boolean wasQuoted) throws ResultParserException {
+		skipWhitespace();
+		final PrologTerm term;
+		if (peek() == '(') {
+			read();
+			if (LIST_FUNCTOR.equals(name)) {
+				term = parseList();
+			} else {
+				term = new CompoundPrologTerm(name, parseArguments());
+			}
+		} else if (!wasQuoted && EMPTY_LIST.equals(name)) {
+			term = new ListPrologTerm(EMPTY_TERMS);
+		} else {
+			term = new CompoundPrologTerm(name);
+		}
+		return term;
+	}
+
+	private PrologTerm[] parseArguments() throws ResultParserException {
+		final List<PrologTerm> args = new ArrayList<PrologTerm>(4);
+		args.add(parseTerm());
+		skipWhitespace();
+		while (peek() == ',') {
+			read();
+			args.add(parseTerm());
+			skipWhitespace();
+		}
+		expect(')');
+		return args.toArray(new PrologTerm[args.size()]);
+	}
+
+	/**
+	 * Parses a list that is encoded as nested '.'/2 terms. The opening
+	 * parenthesis of the outermost term has already been read. The list is
+	 * parsed iteratively, so long lists do not cause a deep recursion.
+	 *
+	 * As with the SableCC based parser, the terms are only converted into a
+	 * {@link ListPrologTerm} if all of them have arity 2 and the innermost
+	 * tail is <code>[]</code>.
+	 */
+	private PrologTerm parseList() throws ResultParserException {
+		final List<PrologTerm> heads = new ArrayList<PrologTerm>();
+		PrologTerm tail = null;
+		while (tail == null) {
+			final PrologTerm head = parseTerm();
+			skipWhitespace();
+			if (peek() == ',') {
+				read();
+				heads.add(head);
+				tail = parseListTail();
+			} else {
+				// '.'/1
+				expect(')');
+				tail = new CompoundPrologTerm(LIST_FUNCTOR, head);
+			}
+		}
+		// close the terms from the innermost to the outermost one, terms that
+		// are not yet combined are kept in heads[0..pairs)
+		int pairs = heads.size();
+		PrologTerm current = tail;
+		for (int i = heads.size() - 1; i >= 0; i--) {
+			skipWhitespace();
+			if (peek() != ')') {
+				// '.'/N with N > 2, this breaks the list
+				current = combine(heads, i + 1, pairs, current);
+				expect(',');
+				final PrologTerm[] more = parseArguments();
+				final PrologTerm[] args = new PrologTerm[more.length + 2];
+				args[0] = heads.get(i);
+				args[1] = current;
+				System.arraycopy(more, 0, args, 2, more.length);
+				current = new CompoundPrologTerm(LIST_FUNCTOR, args);
+				pairs = i;
+			} else {
+				read();
+			}
+		}
+		return combine(heads, 0, pairs, current);
+	}
+
+	/**
+	 * Reads the second argument of a '.' term. If it is another '.' term, its
+	 * opening parenthesis is consumed and <code>null</code> is returned.
+	 */
+	private PrologTerm parseListTail() throws ResultParserException {
+		skipWhitespace();
+		final int c = peek();
+		final PrologTerm tail;
+		if (isDigit(c) || c == '-' && isDigit(peek(1)) || c == '_' || c >= 'A'
+				&& c <= 'Z') {
+			tail = parseTerm();
+		} else {
+			final String name = readName();
+			final boolean wasQuoted = quoted;
+			skipWhitespace();
+			if (LIST_FUNCTOR.equals(name) && peek() == '(') {
+				read();
+				tail = null;
+			} else {
+				tail = parseTermWithName(name, wasQuoted);
+			}
+		}
+		return tail;
+	}
+
+	private static PrologTerm combine(final List<PrologTerm> heads,
+			final int from, final int to, final PrologTerm tail) {
+		final PrologTerm result;
+		if (tail.isList() && ((ListPrologTerm) tail).isEmpty()) {
+			result = new ListPrologTerm(heads.subList(from, to).toArray(
+					new PrologTerm[to - from]));
+		} else {
+			PrologTerm current = tail;
+			for (int i = to - 1; i >= from; i--) {
+				current = new CompoundPrologTerm(LIST_FUNCTOR, heads.get(i),
+						current);
+			}
+			result = current;
+		}
+		return result;
+	}
+
+	private PrologTerm readNumber() throws ResultParserException {
+		token.setLength(0);
+		if (peek() == '-') {
+			token.append((char) read());
+		}
+		while (isDigit(peek())) {
+			token.append((char) read());
+		}
+		final PrologTerm result;
+		// up to 18 digits always fit into a long
+		if (token.length() <= 18) {
+			result = new IntegerPrologTerm(Long.parseLong(token.toString()));
+		} else {
+			result = new IntegerPrologTerm(new BigInteger(token.toString()));
+		}
+		return result;
+	}
+
+	private String readName() throws ResultParserException {
+		skipWhitespace();
+		quoted = false;
+		final int c = peek();
+		final String name;
+		if (c == '\'') {
+			quoted = true;
+			name = readQuoted();
+		} else if (c >= 'a' && c <= 'z') {
+			name = readAlphanumeric();
+		} else if (c == '[') {
+			read();
+			expect(']');
+			name = EMPTY_LIST;
+		} else if (c == '{') {
+			read();
+			expect('}');
+			name = "{}";
+		} else if (c == '!' || c == ';') {
+			name = String.valueOf((char) read());
+		} else if (c != EOF && SYMBOL_CHARS.indexOf(c) >= 0) {
+			token.setLength(0);
+			while (peek() != EOF && SYMBOL_CHARS.indexOf(peek()) >= 0) {
+				token.append((char) read());
+			}
+			name = token.toString();
+		} else
+			throw error("Expected a term");
+		return name;
+	}
+
+	private String readAlphanumeric() throws ResultParserException {
+		token.setLength(0);
+		int c = peek();
+		while (c == '_' || isDigit(c) || c >= 'a' && c <= 'z' || c >= 'A'
+				&& c <= 'Z') {
+			token.append((char) read());
+			c = peek();
+		}
+		return token.toString();
+	}
+
+	private String readQuoted() throws ResultParserException {
+		token.setLength(0);
+		read(); // opening quote
+		int c = read();
+		while (c != '\'') {
+			if (c == EOF)
+				throw error("Unterminated quoted atom");
+			if (c == '\\') {
+				readEscape();
+			} else {
+				token.append((char) c);
+			}
+			c = read();
+		}
+		return token.toString();
+	}
+
+	private void readEscape() throws ResultParserException {
+		final int c = read();
+		switch (c) {
+		case 'a':
+			token.append((char) 7);
+			break;
+		case 'b':
+		case 'd':
+			token.append((char) 8);
+			break;
+		case 't':
+			token.append((char) 9);
+			break;
+		case 'n':
+			token.append((char) 10);
+			break;
+		case 'v':
+		case 'f':
+			token.append((char) 12);
+			break;
+		case 'r':
+			token.append((char) 13);
+			break;
+		case 'e':
+			token.append((char) 28);
+			break;
+		case 'x':
+			int value = 0;
+			int digit = read();
+			while (digit != '\\') {
+				final int v = Character.digit(digit, 16);
+				if (v < 0)
+					throw error("Invalid hexadecimal escape sequence");
+				value = value * 16 + v;
+				digit = read();
+			}
+			token.append((char) value);
+			break;
+		case EOF:
+			throw error("Unterminated quoted atom");
+		default:
+			token.append((char) c);
+		}
+	}
+
+	private String readRemaining() throws ResultParserException {
+		token.setLength(0);
+		int c = read();
+		while (c != EOF) {
+			token.append((char) c);
+			c = read();
+		}
+		return token.toString();
+	}
+
+	private void expect(final char expected) throws ResultParserException {
+		skipWhitespace();
+		final int c = read();
+		if (c != expected)
+			throw error("Expected '" + expected + "' but found "
+					+ (c == EOF ? "end of answer" : "'" + (char) c + "'"));
+	}
+
+	private void skipWhitespace() throws ResultParserException {
+		int c = peek();
+		while (c != EOF && c <= ' ') {
+			read();
+			c = peek();
+		}
+	}
+
+	private static boolean isDigit(final int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private ResultParserException error(final String message) {
+		return new ResultParserException("Error while parsing ProB answer at "
+				+ "character " + (offset + position) + ": " + message, null);
+	}
+
+	private int read() throws ResultParserException {
+		final int c = peek();
+		if (c != EOF) {
+			position++;
+		}
+		return c;
+	}
+
+	private int peek() throws ResultParserException {
+		return peek(0);
+	}
+
+	private int peek(final int ahead) throws ResultParserException {
+		if (position + ahead >= limit) {
+			fill();
+		}
+		return position + ahead < limit ? buffer[position + ahead] : EOF;
+	}
+
+	private void fill() throws ResultParserException {
+		// keep the characters that have not been consumed yet
+		final int remaining = limit - position;
+		System.arraycopy(buffer, position, buffer, 0, remaining);
+		offset += position;
+		position = 0;
+		limit = remaining;
+		try {
+			final int count = reader.read(buffer, limit, buffer.length - limit);
+			if (count > 0) {
+				limit += count;
+			}
+		} catch (IOException e) {
+			throw new ResultParserException(
+					"Error while reading ProB answer: " + e.getLocalizedMessage(),
+					e);
+		}
+	}
+}
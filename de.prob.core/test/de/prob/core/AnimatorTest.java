@@ -0,0 +1,97 @@
+package de.prob.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import de.prob.core.command.IComposableCommand;
+import de.prob.core.internal.AnimatorImpl;
+import de.prob.core.internal.RecordingConnection;
+import de.prob.exceptions.ProBException;
+import de.prob.parser.ISimplifiedROMap;
+import de.prob.prolog.output.IPrologTermOutput;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Unit test for the command execution of the {@link Animator}.
+ */
+public final class AnimatorTest {
+	private final RecordingConnection connection = new RecordingConnection();
+	private final Animator animator = new Animator(new AnimatorImpl(
+			connection, null));
+
+	@Test(timeout = 10000)
+	public void testNestedExecute() throws ProBException {
+		// like a listener that is notified while the result is processed
+		final Query nested = new Query("nested", null);
+		animator.execute(new Query("outer", nested));
+
+		assertTrue(nested.processed);
+		assertEquals(2, connection.getQueries().size());
+		assertTrue(connection.getQueries().get(0).startsWith("outer"));
+		assertTrue(connection.getQueries().get(1).startsWith("nested"));
+	}
+
+	@Test(timeout = 10000)
+	public void testNestedExecuteAsync() throws Exception {
+		final Query nested = new Query("nested", null);
+		final Query outer = new Query("outer", null) {
+			@Override
+			public void processResult(
+					final ISimplifiedROMap<String, PrologTerm> bindings) {
+				final Future<Query> future = animator.executeAsync(nested,
+						CommandPriority.BACKGROUND);
+				try {
+					future.get();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		animator.execute(outer);
+
+		assertTrue(nested.processed);
+	}
+
+	@Test(timeout = 10000)
+	public void testNestedExecuteFromOtherCommands() throws Exception {
+		final Query nested = new Query("nested", null);
+		final Future<Query> future = animator.executeAsync(new Query("outer",
+				nested), CommandPriority.NORMAL);
+		future.get();
+		animator.execute(new Query("next", null));
+
+		assertTrue(nested.processed);
+		assertEquals(3, connection.getQueries().size());
+	}
+
+	private class Query implements IComposableCommand {
+		private final String name;
+		private final Query nested;
+		private boolean processed = false;
+
+		public Query(final String name, final Query nested) {
+			this.name = name;
+			this.nested = nested;
+		}
+
+		public void writeCommand(final IPrologTermOutput pto) {
+			pto.printAtom(name);
+		}
+
+		public void processResult(
+				final ISimplifiedROMap<String, PrologTerm> bindings) {
+			processed = true;
+			if (nested != null) {
+				try {
+					animator.execute(nested);
+				} catch (ProBException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package de.prob.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link Histogram}.
+ */
+public final class HistogramTest {
+
+	@Test
+	public void testEmpty() {
+		final Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(0, histogram.getMean(), 0);
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		for (long value = 0; value < 16; value++) {
+			assertEquals(value, bucketOf(value));
+		}
+	}
+
+	@Test
+	public void testBucketBoundaries() {
+		// 16 to 31 still have buckets of width 1
+		assertEquals(16, bucketOf(16));
+		assertEquals(31, bucketOf(31));
+		// 32 to 63 have buckets of width 2
+		assertEquals(33, bucketOf(32));
+		assertEquals(33, bucketOf(33));
+		assertEquals(35, bucketOf(34));
+		assertEquals(63, bucketOf(62));
+		// 64 to 127 have buckets of width 4
+		assertEquals(67, bucketOf(64));
+		assertEquals(127, bucketOf(127));
+		assertEquals(1024 + 63, bucketOf(1024));
+		assertEquals(1024 + 63, bucketOf(1024 + 63));
+		assertEquals(1024 + 127, bucketOf(1024 + 64));
+	}
+
+	@Test
+	public void testRelativeError() {
+		for (long value = 1; value < 100000; value++) {
+			assertWithinError(value);
+		}
+		for (int bit = 4; bit < 62; bit++) {
+			final long power = 1L << bit;
+			assertWithinError(power - 1);
+			assertWithinError(power);
+			assertWithinError(power + 1);
+		}
+	}
+
+	@Test
+	public void testLargestValue() {
+		final Histogram histogram = new Histogram();
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+		assertEquals(Long.MAX_VALUE, histogram.getMax());
+	}
+
+	@Test
+	public void testNegativeValuesAreIgnored() {
+		final Histogram histogram = new Histogram();
+		histogram.record(-1);
+		assertEquals(0, histogram.getCount());
+	}
+
+	@Test
+	public void testPercentiles() {
+		final Histogram histogram = new Histogram();
+		for (long value = 1; value <= 1000; value++) {
+			histogram.record(value);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getSum());
+		assertEquals(500.5, histogram.getMean(), 0);
+		assertBetween(500, 500 + 500 / 16, histogram.getValueAtPercentile(50));
+		assertBetween(990, 990 + 990 / 16, histogram.getValueAtPercentile(99));
+		assertEquals(1000, histogram.getValueAtPercentile(100));
+		assertEquals(1, histogram.getValueAtPercentile(0));
+	}
+
+	@Test
+	public void testReset() {
+		final Histogram histogram = new Histogram();
+		histogram.record(42);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(100));
+	}
+
+	/**
+	 * @return the highest value of the bucket the given value falls into
+	 */
+	private static long bucketOf(final long value) {
+		final Histogram histogram = new Histogram();
+		histogram.record(value);
+		histogram.record(Long.MAX_VALUE);
+		return histogram.getValueAtPercentile(50);
+	}
+
+	private static void assertWithinError(final long value) {
+		assertBetween(value, value + value / 16, bucketOf(value));
+	}
+
+	private static void assertBetween(final long lowest, final long highest,
+			final long actual) {
+		assertTrue(actual + " < " + lowest, actual >= lowest);
+		assertTrue(actual + " > " + highest, actual <= highest);
+	}
+}
@@ -0,0 +1,109 @@
+package de.prob.core.domainobjects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the chunks of the {@link HistoryStore} and moving them to a
+ * file.
+ */
+public final class HistoryStoreTest {
+	private static final int CHUNK_SIZE = 1024;
+
+	@Test
+	public void testWithoutSpilling() {
+		final HistoryStore store = new HistoryStore(0);
+		final List<HistoryItem> items = fill(store, 3 * CHUNK_SIZE + 5);
+
+		for (int i = 0; i < items.size(); i++) {
+			assertSame(items.get(i), store.get(i));
+		}
+	}
+
+	@Test
+	public void testOldChunksAreSpilled() {
+		final HistoryStore store = new HistoryStore(CHUNK_SIZE);
+		final List<HistoryItem> items = fill(store, 4 * CHUNK_SIZE + 5);
+
+		assertEquals(items.size(), store.size());
+		// the oldest chunks have been read back from the file
+		assertNotSame(items.get(0), store.get(0));
+		assertNotSame(items.get(2 * CHUNK_SIZE), store.get(2 * CHUNK_SIZE));
+		// the most recent items are still in memory
+		assertSame(items.get(items.size() - 1), store.get(items.size() - 1));
+		assertSame(items.get(3 * CHUNK_SIZE), store.get(3 * CHUNK_SIZE));
+		for (int i = 0; i < items.size(); i++) {
+			assertEquals(items.get(i).getStateId(), store.get(i).getStateId());
+		}
+	}
+
+	@Test
+	public void testTruncateIntoSpilledChunks() {
+		final HistoryStore store = new HistoryStore(CHUNK_SIZE);
+		final List<HistoryItem> items = fill(store, 4 * CHUNK_SIZE + 5);
+
+		final int newSize = CHUNK_SIZE + 10;
+		store.truncate(newSize);
+		assertEquals(newSize, store.size());
+		for (int i = 0; i < newSize; i++) {
+			assertEquals(items.get(i).getStateId(), store.get(i).getStateId());
+		}
+
+		// the history grows again and is spilled again
+		final List<HistoryItem> more = fill(store, 4 * CHUNK_SIZE);
+		assertEquals(newSize + more.size(), store.size());
+		for (int i = 0; i < newSize; i++) {
+			assertEquals(items.get(i).getStateId(), store.get(i).getStateId());
+		}
+		for (int i = 0; i < more.size(); i++) {
+			assertEquals(more.get(i).getStateId(), store.get(newSize + i)
+					.getStateId());
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testTruncatedItemsAreGone() {
+		final HistoryStore store = new HistoryStore(CHUNK_SIZE);
+		fill(store, 3 * CHUNK_SIZE);
+		store.truncate(10);
+		store.get(10);
+	}
+
+	@Test
+	public void testClear() {
+		final HistoryStore store = new HistoryStore(CHUNK_SIZE);
+		fill(store, 3 * CHUNK_SIZE);
+		store.clear();
+		assertEquals(0, store.size());
+
+		final List<HistoryItem> items = fill(store, 5);
+		assertSame(items.get(4), store.get(4));
+	}
+
+	private static List<HistoryItem> fill(final HistoryStore store,
+			final int count) {
+		final List<HistoryItem> items = new ArrayList<HistoryItem>(count);
+		for (int i = 0; i < count; i++) {
+			final HistoryItem item = new HistoryItem(createState(String
+					.valueOf(store.size())), null);
+			store.add(item);
+			items.add(item);
+		}
+		return items;
+	}
+
+	private static State createState(final String id) {
+		return new State(id, true, false, false, false,
+				Collections.<Variable> emptyList(),
+				Collections.<Operation> emptyList(),
+				Collections.<StateError> emptyList(),
+				Collections.<String> emptySet());
+	}
+}
@@ -0,0 +1,95 @@
+package de.prob.core.domainobjects;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit test for adding states to the {@link History}.
+ */
+public final class HistoryTest {
+
+	@Test
+	public void testAddAllToEmptyHistory() {
+		final List<State> states = createStates("1", "2", "3");
+		assertSameAsAdd(Collections.<State> emptyList(), states);
+	}
+
+	@Test
+	public void testAddAllAfterCurrentState() {
+		assertSameAsAdd(createStates("1", "2"), createStates("3", "4", "5"));
+	}
+
+	@Test
+	public void testAddNothing() {
+		final History history = new History();
+		final Recorder recorder = new Recorder();
+		history.addListener(recorder);
+		history.addAll(Collections.<State> emptyList(),
+				Collections.<Operation> emptyList());
+		assertEquals(0, history.size());
+		assertEquals(0, recorder.events.size());
+	}
+
+	/**
+	 * Checks that adding the given path with one call of
+	 * {@link History#addAll} results in the same history and notifications
+	 * as adding its states one by one.
+	 */
+	private static void assertSameAsAdd(final List<State> initial,
+			final List<State> path) {
+		final History expected = new History();
+		final History actual = new History();
+		for (final State state : initial) {
+			expected.add(state, null);
+			actual.add(state, null);
+		}
+		final Recorder expectedEvents = new Recorder();
+		final Recorder actualEvents = new Recorder();
+		expected.addListener(expectedEvents);
+		actual.addListener(actualEvents);
+
+		for (final State state : path) {
+			expected.add(state, null);
+		}
+		actual.addAll(path, Arrays.asList(new Operation[path.size()]));
+
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.getCurrentPosition(),
+				actual.getCurrentPosition());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getItemAt(i).getState(), actual.getItemAt(i)
+					.getState());
+		}
+		assertEquals(expectedEvents.events, actualEvents.events);
+	}
+
+	private static List<State> createStates(final String... ids) {
+		final List<State> states = new ArrayList<State>();
+		for (final String id : ids) {
+			states.add(new State(id, true, false, false, false, Collections
+					.<Variable> emptyList(), Collections
+					.<Operation> emptyList(), Collections
+					.<StateError> emptyList(), Collections
+					.<String> emptySet()));
+		}
+		return states;
+	}
+
+	private static final class Recorder implements HistoryListener {
+		private final List<String> events = new ArrayList<String>();
+
+		public void stateEntersHistory(final State state, final int position) {
+			events.add("enter " + state.getId() + "@" + position);
+		}
+
+		public void stateLeavesHistory(final State state, final int position) {
+			events.add("leave " + state.getId() + "@" + position);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package de.prob.core.domainobjects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link StateCache}.
+ */
+public final class StateCacheTest {
+	// the estimated weight of a state without operations and variables
+	private static final long STATE_WEIGHT = 128;
+
+	@Test
+	public void testHitsAndMisses() {
+		final StateCache cache = new StateCache();
+		final State state = createState("1");
+		assertNull(cache.getState("1"));
+		cache.putState(state);
+
+		assertSame(state, cache.getState("1"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0.5, cache.getHitRate(), 0);
+	}
+
+	@Test
+	public void testLazyStateDoesNotReplaceLoadedState() {
+		final StateCache cache = new StateCache();
+		final State loaded = createState("1");
+		cache.putState(loaded);
+		cache.putState(createLazyState("1"));
+		assertSame(loaded, cache.getState("1"));
+
+		final State lazy = createLazyState("2");
+		cache.putState(lazy);
+		final State loadedLater = createState("2");
+		cache.putState(loadedLater);
+		assertSame(loadedLater, cache.getState("2"));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		final StateCache cache = new StateCache(3 * STATE_WEIGHT);
+		cache.putState(createState("1"));
+		cache.putState(createState("2"));
+		cache.putState(createState("3"));
+		assertEquals(3, cache.size());
+		assertEquals(3 * STATE_WEIGHT, cache.getWeight());
+
+		// 1 is used again, so 2 is the least recently used
+		cache.getState("1");
+		cache.putState(createState("4"));
+
+		assertEquals(3, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.getState("2"));
+		assertEquals("1", cache.getState("1").getId());
+		assertEquals("3", cache.getState("3").getId());
+		assertEquals("4", cache.getState("4").getId());
+	}
+
+	@Test
+	public void testMostRecentEntryIsKept() {
+		final StateCache cache = new StateCache(1);
+		cache.putState(createState("1"));
+		cache.putState(createState("2"));
+
+		assertEquals(1, cache.size());
+		assertEquals("2", cache.getState("2").getId());
+	}
+
+	@Test
+	public void testClearStartsNewGeneration() {
+		final StateCache cache = new StateCache();
+		cache.putState(createState("1"));
+		final int generation = cache.getGeneration();
+		cache.clear();
+
+		assertEquals(generation + 1, cache.getGeneration());
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+		assertNull(cache.getState("1"));
+	}
+
+	private static State createState(final String id) {
+		return new State(id, true, false, false, false,
+				Collections.<Variable> emptyList(),
+				Collections.<Operation> emptyList(),
+				Collections.<StateError> emptyList(),
+				Collections.<String> emptySet());
+	}
+
+	private static State createLazyState(final String id) {
+		return new State(id, true, false, false,
+				Collections.<Operation> emptyList(),
+				Collections.<String> emptySet());
+	}
+}
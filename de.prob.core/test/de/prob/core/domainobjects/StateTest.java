@@ -0,0 +1,74 @@
+package de.prob.core.domainobjects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import de.prob.core.Animator;
+import de.prob.exceptions.ProBException;
+
+/**
+ * Unit test for the details of a {@link State}.
+ */
+public final class StateTest {
+
+	@Test
+	public void testInvariantViolated() {
+		final State state = createState("1", true);
+		assertEquals(State.InvariantStatus.VIOLATED,
+				state.getInvariantStatus());
+		assertTrue(state.isInvariantViolated());
+		assertFalse(state.isInvariantPreserved());
+	}
+
+	@Test
+	public void testInvariantPreserved() {
+		final State state = createState("1", false);
+		assertEquals(State.InvariantStatus.PRESERVED,
+				state.getInvariantStatus());
+		assertFalse(state.isInvariantViolated());
+		assertTrue(state.isInvariantPreserved());
+	}
+
+	@Test
+	public void testLazyStateOfEarlierLoad() throws ProBException {
+		final State state = new State("1", true, false, false,
+				Collections.<Operation> emptyList(),
+				Collections.<String> emptySet());
+		// a new machine is loaded, ProB must not be asked for the old id
+		Animator.getAnimator().getStateCache().clear();
+
+		assertFalse(state.loadDetails());
+		assertFalse(state.isDetailsLoaded());
+		assertEquals(State.InvariantStatus.UNKNOWN,
+				state.getInvariantStatus());
+		assertFalse(state.isInvariantViolated());
+		assertFalse(state.isInvariantPreserved());
+		assertTrue(state.getValues().isEmpty());
+		assertTrue(state.getStateBasedErrors().isEmpty());
+	}
+
+	@Test
+	public void testLoadedStateOfEarlierLoad() throws ProBException {
+		final State state = createState("1", true);
+		Animator.getAnimator().getStateCache().clear();
+
+		// the details are known, so they are still available
+		assertTrue(state.loadDetails());
+		assertEquals(State.InvariantStatus.VIOLATED,
+				state.getInvariantStatus());
+	}
+
+	private static State createState(final String id,
+			final boolean invariantKo) {
+		return new State(id, true, invariantKo, false, false,
+				Collections.<Variable> emptyList(),
+				Collections.<Operation> emptyList(),
+				Collections.<StateError> emptyList(),
+				Collections.<String> emptySet());
+	}
+}
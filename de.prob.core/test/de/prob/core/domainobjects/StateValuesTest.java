@@ -0,0 +1,112 @@
+package de.prob.core.domainobjects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.prob.core.command.CommandException;
+import de.prob.prolog.term.CompoundPrologTerm;
+
+/**
+ * Unit test for the delta chains of {@link StateValues}.
+ */
+public final class StateValuesTest {
+
+	@Test
+	public void testUnchangedVariablesAreShared() throws CommandException {
+		final StateValues base = StateValues.create(
+				Arrays.asList(variable("x", "1"), variable("y", "2")), null);
+		final StateValues next = StateValues.create(
+				Arrays.asList(variable("x", "1"), variable("y", "3")), base);
+
+		assertSame(base.get("x"), next.get("x"));
+		assertEquals("3", next.get("y").getValue());
+		assertEquals(2, next.size());
+		assertTrue(next.containsKey("x"));
+		assertEquals(1, next.getChangedVariables().size());
+		assertEquals(Collections.singleton("y"), next.getDifferences(base));
+		assertEquals(Collections.singleton("y"), base.getDifferences(next));
+	}
+
+	@Test
+	public void testEntriesOfDelta() throws CommandException {
+		final StateValues base = StateValues.create(
+				Arrays.asList(variable("x", "1"), variable("y", "2")), null);
+		final StateValues next = StateValues.create(
+				Arrays.asList(variable("x", "1"), variable("y", "3")), base);
+
+		final Map<String, String> values = new HashMap<String, String>();
+		for (final Map.Entry<String, Variable> entry : next.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().getValue());
+		}
+		final Map<String, String> expected = new HashMap<String, String>();
+		expected.put("x", "1");
+		expected.put("y", "3");
+		assertEquals(expected, values);
+	}
+
+	@Test
+	public void testChainIsCopiedAfterMaximalDepth() throws CommandException {
+		final Variable y = variable("y", "0");
+		StateValues values = StateValues.create(
+				Arrays.asList(variable("x", "0"), y), null);
+		// the first 8 deltas only store the changed variable
+		for (int i = 1; i <= 8; i++) {
+			values = StateValues.create(
+					Arrays.asList(variable("x", String.valueOf(i)), y), values);
+			assertEquals(1, values.getChangedVariables().size());
+		}
+		// the next one is a full copy, that still shares the variables
+		values = StateValues.create(Arrays.asList(variable("x", "9"), y),
+				values);
+		assertEquals(2, values.getChangedVariables().size());
+		assertSame(y, values.get("y"));
+		// and the chain starts again
+		values = StateValues.create(Arrays.asList(variable("x", "10"), y),
+				values);
+		assertEquals(1, values.getChangedVariables().size());
+		assertEquals("10", values.get("x").getValue());
+	}
+
+	@Test
+	public void testOtherIdentifiers() throws CommandException {
+		final StateValues base = StateValues.create(
+				Arrays.asList(variable("x", "1")), null);
+		final StateValues next = StateValues.create(
+				Arrays.asList(variable("x", "1"), variable("z", "2")), base);
+
+		// a delta cannot add variables, so all are stored
+		assertEquals(2, next.getChangedVariables().size());
+		assertSame(base.get("x"), next.get("x"));
+		assertEquals(Collections.singleton("z"), next.getDifferences(base));
+	}
+
+	@Test
+	public void testDifferencesOfUnrelatedValues() throws CommandException {
+		final StateValues a = StateValues.create(
+				Arrays.asList(variable("x", "1"), variable("y", "2")), null);
+		final StateValues b = StateValues.create(
+				Arrays.asList(variable("x", "1"), variable("y", "3"),
+						variable("z", "4")), null);
+
+		assertEquals(new HashSet<String>(Arrays.asList("y", "z")),
+				a.getDifferences(b));
+		assertEquals(a.keySet(), a.getDifferences(null));
+		assertTrue(a.getDifferences(a).isEmpty());
+	}
+
+	private static Variable variable(final String identifier,
+			final String value) throws CommandException {
+		return new Variable(new CompoundPrologTerm("binding",
+				new CompoundPrologTerm(identifier), new CompoundPrologTerm(
+						value), new CompoundPrologTerm(value)));
+	}
+}
@@ -0,0 +1,101 @@
+package de.prob.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.prob.core.command.ICacheableCommand;
+import de.prob.core.command.IComposableCommand;
+import de.prob.exceptions.ProBException;
+import de.prob.parser.ISimplifiedROMap;
+import de.prob.prolog.output.IPrologTermOutput;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Unit test for the remembered answers of {@link ICacheableCommand}s in the
+ * {@link AnimatorImpl}.
+ */
+public final class AnimatorImplTest {
+	private final RecordingConnection connection = new RecordingConnection();
+	private final AnimatorImpl animator = new AnimatorImpl(connection, null);
+
+	@Test
+	public void testAnswerIsRemembered() throws ProBException {
+		animator.execute(new CacheableQuery("a"));
+		assertEquals(1, connection.getQueries().size());
+
+		final CacheableQuery again = new CacheableQuery("a");
+		assertTrue(animator.answerFromCache(again));
+		assertEquals(1, again.processed);
+		assertEquals(1, connection.getQueries().size());
+	}
+
+	@Test
+	public void testOtherQueryIsNotAnswered() throws ProBException {
+		animator.execute(new CacheableQuery("a"));
+
+		final CacheableQuery other = new CacheableQuery("b");
+		assertFalse(animator.answerFromCache(other));
+		assertEquals(0, other.processed);
+	}
+
+	@Test
+	public void testOtherCommandsAreNotRemembered() throws ProBException {
+		animator.execute(new Query("a"));
+
+		assertFalse(animator.answerFromCache(new Query("a")));
+	}
+
+	@Test
+	public void testClearResultCache() throws ProBException {
+		animator.execute(new CacheableQuery("a"));
+		animator.clearResultCache();
+
+		assertFalse(animator.answerFromCache(new CacheableQuery("a")));
+	}
+
+	@Test
+	public void testPipelinedCommandsAreAnsweredFromCache()
+			throws ProBException {
+		animator.execute(new CacheableQuery("a"));
+
+		final CacheableQuery cached = new CacheableQuery("a");
+		final CacheableQuery other = new CacheableQuery("b");
+		animator.executePipelined(Arrays.asList(cached, other));
+
+		assertEquals(1, cached.processed);
+		assertEquals(1, other.processed);
+		assertEquals(2, connection.getQueries().size());
+		assertTrue(connection.getQueries().get(1).startsWith("query(b"));
+	}
+
+	private static class Query implements IComposableCommand {
+		private final String name;
+		int processed = 0;
+
+		public Query(final String name) {
+			this.name = name;
+		}
+
+		public void writeCommand(final IPrologTermOutput pto) {
+			pto.openTerm("query").printAtom(name).printVariable("Result")
+					.closeTerm();
+		}
+
+		public void processResult(
+				final ISimplifiedROMap<String, PrologTerm> bindings) {
+			processed++;
+		}
+	}
+
+	private static final class CacheableQuery extends Query implements
+			ICacheableCommand {
+		public CacheableQuery(final String name) {
+			super(name);
+		}
+	}
+}
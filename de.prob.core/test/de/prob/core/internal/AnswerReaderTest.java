@@ -0,0 +1,133 @@
+package de.prob.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the {@link AnswerReader}.
+ */
+public final class AnswerReaderTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void testAnswersInOneChunk() throws IOException {
+		final AnswerReader reader = reader("yes(a)\n\u0001  no \r\n\u0001");
+		assertEquals("yes(a)", reader.readAnswer());
+		assertEquals(8, reader.getLastAnswerSize());
+		assertEquals("no", reader.readAnswer());
+		assertNull(reader.readAnswer());
+	}
+
+	@Test
+	public void testAnswerInSeveralChunks() throws IOException {
+		// a multi-byte character is split between two reads
+		final byte[] bytes = "yes('äö')\u0001".getBytes(UTF8);
+		final AnswerReader reader = new AnswerReader(new ChunkedStream(bytes,
+				6), UTF8);
+		assertEquals("yes('äö')", reader.readAnswer());
+	}
+
+	@Test
+	public void testLargeAnswer() throws IOException {
+		final char[] chars = new char[3 * 1024 * 1024];
+		Arrays.fill(chars, 'x');
+		final String large = new String(chars);
+		final AnswerReader reader = reader(large + "\u0001yes\u0001");
+		assertEquals(large, reader.readAnswer());
+		assertEquals("yes", reader.readAnswer());
+	}
+
+	@Test
+	public void testMissingMarker() throws IOException {
+		final AnswerReader reader = reader("yes");
+		assertEquals("yes", reader.readAnswer());
+		assertNull(reader.readAnswer());
+	}
+
+	@Test
+	public void testStreamedAnswers() throws IOException {
+		final AnswerReader reader = reader("yes(a)\n\u0001  no \r\n\u0001");
+		assertEquals("yes(a)\n", readFully(reader.openAnswer()));
+		assertEquals(8, reader.getLastAnswerSize());
+		assertEquals("  no \r\n", readFully(reader.openAnswer()));
+		assertNull(reader.openAnswer());
+	}
+
+	@Test
+	public void testStreamedAnswerInSeveralChunks() throws IOException {
+		final byte[] bytes = "yes('äö')\u0001no\u0001".getBytes(UTF8);
+		final AnswerReader reader = new AnswerReader(new ChunkedStream(bytes,
+				3), UTF8);
+		assertEquals("yes('äö')", readFully(reader.openAnswer()));
+		assertEquals("no", reader.readAnswer());
+	}
+
+	@Test
+	public void testClosingSkipsRestOfAnswer() throws IOException {
+		final byte[] bytes = "yes(abcdefgh)\u0001no\u0001".getBytes(UTF8);
+		final AnswerReader reader = new AnswerReader(new ChunkedStream(bytes,
+				4), UTF8);
+		final InputStream answer = reader.openAnswer();
+		assertEquals('y', answer.read());
+		answer.close();
+		assertEquals(-1, answer.read());
+		assertEquals(14, reader.getLastAnswerSize());
+		assertEquals("no", reader.readAnswer());
+	}
+
+	private static String readFully(final InputStream stream)
+			throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[5];
+		int count = stream.read(buffer);
+		while (count >= 0) {
+			bytes.write(buffer, 0, count);
+			count = stream.read(buffer);
+		}
+		return new String(bytes.toByteArray(), UTF8);
+	}
+
+	private static AnswerReader reader(final String input) {
+		return new AnswerReader(new ByteArrayInputStream(input.getBytes(UTF8)),
+				UTF8);
+	}
+
+	/**
+	 * Returns at most a given number of bytes per read, like a socket.
+	 */
+	private static final class ChunkedStream extends InputStream {
+		private final byte[] bytes;
+		private final int chunkSize;
+		private int position;
+
+		public ChunkedStream(final byte[] bytes, final int chunkSize) {
+			this.bytes = bytes;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public int read() {
+			return position < bytes.length ? bytes[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (position >= bytes.length)
+				return -1;
+			final int count = Math.min(Math.min(len, chunkSize), bytes.length
+					- position);
+			System.arraycopy(bytes, position, b, off, count);
+			position += count;
+			return count;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package de.prob.core.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.prob.core.CommandPriority;
+
+/**
+ * Unit test for the {@link CommandQueue}.
+ */
+public final class CommandQueueTest {
+	private final CommandQueue queue = new CommandQueue();
+
+	@Test(timeout = 10000)
+	public void testNestedTicketRunsRightAway() {
+		final CommandQueue.Ticket outer = queue.enqueue(
+				CommandPriority.NORMAL, Long.MAX_VALUE);
+		assertTrue(queue.awaitUninterruptibly(outer));
+		assertTrue(queue.isHeldByCurrentThread());
+
+		final CommandQueue.Ticket nested = queue.enqueue(
+				CommandPriority.BACKGROUND, Long.MAX_VALUE);
+		assertTrue(queue.awaitUninterruptibly(nested));
+		queue.release(nested);
+		// releasing the nested ticket does not release the outer one
+		assertTrue(queue.isHeldByCurrentThread());
+
+		queue.release(outer);
+		assertFalse(queue.isHeldByCurrentThread());
+	}
+
+	@Test(timeout = 10000)
+	public void testOtherThreadsWaitForOwner() throws InterruptedException {
+		final CommandQueue.Ticket outer = queue.enqueue(
+				CommandPriority.NORMAL, Long.MAX_VALUE);
+		assertTrue(queue.awaitUninterruptibly(outer));
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final Thread other = new Thread() {
+			@Override
+			public void run() {
+				final CommandQueue.Ticket ticket = queue.enqueue(
+						CommandPriority.INTERACTIVE, Long.MAX_VALUE);
+				queue.awaitUninterruptibly(ticket);
+				started.countDown();
+				queue.release(ticket);
+			}
+		};
+		other.start();
+		assertFalse(started.await(200, TimeUnit.MILLISECONDS));
+
+		final CommandQueue.Ticket nested = queue.enqueue(
+				CommandPriority.NORMAL, Long.MAX_VALUE);
+		assertTrue(queue.awaitUninterruptibly(nested));
+		queue.release(nested);
+		assertFalse(started.await(200, TimeUnit.MILLISECONDS));
+
+		queue.release(outer);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		other.join();
+	}
+}
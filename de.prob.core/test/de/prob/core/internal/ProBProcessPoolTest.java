@@ -0,0 +1,161 @@
+package de.prob.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.prob.core.IServerConnection;
+import de.prob.core.command.IComposableCommand;
+import de.prob.core.command.INonReplayableCommand;
+import de.prob.core.command.IReadOnlyCommand;
+import de.prob.exceptions.ProBException;
+import de.prob.parser.ISimplifiedROMap;
+import de.prob.prolog.output.IPrologTermOutput;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Unit test for the {@link ProBProcessPool}.
+ */
+public final class ProBProcessPoolTest {
+	private final List<RecordingConnection> workerConnections = Collections
+			.synchronizedList(new ArrayList<RecordingConnection>());
+	private ProBProcessPool pool;
+	private AnimatorImpl primary;
+
+	@Before
+	public void setUp() throws InterruptedException {
+		pool = new ProBProcessPool(null, 1,
+				new ProBProcessPool.ConnectionFactory() {
+					public IServerConnection createConnection() {
+						final RecordingConnection connection = new RecordingConnection();
+						workerConnections.add(connection);
+						return connection;
+					}
+				});
+		pool.startWorkers().join();
+		primary = new AnimatorImpl(new RecordingConnection(), null, pool);
+	}
+
+	@Test
+	public void testWorkerAnswersAfterLoad() throws ProBException {
+		primary.execute(new Query("before"));
+		primary.execute(new LoadQuery());
+		primary.execute(new Query("after"));
+
+		assertTrue(pool.execute(new ReadQuery()));
+		final List<String> queries = workerConnections.get(0).getQueries();
+		assertEquals(3, queries.size());
+		assertTrue(queries.get(0).startsWith("load"));
+		assertTrue(queries.get(1).startsWith("after"));
+		assertTrue(queries.get(2).startsWith("read"));
+	}
+
+	@Test
+	public void testReadOnlyCommandsAreNotReplicated() throws ProBException {
+		primary.execute(new LoadQuery());
+		primary.execute(new ReadQuery());
+
+		assertEquals(1, pool.getLogSize());
+	}
+
+	@Test
+	public void testReplayedQueriesAreDiscarded() throws ProBException {
+		primary.execute(new LoadQuery());
+		for (int i = 0; i < 10; i++) {
+			primary.execute(new Query("a" + i));
+		}
+		assertTrue(pool.execute(new ReadQuery()));
+		for (int i = 0; i < 300; i++) {
+			primary.execute(new Query("b" + i));
+		}
+		// the load and the first ten queries are not needed anymore
+		assertEquals(300, pool.getLogSize());
+
+		assertTrue(pool.execute(new ReadQuery()));
+		final List<String> queries = workerConnections.get(0).getQueries();
+		assertEquals(1 + 10 + 1 + 300 + 1, queries.size());
+		assertTrue(queries.get(311).startsWith("b299"));
+	}
+
+	@Test
+	public void testLaggingWorkerIsNotUsed() throws ProBException {
+		primary.execute(new LoadQuery());
+		for (int i = 0; i < 5000; i++) {
+			primary.execute(new Query("a" + i));
+		}
+		assertTrue(pool.getLogSize() < 5000);
+		assertFalse(pool.execute(new ReadQuery()));
+		assertTrue(workerConnections.get(0).getQueries().isEmpty());
+
+		// the next load makes the worker usable again
+		primary.execute(new LoadQuery());
+		assertTrue(pool.execute(new ReadQuery()));
+	}
+
+	@Test
+	public void testNoWorkerIsUsedAfterModelChecking() throws ProBException {
+		primary.execute(new LoadQuery());
+		assertTrue(primary.executeOnWorker(new ReadQuery()));
+
+		primary.execute(new ModelCheckingQuery());
+		primary.execute(new Query("after"));
+		// the worker would answer about other states than the primary process
+		assertFalse(primary.executeOnWorker(new ReadQuery()));
+		assertEquals(0, pool.getLogSize());
+		final List<String> queries = workerConnections.get(0).getQueries();
+		assertEquals(2, queries.size());
+
+		// the next load makes the worker usable again
+		primary.execute(new LoadQuery());
+		assertTrue(primary.executeOnWorker(new ReadQuery()));
+	}
+
+	private static class Query implements IComposableCommand {
+		private final String name;
+
+		public Query(final String name) {
+			this.name = name;
+		}
+
+		public void writeCommand(final IPrologTermOutput pto) {
+			pto.printAtom(name);
+		}
+
+		public void processResult(
+				final ISimplifiedROMap<String, PrologTerm> bindings) {
+		}
+	}
+
+	private final class LoadQuery extends Query {
+		public LoadQuery() {
+			super("load");
+		}
+
+		@Override
+		public void processResult(
+				final ISimplifiedROMap<String, PrologTerm> bindings) {
+			primary.resetWorkers();
+		}
+	}
+
+	private static final class ModelCheckingQuery extends Query implements
+			INonReplayableCommand {
+		public ModelCheckingQuery() {
+			super("modelcheck");
+		}
+	}
+
+	private static final class ReadQuery extends Query implements
+			IReadOnlyCommand {
+		public ReadQuery() {
+			super("read");
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package de.prob.core.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.prob.cli.CliException;
+import de.prob.core.IServerConnection;
+
+/**
+ * A connection for unit tests that does not start ProB. It records the queries
+ * and answers each one by binding all its variables to the empty list.
+ */
+public final class RecordingConnection implements IServerConnection {
+	private static final Pattern VARIABLE = Pattern
+			.compile("\\b[A-Z_][A-Za-z0-9_]*");
+
+	private final List<String> queries = new ArrayList<String>();
+
+	/**
+	 * @return the queries that have been sent so far
+	 */
+	public List<String> getQueries() {
+		return queries;
+	}
+
+	public String sendCommand(final String query) {
+		queries.add(query);
+		final Set<String> variables = new LinkedHashSet<String>();
+		final Matcher matcher = VARIABLE.matcher(query);
+		while (matcher.find()) {
+			variables.add(matcher.group());
+		}
+		final StringBuilder answer = new StringBuilder("yes(");
+		for (final String variable : variables) {
+			answer.append("'.'('='('").append(variable).append("',[]),");
+		}
+		answer.append("[]");
+		for (int i = 0; i < variables.size(); i++) {
+			answer.append(')');
+		}
+		return answer.append(')').toString();
+	}
+
+	public int getCliPortNumber() {
+		return 0;
+	}
+
+	public void startup(final File file) throws CliException {
+	}
+
+	public void shutdown() {
+	}
+
+	public String getDebuggingKey() {
+		return null;
+	}
+
+	public void sendUserInterruptSignal() {
+	}
+}
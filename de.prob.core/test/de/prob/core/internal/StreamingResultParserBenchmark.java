@@ -0,0 +1,66 @@
+package de.prob.core.internal;
+
+import java.util.Map;
+
+import de.prob.parser.BindingGenerator;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Compares the time needed by the {@link StreamingResultParser} and the SableCC
+ * based {@link ProBResultParser} to create the bindings of a large answer.
+ * This is not a unit test, run it as a Java application.
+ */
+public final class StreamingResultParserBenchmark {
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	public static void main(final String[] args) throws Exception {
+		final int size = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		final String answer = createAnswer(size);
+		System.out.println("answer with " + size + " values, "
+				+ answer.length() + " characters");
+		for (int i = 0; i < WARMUP; i++) {
+			parseSableCC(answer);
+			parseStreaming(answer);
+		}
+		long sablecc = 0;
+		long streaming = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			parseSableCC(answer);
+			sablecc += System.nanoTime() - start;
+			start = System.nanoTime();
+			parseStreaming(answer);
+			streaming += System.nanoTime() - start;
+		}
+		System.out.printf("SableCC:   %8.2f ms%n", sablecc / 1e6 / RUNS);
+		System.out.printf("streaming: %8.2f ms%n", streaming / 1e6 / RUNS);
+	}
+
+	private static Map<String, PrologTerm> parseSableCC(final String answer)
+			throws Exception {
+		return BindingGenerator.createBindingMustNotFail("query.",
+				ProBResultParser.parse(answer));
+	}
+
+	private static Map<String, PrologTerm> parseStreaming(final String answer)
+			throws Exception {
+		return StreamingResultParser.parseBindings("query.", answer);
+	}
+
+	/**
+	 * @return an answer like the one of a state with many variables
+	 */
+	private static String createAnswer(final int size) {
+		final StringBuilder list = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			list.append("'.'(binding('var").append(i).append("',int(")
+					.append(i).append("),'").append(i).append("'),");
+		}
+		list.append("[]");
+		for (int i = 0; i < size; i++) {
+			list.append(')');
+		}
+		return "yes('.'('='('Values'," + list + "),[]))";
+	}
+}
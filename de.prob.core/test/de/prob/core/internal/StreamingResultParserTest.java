@@ -0,0 +1,175 @@
+package de.prob.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.prob.parser.BindingGenerator;
+import de.prob.parser.ResultParserException;
+import de.prob.prolog.term.CompoundPrologTerm;
+import de.prob.prolog.term.ListPrologTerm;
+import de.prob.prolog.term.PrologTerm;
+
+/**
+ * Unit test for the {@link StreamingResultParser}. The bindings are compared
+ * with the ones created by the SableCC based {@link ProBResultParser} and the
+ * {@link BindingGenerator}.
+ */
+public final class StreamingResultParserTest {
+
+	@Test
+	public void testAtomsAndNumbers() throws Exception {
+		assertSameBindings("yes('.'('='('X',a),'.'('='('Y',42),'.'('='('Z',-7),[]))))");
+		assertSameBindings("yes('.'('='('Big',123456789012345678901234567890),[]))");
+	}
+
+	@Test
+	public void testEmptyBindings() throws Exception {
+		assertSameBindings("yes([])");
+	}
+
+	@Test
+	public void testLists() throws Exception {
+		assertSameBindings("yes('.'('='('L','.'(1,'.'(2,'.'(3,[])))),'.'('='('E',[]),[])))");
+		// a list without [] at the end is not converted
+		assertSameBindings("yes('.'('='('P','.'(1,'T')),[]))");
+		assertSameBindings("yes('.'('='('P','.'(1,'.'(2,x))),[]))");
+		// '.' terms with another arity
+		assertSameBindings("yes('.'('='('D','.'(1)),[]))");
+		assertSameBindings("yes('.'('='('D','.'(1,'.'(2,[]),3)),[]))");
+	}
+
+	@Test
+	public void testNestedTerms() throws Exception {
+		assertSameBindings("yes('.'('='('S',state(root,f(g(h(1,[]),'A b'),_G12),'.'(x,[]))),[]))");
+		assertSameBindings("yes('.'('='('Ops','.'(op('1',setup,'.'(a,'.'(b,[])),[]),'.'(op('2',run,[],[]),[]))),[]))");
+	}
+
+	@Test
+	public void testQuotedAtoms() throws Exception {
+		assertSameBindings("yes('.'('='('Q','hello world'),'.'('='('R','it\\'s'),[])))");
+		assertSameBindings("yes('.'('='('E','a\\nb\\tc\\\\d'),[]))");
+		assertSameBindings("yes('.'('='('U','\\x41\\'),[]))");
+		assertSameBindings("yes('.'('='('S','+'),'.'('='('T',=..),[])))");
+	}
+
+	@Test
+	public void testUnicode() throws Exception {
+		assertSameBindings("yes('.'('='('X','∀x·x∈ℕ'),[]))");
+	}
+
+	@Test
+	public void testWhitespace() throws Exception {
+		// ProB does not send white space within terms, the SableCC parser
+		// does not accept it
+		assertEquals(
+				StreamingResultParser.parseBindings("query.",
+						"yes('.'('='('X',f(a,b)),[]))"),
+				StreamingResultParser.parseBindings("query.",
+						"yes( '.'( '='( 'X' , f( a , b ) ) , [] ) )"));
+	}
+
+	@Test
+	public void testLargeAnswer() throws Exception {
+		final StringBuilder list = new StringBuilder();
+		final int size = 100000;
+		for (int i = 0; i < size; i++) {
+			list.append("'.'(v(").append(i).append(",'x").append(i)
+					.append("'),");
+		}
+		list.append("[]");
+		for (int i = 0; i < size; i++) {
+			list.append(')');
+		}
+		final String answer = "yes('.'('='('L'," + list + "),[]))";
+		final Map<String, PrologTerm> bindings = assertSameBindings(answer);
+		assertEquals(size, ((ListPrologTerm) bindings.get("L")).size());
+	}
+
+	@Test
+	public void testNoAndException() throws Exception {
+		assertNull(StreamingResultParser.parseTerm("no"));
+		try {
+			StreamingResultParser.parseTerm("exception(foo)");
+			fail("exception expected");
+		} catch (ResultParserException e) {
+			assertTrue(e.getMessage().contains("(foo)"));
+		}
+		try {
+			StreamingResultParser.parseBindings("query.", "no");
+			fail("exception expected");
+		} catch (ResultParserException e) {
+			assertTrue(e.getMessage().contains("query."));
+		}
+	}
+
+	@Test
+	public void testSyntaxErrors() throws Exception {
+		assertError("yes(");
+		assertError("yes(f(a)");
+		assertError("yes('abc)");
+		assertError("yes(a) trailing");
+		assertError("maybe(a)");
+	}
+
+	@Test
+	public void testParseFromAnswerStream() throws Exception {
+		final Charset utf8 = Charset.forName("UTF-8");
+		final String first = "yes('.'('='('X','∀x·x∈ℕ'),[]))";
+		final String second = "yes('.'('='('Y',42),[]))";
+		final AnswerReader reader = new AnswerReader(new ByteArrayInputStream(
+				(first + "\n\u0001yes(broken\u0001" + second + "\u0001")
+						.getBytes(utf8)), utf8);
+
+		assertEquals(StreamingResultParser.parseBindings("query.", first),
+				StreamingResultParser.parseBindings("query.",
+						reader.openAnswer(), utf8));
+		final InputStream broken = reader.openAnswer();
+		try {
+			StreamingResultParser.parseBindings("query.", broken, utf8);
+			fail("exception expected");
+		} catch (ResultParserException e) {
+			broken.close();
+		}
+		assertEquals(StreamingResultParser.parseBindings("query.", second),
+				StreamingResultParser.parseBindings("query.",
+						reader.openAnswer(), utf8));
+	}
+
+	@Test
+	public void testParseTerm() throws Exception {
+		final PrologTerm term = StreamingResultParser.parseTerm("yes(f(a,1))");
+		assertTrue(term.hasFunctor("f", 2));
+		assertEquals("a",
+				((CompoundPrologTerm) ((CompoundPrologTerm) term)
+						.getArgument(1)).getFunctor());
+	}
+
+	private static Map<String, PrologTerm> assertSameBindings(
+			final String answer) throws Exception {
+		final Map<String, PrologTerm> expected = BindingGenerator
+				.createBindingMustNotFail("query.",
+						ProBResultParser.parse(answer));
+		final Map<String, PrologTerm> actual = StreamingResultParser
+				.parseBindings("query.", answer);
+		assertEquals(expected, actual);
+		return actual;
+	}
+
+	private static void assertError(final String answer) {
+		try {
+			StreamingResultParser.parseTerm(answer);
+			fail("syntax error expected for " + answer);
+		} catch (ResultParserException e) {
+			// expected
+		}
+	}
+}
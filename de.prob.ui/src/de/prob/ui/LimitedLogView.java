@@ -5,12 +5,15 @@ package de.prob.ui;
 
 import org.eclipse.jface.viewers.*;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.SashForm;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.ui.part.ViewPart;
 
+import de.prob.core.CommandMetrics;
+import de.prob.core.CommandMetrics.Metric;
 import de.prob.core.LimitedLogger;
 import de.prob.core.LimitedLogger.LogEntry;
 
@@ -18,14 +21,22 @@ import de.prob.core.LimitedLogger.LogEntry;
  * This view shows the content of the {@link LimitedLogger} and allows the user
  * to see durations between events easily.
  * 
+ * Below the log, a summary of the {@link CommandMetrics} shows for each
+ * command how often it has been executed and the median and 99th percentile
+ * of its metrics, the commands that took the most time first.
+ * 
  * @author plagge
  * 
  */
 public class LimitedLogView extends ViewPart implements
 		LimitedLogger.LogListener {
 
+	/** the time in milliseconds between two updates of the metrics */
+	private static final int METRICS_REFRESH_INTERVAL = 2000;
+
 	private LimitedLogger logger;
 	private TableViewer viewer;
+	private TableViewer metricsViewer;
 	private Long offset;
 
 	public LimitedLogView() {
@@ -35,9 +46,15 @@ public class LimitedLogView extends ViewPart implements
 	public void createPartControl(Composite parent) {
 		this.logger = LimitedLogger.getLogger();
 		this.logger.registerListener(this);
-		createViewer(parent);
+		final SashForm sashForm = new SashForm(parent, SWT.VERTICAL
+				| SWT.SMOOTH);
+		createViewer(sashForm);
+		createMetricsViewer(sashForm);
+		sashForm.setWeights(new int[] { 2, 1 });
 		updateLoggingStart();
 		viewer.setInput(logger);
+		metricsViewer.setInput(CommandMetrics.getMetrics());
+		refreshMetricsPeriodically();
 	}
 
 	private void createViewer(Composite parent) {
@@ -48,6 +65,24 @@ public class LimitedLogView extends ViewPart implements
 		viewer.setLabelProvider(new LogLabelProvider());
 	}
 
+	private void createMetricsViewer(Composite parent) {
+		metricsViewer = new TableViewer(parent, SWT.MULTI | SWT.H_SCROLL
+				| SWT.V_SCROLL | SWT.FULL_SELECTION);
+		createColumn(metricsViewer, SWT.LEFT, "Command", 200);
+		createColumn(metricsViewer, SWT.RIGHT, "Calls", 50);
+		createColumn(metricsViewer, SWT.RIGHT, "Failed", 50);
+		createColumn(metricsViewer, SWT.RIGHT, "Total ms", 70);
+		for (Metric metric : Metric.values()) {
+			createColumn(metricsViewer, SWT.RIGHT, metric.getLabel()
+					+ (metric.isTime() ? " ms" : " B") + " p50/p99", 120);
+		}
+		final Table table = metricsViewer.getTable();
+		table.setHeaderVisible(true);
+		table.setLinesVisible(true);
+		metricsViewer.setContentProvider(new MetricsContentProvider());
+		metricsViewer.setLabelProvider(new MetricsLabelProvider());
+	}
+
 	private void createColumns(TableViewer viewer) {
 		createColumn(viewer, SWT.RIGHT, "Time", 50);
 		createColumn(viewer, SWT.LEFT, "Category", 100);
@@ -96,7 +131,28 @@ public class LimitedLogView extends ViewPart implements
 	private void asyncRefresh() {
 		Display.getDefault().asyncExec(new Runnable() {
 			public void run() {
-				viewer.refresh();
+				if (!viewer.getTable().isDisposed()) {
+					viewer.refresh();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Refreshes the metrics until the view is closed. The metrics are
+	 * recorded for every command, refreshing the table each time would cost
+	 * more than the commands.
+	 */
+	private void refreshMetricsPeriodically() {
+		final Display display = metricsViewer.getTable().getDisplay();
+		display.timerExec(METRICS_REFRESH_INTERVAL, new Runnable() {
+			public void run() {
+				if (!metricsViewer.getTable().isDisposed()) {
+					if (CommandMetrics.getMetrics().isEnabled()) {
+						metricsViewer.refresh();
+					}
+					display.timerExec(METRICS_REFRESH_INTERVAL, this);
+				}
 			}
 		});
 	}
@@ -120,6 +176,60 @@ public class LimitedLogView extends ViewPart implements
 		}
 	}
 
+	private static class MetricsContentProvider implements
+			IStructuredContentProvider {
+
+		public Object[] getElements(Object object) {
+			if (object instanceof CommandMetrics) {
+				return ((CommandMetrics) object).getEntries().toArray();
+			} else {
+				return null;
+			}
+		}
+
+		public void dispose() {
+		}
+
+		public void inputChanged(Viewer viewer, Object arg1, Object arg2) {
+		}
+	}
+
+	private static class MetricsLabelProvider extends LabelProvider implements
+			ITableLabelProvider {
+
+		private static final Metric[] METRICS = Metric.values();
+
+		public Image getColumnImage(Object object, int column) {
+			return null;
+		}
+
+		public String getColumnText(Object object, int column) {
+			if (!(object instanceof CommandMetrics.Entry))
+				return null;
+			final CommandMetrics.Entry entry = (CommandMetrics.Entry) object;
+			switch (column) {
+			case 0:
+				return entry.getName();
+			case 1:
+				return String.format("%,d", entry.getCount());
+			case 2:
+				return String.format("%,d", entry.getFailures());
+			case 3:
+				return CommandMetrics.formatTime(entry.getTotalTime());
+			default:
+				final int index = column - 4;
+				if (index >= METRICS.length)
+					return null;
+				final Metric metric = METRICS[index];
+				return CommandMetrics.format(metric, entry
+						.getHistogram(metric).getValueAtPercentile(50))
+						+ " / "
+						+ CommandMetrics.format(metric, entry.getHistogram(
+								metric).getValueAtPercentile(99));
+			}
+		}
+	}
+
 	private class LogViewerDoubleClick implements IDoubleClickListener {
 		public void doubleClick(DoubleClickEvent event) {
 			ISelection selection = event.getSelection();
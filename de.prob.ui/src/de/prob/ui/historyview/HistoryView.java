@@ -3,15 +3,22 @@
  */
 package de.prob.ui.historyview;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.layout.TableColumnLayout;
 import org.eclipse.jface.viewers.ColumnWeightData;
 import org.eclipse.jface.viewers.DoubleClickEvent;
 import org.eclipse.jface.viewers.IDoubleClickListener;
-import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.ILazyContentProvider;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.TableViewerColumn;
@@ -33,8 +40,11 @@ import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 
 import de.prob.core.Animator;
+import de.prob.core.command.EvaluationGetValuesCommand;
+import de.prob.core.domainobjects.EvaluationElement;
 import de.prob.core.domainobjects.History;
 import de.prob.core.domainobjects.HistoryItem;
+import de.prob.core.domainobjects.HistoryListener;
 import de.prob.core.domainobjects.MachineDescription;
 import de.prob.core.domainobjects.Operation;
 import de.prob.core.domainobjects.State;
@@ -42,12 +52,21 @@ import de.prob.exceptions.ProBException;
 import de.prob.logging.Logger;
 import de.prob.ui.StateBasedViewPart;
 import de.prob.ui.dnd.StaticStateElementTransfer;
+import de.prob.ui.stateview.statetree.StateTreeExpression;
 import de.prob.ui.stateview.statetree.StaticStateElement;
 
 /**
  * The history view shows the current history of the animator. This includes the
  * name of executed events and optional expressions on the state.
  * 
+ * The table is virtual, only the visible rows are materialised. The items of
+ * a row are fetched from the history by their position when the row becomes
+ * visible, the view keeps no copy of the history. The newest state is shown in
+ * the first row, so new states are inserted as rows on top and the rows of
+ * states that left the history are removed from the top. The values of the
+ * expression columns are fetched by a job for all rows around the visible
+ * ones, a row is filled when its values are there.
+ * 
  * @author plagge
  */
 public class HistoryView extends StateBasedViewPart {
@@ -55,14 +74,40 @@ public class HistoryView extends StateBasedViewPart {
 
 	private TableViewer tableViewer;
 
+	private final HistoryListener historyListener = new HistoryChangeRecorder();
+	private final ActivePosition active = new ActivePosition();
+	private final List<EvaluationElement> expressionColumns = new ArrayList<EvaluationElement>();
+	private volatile History history;
+	/**
+	 * the lowest position in the history that has changed since the rows have
+	 * been updated, written by the thread that modifies the history
+	 */
+	private final AtomicInteger firstChangedPosition = new AtomicInteger(
+			Integer.MAX_VALUE);
+
+	// the following fields are only used by the UI thread
+	/** the number of rows the table currently has */
+	private int rowCount;
+	/**
+	 * the positions whose values have been prefetched, from inclusive, to
+	 * exclusive
+	 */
+	private int prefetchedFrom, prefetchedTo;
+	/** the positions whose values are being prefetched by a job */
+	private int pendingFrom, pendingTo;
+	/** incremented when the prefetched values do not match the rows anymore */
+	private int prefetchGeneration;
+
 	@Override
 	protected Control createStatePartControl(final Composite parent) {
 		Composite tableComposite = new Composite(parent, SWT.NONE);
-		tableViewer = new TableViewer(tableComposite, SWT.NONE);
+		tableViewer = new TableViewer(tableComposite, SWT.VIRTUAL);
 		tableViewer.setContentProvider(new HistContentProvider());
 		// tableViewer.setLabelProvider(new HistoryLabelProviderOld());
 		tableViewer.addDoubleClickListener(new HistDoubleClickListener());
 		createColumns(tableComposite);
+		// the content provider reads the rows from the history
+		tableViewer.setInput(active);
 		final Table table = tableViewer.getTable();
 		table.setHeaderVisible(true);
 		table.setLinesVisible(true);
@@ -153,10 +198,16 @@ public class HistoryView extends StateBasedViewPart {
 				for (final StaticStateElement element : elements) {
 					createColumn(layout, element.getLabel(),
 							new HistoryElementLabelProvider(element), false);
+					if (element instanceof StateTreeExpression) {
+						expressionColumns.add(((StateTreeExpression) element)
+								.getStaticElement());
+					}
 				}
 				parent.layout();
 				parent.redraw();
-				tableViewer.refresh();
+				// the new columns need the values of all rows
+				invalidatePrefetched();
+				tableViewer.getTable().clearAll();
 			}
 		};
 		Display.getDefault().asyncExec(update);
@@ -205,56 +256,183 @@ public class HistoryView extends StateBasedViewPart {
 	@Override
 	protected void stateChanged(final State currentState,
 			final Operation operation) {
-		final Animator animator = Animator.getAnimator();
-		final History history = animator.getHistory();
-		final HistoryItem[] items = history.getAllItems();
-		final int size = items.length;
-		final HistViewItem[] vItems = new HistViewItem[size];
-		final HistViewItem current;
-		if (size > 0) {
-			final int activeItem = history.getCurrentPosition();
-			final State cs = items[activeItem].getState();
-			final State rootState = items[0].getState();
-			vItems[0] = new HistViewItem(0, activeItem, rootState, null, cs);
-			for (int i = 1; i < size; i++) {
-				final State state = items[i].getState();
-				final Operation op = items[i - 1].getOperation();
-				vItems[i] = new HistViewItem(i, activeItem, state, op, cs);
+		final History current = Animator.getAnimator().getHistory();
+		if (current != history) {
+			attachToHistory(current);
+		}
+		updateRows();
+		final HistoryItem currentItem = history.getCurrent();
+		active.position = history.getCurrentPosition();
+		active.state = currentItem == null ? null : currentItem.getState();
+		final Table table = tableViewer.getTable();
+		// the lines at the active position are drawn by the paint listener
+		table.redraw();
+		if (active.position < rowCount) {
+			table.showItem(table.getItem(getRow(active.position)));
+		}
+	}
+
+	@Override
+	public void dispose() {
+		if (history != null) {
+			history.removeListener(historyListener);
+			history = null;
+		}
+		super.dispose();
+	}
+
+	/**
+	 * A new history is created for each loaded machine, all rows are replaced
+	 * then.
+	 */
+	private void attachToHistory(final History newHistory) {
+		if (history != null) {
+			history.removeListener(historyListener);
+		}
+		history = newHistory;
+		firstChangedPosition.set(0);
+		newHistory.addListener(historyListener);
+	}
+
+	/**
+	 * Removes the rows of the states that have left the history or whose
+	 * operation has changed, and inserts rows for the new states. The other
+	 * rows keep their items.
+	 */
+	private void updateRows() {
+		final int firstChanged = firstChangedPosition
+				.getAndSet(Integer.MAX_VALUE);
+		final int size = history.size();
+		final int kept = Math.min(Math.min(rowCount, firstChanged), size);
+		if (kept < rowCount) {
+			invalidatePrefetched();
+		}
+		if (kept < rowCount || kept < size) {
+			// the newest states are in the first rows, so every row shifts
+			final Table table = tableViewer.getTable();
+			table.setItemCount(size);
+			table.clearAll();
+		}
+		rowCount = size;
+	}
+
+	private int getRow(final int historyPosition) {
+		return rowCount - 1 - historyPosition;
+	}
+
+	private HistViewItem createItem(final int position) {
+		final History h = history;
+		final HistoryItem item = h == null ? null : h.getItemAt(position);
+		if (item == null)
+			return null;
+		// the history item before the state holds the operation that leads
+		// to it
+		final HistoryItem previous = position > 0 ? h.getItemAt(position - 1)
+				: null;
+		return new HistViewItem(position, item.getState(),
+				previous == null ? null : previous.getOperation(), active);
+	}
+
+	private void invalidatePrefetched() {
+		prefetchGeneration++;
+		prefetchedFrom = prefetchedTo = 0;
+		pendingFrom = pendingTo = 0;
+	}
+
+	/**
+	 * Starts a job that caches the values of the expression columns for the
+	 * positions around the given one. The values of all these positions are
+	 * retrieved together instead of one query per cell. When the job has
+	 * finished, the rows are materialised again.
+	 */
+	private void prefetchValues(final int position) {
+		if (pendingFrom <= position && position < pendingTo)
+			return;
+		final Table table = tableViewer.getTable();
+		final int window = Math.max(1, table.getClientArea().height
+				/ Math.max(1, table.getItemHeight()) + 1);
+		// lower positions are shown in the rows below
+		final int from = Math.max(0, position - 2 * window + 1);
+		final int to = Math.min(rowCount, position + window + 1);
+		pendingFrom = from;
+		pendingTo = to;
+		final int generation = prefetchGeneration;
+		final History h = history;
+		final List<EvaluationElement> columns = new ArrayList<EvaluationElement>(
+				expressionColumns);
+		final Display display = table.getDisplay();
+		final Job job = new Job("Evaluating history expressions") {
+			@Override
+			protected IStatus run(final IProgressMonitor monitor) {
+				final List<State> states = new ArrayList<State>(to - from);
+				for (int p = from; p < to; p++) {
+					final HistoryItem item = h.getItemAt(p);
+					if (item != null) {
+						states.add(item.getState());
+					}
+				}
+				try {
+					EvaluationGetValuesCommand.prefetchValuesCached(states,
+							columns);
+				} catch (ProBException e) {
+					// the cells will ask for their values one by one
+					e.notifyUserOnce();
+				}
+				if (!display.isDisposed()) {
+					display.asyncExec(new Runnable() {
+						public void run() {
+							valuesPrefetched(generation, from, to);
+						}
+					});
+				}
+				return Status.OK_STATUS;
 			}
-			current = vItems[activeItem];
-			ArrayUtils.reverse(vItems);
-		} else {
-			current = null;
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	private void valuesPrefetched(final int generation, final int from,
+			final int to) {
+		final Table table = tableViewer.getTable();
+		if (table.isDisposed())
+			return;
+		if (generation == prefetchGeneration) {
+			prefetchedFrom = from;
+			prefetchedTo = to;
 		}
-		tableViewer.setInput(vItems);
-		tableViewer.refresh();
-		if (current != null) {
-			tableViewer.reveal(current);
+		if (pendingFrom == from && pendingTo == to) {
+			pendingFrom = pendingTo = 0;
 		}
+		// the rows that waited for the values are materialised again
+		final int firstRow = Math.max(0, getRow(Math.min(to, rowCount) - 1));
+		final int lastRow = Math.min(rowCount - 1, getRow(from));
+		if (firstRow <= lastRow) {
+			table.clear(firstRow, lastRow);
+		}
+	}
+
+	/**
+	 * The position in the history that is currently shown and its state. Only
+	 * modified and read in the UI thread.
+	 */
+	static class ActivePosition {
+		private int position;
+		private State state;
 	}
 
 	static class HistViewItem {
 		private final int historyPosition;
-		private final int activePosition;
 		private final State dstState;
 		private final Operation operation;
-		private final boolean previousStateIsSameAsCurrent;
-		private final boolean followingStateIsSameAsCurrent;
+		private final ActivePosition active;
 
-		public HistViewItem(final int historyPosition,
-				final int activePosition, final State dstState,
-				final Operation operation, final State currentState) {
+		public HistViewItem(final int historyPosition, final State dstState,
+				final Operation operation, final ActivePosition active) {
 			this.historyPosition = historyPosition;
-			this.activePosition = activePosition;
 			this.dstState = dstState;
 			this.operation = operation;
-			// The item representing the root state has no operation leading to
-			// it, so we have to check if it is null
-			this.previousStateIsSameAsCurrent = operation != null
-					&& ObjectUtils.equals(currentState.getId(),
-							operation.getSource());
-			this.followingStateIsSameAsCurrent = ObjectUtils.equals(
-					currentState, dstState);
+			this.active = active;
 		}
 
 		public State getDestination() {
@@ -266,19 +444,23 @@ public class HistoryView extends StateBasedViewPart {
 		}
 
 		public boolean followingStateIsActive() {
-			return activePosition == historyPosition;
+			return active.position == historyPosition;
 		}
 
 		public boolean previousStateIsActive() {
-			return activePosition == historyPosition - 1;
+			return active.position == historyPosition - 1;
 		}
 
 		public boolean followingStateIsSameAsCurrent() {
-			return followingStateIsSameAsCurrent;
+			return ObjectUtils.equals(active.state, dstState);
 		}
 
 		public boolean previousStateIsSameAsCurrent() {
-			return previousStateIsSameAsCurrent;
+			// The item representing the root state has no operation leading to
+			// it, so we have to check if it is null
+			return operation != null && active.state != null
+					&& ObjectUtils.equals(active.state.getId(),
+							operation.getSource());
 		}
 
 		public void jumpToState() throws ProBException {
@@ -287,11 +469,20 @@ public class HistoryView extends StateBasedViewPart {
 		}
 	}
 
-	private static class HistContentProvider implements
-			IStructuredContentProvider {
+	private class HistContentProvider implements ILazyContentProvider {
 
-		public Object[] getElements(final Object data) {
-			return data == null ? new HistViewItem[0] : (HistViewItem[]) data;
+		public void updateElement(final int row) {
+			final int position = rowCount - 1 - row;
+			final HistViewItem item = createItem(position);
+			if (item == null)
+				return;
+			if (!expressionColumns.isEmpty()
+					&& !(prefetchedFrom <= position && position < prefetchedTo)) {
+				// the row is filled when the values are there
+				prefetchValues(position);
+				return;
+			}
+			tableViewer.replace(item, row);
 		}
 
 		public void dispose() {
@@ -302,6 +493,29 @@ public class HistoryView extends StateBasedViewPart {
 		}
 	}
 
+	/**
+	 * Records the lowest position that states entered or left the history at,
+	 * the rows are updated with the next state change. Called by the thread
+	 * that modifies the history, while it holds the lock of the history.
+	 */
+	private class HistoryChangeRecorder implements HistoryListener {
+		public void stateEntersHistory(final State state, final int position) {
+			recordChange(position);
+		}
+
+		public void stateLeavesHistory(final State state, final int position) {
+			recordChange(position);
+		}
+
+		private void recordChange(final int position) {
+			int current = firstChangedPosition.get();
+			while (position < current
+					&& !firstChangedPosition.compareAndSet(current, position)) {
+				current = firstChangedPosition.get();
+			}
+		}
+	}
+
 	private static class HistDoubleClickListener implements
 			IDoubleClickListener {
 		private static final String EXCEPTION_MSG = "exception raised while trying to jump to state";
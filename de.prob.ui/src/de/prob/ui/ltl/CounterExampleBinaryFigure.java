@@ -36,7 +36,7 @@ public final class CounterExampleBinaryFigure extends
 		super(model);
 
 		bounds = new Rectangle(size, size, size
-				* (model.getValues().size() * 2 + 1), (int) (9.0 / 2 * size));
+				* (model.getValueCount() * 2 + 1), (int) (9.0 / 2 * size));
 	}
 
 	@Override
@@ -43,7 +43,7 @@ public final class CounterExamplePredicateFigure extends
 	protected void drawProposition(final CounterExamplePropositionFigure parent) {
 		if (parent == null) {
 			bounds = new Rectangle(size, size, size
-					* (model.getValues().size() * 2 + 1), 2 * size);
+					* (model.getValueCount() * 2 + 1), 2 * size);
 
 			final CounterExampleFigure counterExampleFigure = (CounterExampleFigure) getParent();
 			final Insets insets = getInsets();
@@ -79,10 +79,10 @@ public final class CounterExamplePredicateFigure extends
 
 		final PathType pathType = model.getPathType();
 
-		final List<CounterExampleValueType> values = model.getValues();
+		final int count = model.getValueCount();
 
-		for (int i = 0; i < values.size(); i++) {
-			final CounterExampleValueType value = values.get(i);
+		for (int i = 0; i < count; i++) {
+			final CounterExampleValueType value = model.getValue(i);
 			final Ellipse ellipse = new Ellipse();
 
 			ellipse.setAntialias(SWT.ON);
@@ -146,7 +146,7 @@ public final class CounterExamplePredicateFigure extends
 				add(connection);
 			}
 
-			if (i == values.size() - 1) {
+			if (i == count - 1) {
 				if (pathType.equals(PathType.INFINITE)) {
 					final String operationName = getOperationName(ellipses1
 							.get(ellipse));
@@ -274,7 +274,7 @@ public abstract class CounterExamplePropositionFigure extends Figure implements
 
 		final PathType pathType = model.getPathType();
 
-		final List<CounterExampleValueType> values = argument.getValues();
+		final int count = argument.getValueCount();
 
 		Panel panel = new Panel();
 		panel.setBounds(panelBounds);
@@ -288,8 +288,8 @@ public abstract class CounterExamplePropositionFigure extends Figure implements
 		panel.setBorder(border);
 		add(panel);
 
-		for (int i = 0; i < values.size(); i++) {
-			final CounterExampleValueType value = values.get(i);
+		for (int i = 0; i < count; i++) {
+			final CounterExampleValueType value = argument.getValue(i);
 			final Ellipse ellipse = new Ellipse();
 
 			if (!positions.contains(i)) {
@@ -359,8 +359,8 @@ public abstract class CounterExamplePropositionFigure extends Figure implements
 					if (positions.contains(i - 1)) {
 						connection.setAlpha(Alpha.HIGHLIGHED);
 						decoration.setAlpha(Alpha.HIGHLIGHED);
-						Color transitionColor = getEllipseColor(values
-								.get(i - 1));
+						Color transitionColor = getEllipseColor(argument
+								.getValue(i - 1));
 						connection.setForegroundColor(transitionColor);
 						decoration.setForegroundColor(transitionColor);
 					}
@@ -371,7 +371,7 @@ public abstract class CounterExamplePropositionFigure extends Figure implements
 				panel.add(connection);
 			}
 
-			if (i == values.size() - 1) {
+			if (i == count - 1) {
 				if (pathType.equals(PathType.INFINITE)) {
 					final String operationName = getOperationName(ellipses1
 							.get(ellipse));
@@ -387,7 +387,8 @@ public abstract class CounterExamplePropositionFigure extends Figure implements
 					if (model.isTransition() || argument.isTransition()) {
 						if (positions.contains(i)) {
 							alpha = Alpha.HIGHLIGHED;
-							loopTransitionColor = getEllipseColor(values.get(i));
+							loopTransitionColor = getEllipseColor(argument
+									.getValue(i));
 						}
 					}
 
@@ -34,7 +34,7 @@ public final class CounterExampleUnaryFigure extends
 		super(model);
 
 		bounds = new Rectangle(size, size, size
-				* (model.getValues().size() * 2 + 1), (int) (5.0 / 2 * size));
+				* (model.getValueCount() * 2 + 1), (int) (5.0 / 2 * size));
 	}
 
 	@Override
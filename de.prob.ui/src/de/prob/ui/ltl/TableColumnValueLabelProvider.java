@@ -38,8 +38,8 @@ public final class TableColumnValueLabelProvider extends CellLabelProvider {
 			final CounterExampleState state = (CounterExampleState) cell
 					.getElement();
 			final int index = state.getIndex();
-			final CounterExampleValueType value = proposition.getValues().get(
-					index);
+			final CounterExampleValueType value = proposition
+					.getValue(index);
 			cell.setText(value.toString());
 
 			final IWorkbenchPage workbenchPage = PlatformUI.getWorkbench()
@@ -39,8 +39,8 @@ public final class TreeColumnValueLabelProvider extends CellLabelProvider {
 			if (proposition != null) {
 				final int index = state.getIndex();
 
-				final CounterExampleValueType value = proposition.getValues()
-						.get(index);
+				final CounterExampleValueType value = proposition
+						.getValue(index);
 				cell.setText(value.toString());
 
 				final IWorkbenchPage workbenchPage = PlatformUI.getWorkbench()
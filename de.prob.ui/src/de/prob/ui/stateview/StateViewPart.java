@@ -12,6 +12,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.jface.action.IMenuListener;
@@ -209,14 +210,23 @@ public class StateViewPart extends StateBasedViewPart {
 		boolean errorShown = false;
 		visibleElements.addAll(topEvaluationElements);
 		try {
+			final List<EvaluationElement> expanded = new ArrayList<EvaluationElement>();
 			for (final Object obj : treeViewer.getVisibleExpandedElements()) {
 				if (obj instanceof StateTreeExpression) {
 					StateTreeExpression ste = (StateTreeExpression) obj;
-					EvaluationElement elem = ste.getStaticElement();
-					visibleElements.add(elem);
-					visibleElements.addAll(Arrays.asList(elem.getChildren()));
+					expanded.add(ste.getStaticElement());
 				}
 			}
+			// retrieve the labels and children of all expanded elements with
+			// one query, then those of all their children with a second one
+			EvaluationElement.expand(expanded);
+			final List<EvaluationElement> frontier = new ArrayList<EvaluationElement>();
+			for (final EvaluationElement elem : expanded) {
+				frontier.addAll(Arrays.asList(elem.getChildren()));
+			}
+			EvaluationElement.expand(frontier);
+			visibleElements.addAll(expanded);
+			visibleElements.addAll(frontier);
 			EvaluationGetValuesCommand.getValuesForExpressionsCached(current,
 					visibleElements);
 			EvaluationGetValuesCommand.getValuesForExpressionsCached(last,
@@ -374,8 +384,13 @@ public class StateViewPart extends StateBasedViewPart {
 			final Boolean result;
 			if (element != null && element instanceof State) {
 				final State state = (State) element;
-				result = state.isInitialized() ? Boolean.valueOf(state
-						.isInvariantPreserved()) : null;
+				final State.InvariantStatus status = state
+						.getInvariantStatus();
+				// an unknown status is shown like an uninitialised state
+				result = state.isInitialized()
+						&& status != State.InvariantStatus.UNKNOWN ? Boolean
+						.valueOf(status == State.InvariantStatus.PRESERVED)
+						: null;
 			} else {
 				result = null;
 			}
@@ -4,6 +4,7 @@
 package de.prob.ui.stateview.statetree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -41,6 +42,9 @@ public class StateTreeExpression extends AbstractStateTreeElement {
 			try {
 				EvaluationElement[] staticChildren = staticElement
 						.getChildren();
+				// the tree asks every child if it has children, so we
+				// retrieve them all at once
+				EvaluationElement.expand(Arrays.asList(staticChildren));
 				children = new ArrayList<StateTreeElement>(
 						staticChildren.length);
 				for (EvaluationElement sChild : staticChildren) {